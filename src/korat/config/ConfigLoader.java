@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 
 import korat.gui.viz.VizListener;
+import korat.loading.InstrumentingClassLoader;
 import korat.loading.filter.ExcludingPackageFilter;
 import korat.loading.filter.FilterManager;
 import korat.testing.ITestCaseListener;
@@ -55,12 +56,39 @@ public class ConfigLoader {
     public static final MyOption ARGS = new MyOption( 
         "a", "args", "comma separated list of arguments to be given to finitization method", true, true, "params", null);
     
+    public static final MyOption ASYNC_BUFFER = new MyOption( 
+        "Q", "asyncBuffer", "number of candidate vectors buffered for listeners notified asynchronously", false, true, "num", "1024");
+    
+    public static final MyOption ASYNC_LISTENERS = new MyOption( 
+        "Y", "asyncListeners", "notify listeners in another thread; when the buffer is full, block, drop or spill to disk", false, true, "block|drop|spill", null);
+    
+    public static final MyOption BYTECODE_CACHE = new MyOption( 
+        "b", "bytecodeCache", "directory to cache instrumented bytecode in, across runs", false, true, "dir", null);
+    
+    public static final MyOption CHECKPOINT = new MyOption( 
+        "C", "checkpoint", "periodically save the state of the search to the given file", false, true, "fileName", null);
+    
+    public static final MyOption CHECKPOINT_INTERVAL = new MyOption( 
+        "I", "checkpointInterval", "number of seconds between two checkpoints", false, true, "seconds", "60");
+    
     public static final MyOption CLZ = new MyOption( 
         "c", "class", "name of test case class", true, true, "fullClassName", null);
     
     public static final MyOption CONFIG_FILE = new MyOption( 
         "G", "config", "name of the config file to be used", false, true, "fileName", null);
 
+    public static final MyOption COORDINATOR_PORT = new MyOption( 
+        "O", "coordinatorPort", "port that the coordinator of the distributed search listens on", false, true, "port", "0");
+    
+    public static final MyOption COPY_TEST_CASES = new MyOption( 
+        "p", "copyTestCases", "generate the methods that copy test cases for listeners (TestCradle.copyTestCase)", false, false, "", "false");
+    
+    public static final MyOption COUNT_ONLY = new MyOption( 
+        "o", "countOnly", "only count explored and valid structures (per size), without notifying listeners", false, false, "", "false");
+    
+    public static final MyOption CV_CODEC = new MyOption( 
+        "k", "cvCodec", "write candidate vectors in blocks with the given codec (fixed, widths or zeros, optionally followed by +deflate)", false, true, "codec", null);
+    
     public static final MyOption CV_DELTA = new MyOption( 
         "d", "cvDelta", "use delta file format", false, false, "", "false");
     
@@ -85,24 +113,39 @@ public class ConfigLoader {
     public static final MyOption CV_WRITE_NUM = new MyOption( 
         "W", "cvWriteNum", "write only num equi-distant vectors to disk", false, true, "num", "-1");
     
+    public static final MyOption DISTRIBUTE = new MyOption( 
+        "N", "distribute", "distribute the search to num local worker JVMs (0 for remote workers only)", false, true, "num", "-1");
+    
     public static final MyOption DUMP_BYTECODES = new MyOption( 
         "B", "dumpBytecodes", "dump instrumented java bytecodes to disk", false, false, "", "false");
     
+    public static final MyOption EAGER_INSTRUMENT = new MyOption( 
+        "i", "eagerInstrument", "instrument the classes reachable from the class under test at startup, with num threads", false, true, "num", "0");
+    
     public static final MyOption EXCLUDE_PACKAGES = new MyOption( 
         "E", "excludePackages", "comma separated list of packages to be excluded from instrumentation", false, true, "packages", null);
     
+    public static final MyOption FIELD_EPOCHS = new MyOption( 
+        "H", "fieldEpochs", "like traceBuffer, but getters skip fields already accessed by the predicate, stamping objects with the predicate invocation", false, false, "", "false");
+    
     public static final MyOption FINITIZATION = new MyOption( 
         "n", "finitization", "set the name of the finitization method. If ommited, default name fin<ClassName> would be used", false, true, "finMethodName", null);
 
     public static final MyOption HELP = new MyOption( 
         "?", "help", "print help message and exit", false, false, "", "false");
     
+    public static final MyOption INSTRUMENTED_JAR = new MyOption( 
+        "j", "instrumentedJar", "load classes from the jar written by korat.instrumentation.PreInstrumenter", false, true, "jarFile", null);
+    
     public static final MyOption LISTENERS = new MyOption( 
         "l", "listeners", "comma separated list of full class names that implement ITestCaseListener interface", false, true, "listenerClasses", null);
     
     public static final MyOption MAX_STRUCT = new MyOption( 
         "M", "maxStructs", "stop execution after finding num test cases", false, true, "num", "-1");
     
+    public static final MyOption PARALLEL = new MyOption( 
+        "P", "parallel", "number of worker threads to explore the state space with", false, true, "num", "1");
+    
     public static final MyOption PREDICATE = new MyOption( 
         "r", "predicate", "set the name of predicate method. If ommited, default name repOK would be used", false, true, "predMethodName", "repOK");
     
@@ -115,19 +158,46 @@ public class ConfigLoader {
     public static final MyOption PROGRESS = new MyOption( 
         "g", "progress", "print progress during search", false, true, "threshold", "-1");
     
+    public static final MyOption RANGES = new MyOption( 
+        "R", "ranges", "number of ranges to cut the state space into for distributed search", false, true, "num", "100");
+    
+    public static final MyOption RANGE_TIMEOUT = new MyOption( 
+        "T", "rangeTimeout", "give ranges explored longer than seconds to other idle workers as well", false, true, "seconds", "-1");
+    
+    public static final MyOption RESUME = new MyOption( 
+        "U", "resume", "resume the search from the checkpoint file", false, false, "", "false");
+    
     public static final MyOption SERIALIZE = new MyOption( 
         "s", "serialize", "serialize test cases to the given file", false, true, "fileName", null);
     
+    public static final MyOption SERIALIZE_CV = new MyOption( 
+        "V", "serializeCV", "serialize only the candidate vectors of test cases (with serialize)", false, false, "", "false");
+    
+    public static final MyOption SWEEP = new MyOption( 
+        "S", "sweep", "explore all sizes in the range, replacing finitization arguments given as size", false, true, "from..to", null);
+    
+    public static final MyOption TRACE_BUFFER = new MyOption( 
+        "t", "traceBuffer", "instrument getters to store field accesses to a buffer instead of notifying the search", false, false, "", "false");
+    
     public static final MyOption VISUALIZE = new MyOption( 
         "v", "visualize", "visualize valid test cases", false, false, "", "false");
 
+    public static final MyOption WORKER = new MyOption( 
+        "K", "worker", "run as a worker of the distributed search coordinated at host:port", false, true, "host:port", null);
+
     /**
      * This contains all defined options and will be initialized dynamically, through 
      * the java reflection mechanism.
      */
     private Options koratOptions;
 
-    ConfigLoader() {
+    /**
+     * Config manager that the parsed options are stored to.
+     */
+    private final ConfigManager config;
+
+    ConfigLoader(ConfigManager config) {
+        this.config = config;
         koratOptions = new Options();
         initKoratOptions();
     }
@@ -339,7 +409,6 @@ public class ConfigLoader {
      */
     private void checkRequiredOptions() throws MissingOptionException {
         String missingOptions = "";
-        ConfigManager config = ConfigManager.getInstance();
         if (config.className == null) {
             missingOptions += CLZ.getSwitches();
         }
@@ -358,7 +427,6 @@ public class ConfigLoader {
      */
     private void initStuffFromOptions() {
         TestCradle testCradle = TestCradle.getInstance();
-        ConfigManager config = ConfigManager.getInstance();
         if (config.cvWrite) {
             testCradle.attachSpecialClient(new WriteCVListener());
         }
@@ -369,6 +437,15 @@ public class ConfigLoader {
             }
             FilterManager.addFilter(excludeFilter);
         }
+        ClassLoader loader = testCradle.getClassLoader();
+        if (loader instanceof InstrumentingClassLoader) {
+            try {
+                ((InstrumentingClassLoader) loader).setInstrumentedJar(config.instrumentedJar);
+            } catch (IOException e) {
+                System.err.println("Cannot open instrumented jar \""
+                        + config.instrumentedJar + "\": " + e.getMessage());
+            }
+        }
         if (config.finitization == null) {
             String className = config.className;
             config.finitization = "fin" + className.substring(className.lastIndexOf('.') + 1);
@@ -414,7 +491,6 @@ public class ConfigLoader {
      * as the longOpt property of that option.</strong>
      */
     private void storeOptions() {
-        ConfigManager config = ConfigManager.getInstance();
         for (Object optObj : koratOptions.getOptions()) {
             MyOption opt = (MyOption)optObj;
             if (opt == HELP) 
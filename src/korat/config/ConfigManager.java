@@ -10,18 +10,50 @@ public class ConfigManager {
 
     private static ConfigManager instance;
 
+    private static final InheritableThreadLocal<ConfigManager> current = new InheritableThreadLocal<ConfigManager>();
+
+    /**
+     * Returns the config manager of the session that runs in the current
+     * thread (see {@link #setCurrentInstance(ConfigManager)}), or the default
+     * one if there is no such session.
+     */
     public static ConfigManager getInstance() {
-        if (instance == null) {
-            instance = new ConfigManager();
-            instance.configLoader.loadDefaults();
+        ConfigManager ret = current.get();
+        if (ret != null)
+            return ret;
+        synchronized (ConfigManager.class) {
+            if (instance == null)
+                instance = createInstance();
+            return instance;
         }
-        return instance;
+    }
+
+    /**
+     * Creates a new config manager with all options set to their default
+     * values. 
+     */
+    public static ConfigManager createInstance() {
+        ConfigManager ret = new ConfigManager();
+        ret.configLoader.loadDefaults();
+        return ret;
+    }
+
+    /**
+     * Makes <code>getInstance()</code> return the given config manager in
+     * the current thread and in the threads it starts afterwards.
+     * 
+     * @param config -
+     *            config manager of the current session, or <code>null</code>
+     *            for the default one
+     */
+    public static void setCurrentInstance(ConfigManager config) {
+        current.set(config);
     }
 
     private ConfigLoader configLoader;
 
     private ConfigManager() {
-        configLoader = new ConfigLoader();
+        configLoader = new ConfigLoader(this);
     }
 
     /**
@@ -51,9 +83,20 @@ public class ConfigManager {
      * @see ConfigLoader#parseCmdLine(String[])
      */
     public void parseCmdLine(String[] args) {
+        cmdLineArgs = args.clone();
         configLoader.parseCmdLine(args);
     }
 
+    private String[] cmdLineArgs = new String[0];
+
+    /**
+     * Returns the cmd line arguments that were last given to
+     * <code>parseCmdLine</code>.
+     */
+    public String[] getCmdLineArgs() {
+        return cmdLineArgs;
+    }
+
     /* ======================================================================== 
      *   ALL KORAT OPTIONS
      * ======================================================================== */
@@ -62,7 +105,37 @@ public class ConfigManager {
      * Array of arguments to be passed to the finitization method. 
      */
     public String[] args;
+
+    /**
+     * Capacity (in candidate vectors) of the buffer between the search and
+     * the thread that notifies listeners asynchronously.
+     */
+    public int asyncBuffer;
+
+    /**
+     * What the search does when the listeners notified asynchronously fall
+     * behind and the buffer is full: <code>block</code>, <code>drop</code>
+     * or <code>spill</code> (listeners are notified synchronously if null).
+     */
+    public String asyncListeners;
+
+    /**
+     * Directory of the persistent cache of instrumented bytecode (the cache 
+     * is not used if null).
+     */
+    public String bytecodeCache;
     
+    /**
+     * Name of the file to periodically save the state of the search to 
+     * (checkpoints are not written if null).
+     */
+    public String checkpoint;
+
+    /**
+     * Number of seconds between two checkpoints.
+     */
+    public long checkpointInterval;
+
     /**
      * Full class name of the class under test.
      */
@@ -73,6 +146,12 @@ public class ConfigManager {
      */
     public String config;
 
+    /**
+     * Codec of the block file format for storing candidate vectors (see
+     * <code>CVFactoryCodec</code>), null if the block format is not used.
+     */
+    public String cvCodec;
+
     /**
      * Whether or not to use delta file format for storing candidate vectors.
      */
@@ -119,21 +198,70 @@ public class ConfigManager {
      */
     public int cvWriteNum;
 
+    /**
+     * Number of local worker JVMs to distribute the search to. If set to 0, 
+     * only remote workers (started with the <code>worker</code> option) 
+     * are used. Distributed search is not used if it is negative.
+     */
+    public int distribute;
+
+    /**
+     * Port that the coordinator of the distributed search listens on for
+     * workers. If set to 0, any free port is used.
+     */
+    public int coordinatorPort;
+
+    /**
+     * Whether or not the instrumented classes get the methods that copy test
+     * cases (see <code>TestCradle.copyTestCase</code>). Off by default, since
+     * every instrumented class would get the methods.
+     */
+    public boolean copyTestCases;
+
+    /**
+     * Whether or not to only count explored and valid structures (and valid
+     * structures of each size), without notifying listeners and printing
+     * during the search.
+     */
+    public boolean countOnly;
+
     /**
      * Whether or not to dump instrumented bytecodes.
      */
     public boolean dumpBytecodes;
     
+    /**
+     * Number of threads that instrument the classes reachable from the class
+     * under test at startup. If 0, each class is instrumented when it is
+     * loaded.
+     */
+    public int eagerInstrument;
+    
     /**
      * Comma separated list of packages to be excluded from instrumentation.
      */
     public String[] excludePackages;
 
+    /**
+     * Whether or not the instrumented getters stamp objects with the number 
+     * of the predicate invocation (see <code>FieldTrace.getEpoch</code>) and
+     * skip the fields already accessed in the same invocation. Implies 
+     * <code>traceBuffer</code>.
+     */
+    public boolean fieldEpochs;
+
     /**
      * Name of the finitization method. If not set, defaults to "fin<ClassName>".
      */
     public String finitization;
 
+    /**
+     * Jar with the classes instrumented ahead of time by 
+     * <code>PreInstrumenter</code>. Classes found in it are loaded without 
+     * instrumentation (the jar is not used if null).
+     */
+    public String instrumentedJar;
+
     /**
      * Comma separated list of <code>ITestCaseListener</code> listeners to be attached
      * to <code>testCradle</code> instance.
@@ -146,11 +274,29 @@ public class ConfigManager {
      */
     public long maxStructs;
 
+    /**
+     * Number of worker threads that explore the state space in parallel. 
+     * Sequential search is used if it is less than 2.
+     */
+    public int parallel;
+
     /**
      * Name of the predicate method to be used. If not set, defaults to "repOK".
      */
     public String predicate;
 
+    /**
+     * Number of ranges the coordinator of the distributed search cuts the 
+     * state space into.
+     */
+    public int ranges;
+
+    /**
+     * Number of seconds after which a range that is still being explored 
+     * is given to another idle worker as well. Negative value means never.
+     */
+    public long rangeTimeout;
+
     /**
      * Whether or not to print generated test cases to standard output
      * (<code>toString</code> method would be called on each of the 
@@ -170,11 +316,38 @@ public class ConfigManager {
      */
     public long progress;
 
+    /**
+     * Whether or not to resume the search from the <code>checkpoint</code> 
+     * file.
+     */
+    public boolean resume;
+
     /**
      * Serialize valid test cases to file with given name.
      */
     public String serialize;
 
+    /**
+     * Whether or not to serialize only the candidate vectors of valid test
+     * cases (see <code>CVSerializer</code>).
+     */
+    public boolean serializeCV;
+
+    /**
+     * Range of sizes (<code>from..to</code>) to explore in one run. The size
+     * replaces the finitization arguments given as <code>size</code>, or the
+     * first argument if there are none (no sweep if null).
+     */
+    public String sweep;
+
+    /**
+     * Whether or not the instrumented getters store field accesses to the 
+     * buffer of the search (see <code>FieldTrace</code>) instead of calling 
+     * <code>ITester.notifyFieldAccess</code>. Off by default, since the
+     * buffer alone makes the search slower for some structures.
+     */
+    public boolean traceBuffer;
+
     /**
      * Whether or not to visualize valid test cases. To use this options, "dot" 
      * program from "GraphViz" package (http://www.graphviz.org) must be installed
@@ -182,4 +355,11 @@ public class ConfigManager {
      */
     public boolean visualize;
 
+    /**
+     * Address (host:port) of the coordinator of the distributed search. If 
+     * set, Korat runs as a worker that explores ranges given by the 
+     * coordinator.
+     */
+    public String worker;
+
 }
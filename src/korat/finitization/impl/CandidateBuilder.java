@@ -33,6 +33,28 @@ public class CandidateBuilder {
      */
     public void setStateSpace(StateSpace stateSpace) {
         this.stateSpace = stateSpace;
+        generatedBuilder = null;
+        generationFailed = false;
+    }
+
+    /*
+     * builder specialized for the state space, see CandidateBuilderGenerator
+     */
+    private GeneratedCandidateBuilder generatedBuilder;
+
+    private boolean generationFailed;
+
+    private GeneratedCandidateBuilder getGeneratedBuilder() {
+        if (generatedBuilder == null && !generationFailed) {
+            try {
+                generatedBuilder = CandidateBuilderGenerator.create(stateSpace);
+            } catch (Exception e) {
+                generationFailed = true;
+                System.err.println("WARNING: cannot generate candidate builder, "
+                        + "using the generic one: " + e);
+            }
+        }
+        return generatedBuilder;
     }
 
     /**
@@ -46,6 +68,12 @@ public class CandidateBuilder {
         if (stateSpace == null)
             return null;
 
+        GeneratedCandidateBuilder builder = getGeneratedBuilder();
+        if (builder != null) {
+            builder.build(candidateVector, changedFields);
+            return stateSpace.getRootObject();
+        }
+
         int n = candidateVector.length;
         CVElem[] structureList = stateSpace.getStructureList();
         assert (n == structureList.length);
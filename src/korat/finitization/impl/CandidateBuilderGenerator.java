@@ -0,0 +1,312 @@
+package korat.finitization.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javassist.CannotCompileException;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.NotFoundException;
+import korat.instrumentation.Setter;
+
+/**
+ * Generates candidate builders specialized for the given state space.
+ *
+ * <p/> For every state space, fields are divided into kinds by their setter
+ * class and the type of their values, and a subclass of
+ * <code>GeneratedCandidateBuilder</code> is generated with a
+ * <code>build</code> method like the following:
+ *
+ * <pre>
+ *     void build(int[] cv, IIntList changed) {
+ *         int n = changed.numberOfElements();
+ *         for (int j = 0; j &lt; n; j++) {
+ *             int i = changed.get(j);
+ *             int v = cv[i];
+ *             switch (kinds[i]) {
+ *             case 0: setters[i].set(objectValues[i][v]); break;
+ *             case 1: setters[i].set(intValues[i][v]); break;
+ *             ...
+ *             }
+ *         }
+ *     }
+ * </pre>
+ *
+ * Every <code>set</code> call in the generated code is reached by the setters
+ * of one class only, so the virtual machine can inline it, and there is no
+ * dispatch on the type of the field domain while building candidates.
+ *
+ * <p/> State spaces with the same kinds (e.g. the state spaces of the same
+ * finitization used by parallel workers) share the generated class. Kinds
+ * are cached by the names of setter classes only: the generated code calls
+ * setters through the <code>Setter</code> interface, so the same class
+ * serves the setters of every session, whatever class loader defined them.
+ *
+ * @see CandidateBuilder
+ * @author korat.team
+ */
+class CandidateBuilderGenerator {
+
+    private static final String CLASS_NAME_PREFIX = GeneratedCandidateBuilder.class.getName()
+            + "_";
+
+    private static final ClassPool pool;
+
+    static {
+        pool = new ClassPool(true);
+        pool.insertClassPath(new ClassClassPath(GeneratedCandidateBuilder.class));
+    }
+
+    private static final Map<List<Object>, Class<? extends GeneratedCandidateBuilder>> generatedClasses = new HashMap<List<Object>, Class<? extends GeneratedCandidateBuilder>>();
+
+    private static int numGeneratedClasses;
+
+    /**
+     * Creates candidate builder for the given (initialized) state space
+     */
+    static synchronized GeneratedCandidateBuilder create(StateSpace stateSpace)
+            throws CannotCompileException, NotFoundException {
+
+        CVElem[] structureList = stateSpace.getStructureList();
+        int n = structureList.length;
+
+        Setter[] setters = new Setter[n];
+        int[] kinds = new int[n];
+        char[] types = new char[n];
+
+        // kinds as a flat list of (setter class name, type) pairs
+        List<Object> kindList = new ArrayList<Object>();
+        Map<List<Object>, Integer> kindIndices = new HashMap<List<Object>, Integer>();
+
+        for (int i = 0; i < n; i++) {
+            CVElem elem = structureList[i];
+            setters[i] = elem.getSetter();
+            types[i] = getType(elem.getFieldDomain());
+
+            List<Object> kind = Arrays.asList(new Object[] {
+                    setters[i].getClass().getName(), types[i] });
+            Integer kindIndex = kindIndices.get(kind);
+            if (kindIndex == null) {
+                kindIndex = kindIndices.size();
+                kindIndices.put(kind, kindIndex);
+                kindList.addAll(kind);
+            }
+            kinds[i] = kindIndex;
+        }
+
+        Class<? extends GeneratedCandidateBuilder> cls = generatedClasses.get(kindList);
+        if (cls == null) {
+            cls = generateClass(kindList);
+            generatedClasses.put(kindList, cls);
+        }
+
+        GeneratedCandidateBuilder ret;
+        try {
+            ret = cls.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new CannotCompileException(e);
+        }
+        ret.setters = setters;
+        ret.kinds = kinds;
+        initValues(ret, structureList, types);
+        return ret;
+
+    }
+
+    private static Class<? extends GeneratedCandidateBuilder> generateClass(
+            List<Object> kindList) throws CannotCompileException,
+            NotFoundException {
+
+        CtClass clz = pool.makeClass(CLASS_NAME_PREFIX + numGeneratedClasses++);
+        clz.setSuperclass(pool.get(GeneratedCandidateBuilder.class.getName()));
+
+        StringBuilder src = new StringBuilder();
+        src.append("void build(int[] cv, korat.utils.IIntList changed) {");
+        src.append("  int n = changed.numberOfElements();");
+        src.append("  for (int j = 0; j < n; j++) {");
+        src.append("    int i = changed.get(j);");
+        src.append("    int v = cv[i];");
+        src.append("    switch (kinds[i]) {");
+        for (int k = 0; k < kindList.size() / 2; k++) {
+            char type = (Character) kindList.get(2 * k + 1);
+            src.append("    case ").append(k).append(": setters[i].set(");
+            src.append(getValuesFieldName(type)).append("[i][v]); break;");
+        }
+        src.append("    }");
+        src.append("  }");
+        src.append("}");
+
+        clz.addMethod(CtNewMethod.make(src.toString(), clz));
+
+        Class<?> ret = clz.toClass(GeneratedCandidateBuilder.class.getClassLoader(),
+                GeneratedCandidateBuilder.class.getProtectionDomain());
+        clz.detach();
+        return ret.asSubclass(GeneratedCandidateBuilder.class);
+
+    }
+
+    /**
+     * Returns the JVM type descriptor of the values of the given field domain
+     * (<code>L</code> for objects and arrays)
+     */
+    private static char getType(FieldDomain fd) {
+        Class<?> cls = fd.getClassOfField();
+        if (!fd.isPrimitiveType())
+            return 'L';
+        else if (cls == int.class)
+            return 'I';
+        else if (cls == boolean.class)
+            return 'Z';
+        else if (cls == byte.class)
+            return 'B';
+        else if (cls == short.class)
+            return 'S';
+        else if (cls == long.class)
+            return 'J';
+        else if (cls == float.class)
+            return 'F';
+        else if (cls == double.class)
+            return 'D';
+        throw new IllegalArgumentException("Unsupported field type " + cls);
+    }
+
+    private static String getValuesFieldName(char type) {
+        switch (type) {
+        case 'L':
+            return "objectValues";
+        case 'I':
+            return "intValues";
+        case 'Z':
+            return "booleanValues";
+        case 'B':
+            return "byteValues";
+        case 'S':
+            return "shortValues";
+        case 'J':
+            return "longValues";
+        case 'F':
+            return "floatValues";
+        case 'D':
+            return "doubleValues";
+        }
+        throw new IllegalArgumentException("Unsupported field type " + type);
+    }
+
+    private static void initValues(GeneratedCandidateBuilder builder,
+            CVElem[] structureList, char[] types) {
+
+        int n = structureList.length;
+        builder.objectValues = new Object[n][];
+        builder.intValues = new int[n][];
+        builder.booleanValues = new boolean[n][];
+        builder.byteValues = new byte[n][];
+        builder.shortValues = new short[n][];
+        builder.longValues = new long[n][];
+        builder.floatValues = new float[n][];
+        builder.doubleValues = new double[n][];
+
+        // fields with the same domain share the array of values
+        Map<FieldDomain, Object> values = new IdentityHashMap<FieldDomain, Object>();
+
+        for (int i = 0; i < n; i++) {
+            FieldDomain fd = structureList[i].getFieldDomain();
+            Object vals = values.get(fd);
+            if (vals == null) {
+                vals = getValues(fd, types[i]);
+                values.put(fd, vals);
+            }
+            switch (types[i]) {
+            case 'L':
+                builder.objectValues[i] = (Object[]) vals;
+                break;
+            case 'I':
+                builder.intValues[i] = (int[]) vals;
+                break;
+            case 'Z':
+                builder.booleanValues[i] = (boolean[]) vals;
+                break;
+            case 'B':
+                builder.byteValues[i] = (byte[]) vals;
+                break;
+            case 'S':
+                builder.shortValues[i] = (short[]) vals;
+                break;
+            case 'J':
+                builder.longValues[i] = (long[]) vals;
+                break;
+            case 'F':
+                builder.floatValues[i] = (float[]) vals;
+                break;
+            case 'D':
+                builder.doubleValues[i] = (double[]) vals;
+                break;
+            }
+        }
+
+    }
+
+    private static Object getValues(FieldDomain fd, char type) {
+
+        int size = fd.getNumberOfElements();
+        switch (type) {
+        case 'L': {
+            Object[] ret = new Object[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = fd.isArrayType() ? ((ArraySet) fd).getArray(i)
+                        : ((ObjSet) fd).getObject(i);
+            return ret;
+        }
+        case 'I': {
+            int[] ret = new int[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((IntSet) fd).getInt(i);
+            return ret;
+        }
+        case 'Z': {
+            boolean[] ret = new boolean[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((BooleanSet) fd).getBoolean(i);
+            return ret;
+        }
+        case 'B': {
+            byte[] ret = new byte[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((ByteSet) fd).getByte(i);
+            return ret;
+        }
+        case 'S': {
+            short[] ret = new short[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((ShortSet) fd).getShort(i);
+            return ret;
+        }
+        case 'J': {
+            long[] ret = new long[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((LongSet) fd).getLong(i);
+            return ret;
+        }
+        case 'F': {
+            float[] ret = new float[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((FloatSet) fd).getFloat(i);
+            return ret;
+        }
+        case 'D': {
+            double[] ret = new double[size];
+            for (int i = 0; i < size; i++)
+                ret[i] = ((DoubleSet) fd).getDouble(i);
+            return ret;
+        }
+        }
+        throw new IllegalArgumentException("Unsupported field type " + type);
+
+    }
+
+}
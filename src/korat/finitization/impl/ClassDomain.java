@@ -111,7 +111,9 @@ public class ClassDomain implements IClassDomain {
             return;
         initialized = true;
         
-        ITester tester = TestCradle.getInstance();
+        ITester tester = Finitization.getTester();
+        if (tester == null)
+            tester = TestCradle.getInstance();
 
         //TODO:: generalize for other object types
         if (IKoratArray.class.isAssignableFrom(classOfObjects))
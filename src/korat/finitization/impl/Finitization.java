@@ -25,6 +25,7 @@ import korat.finitization.IShortSet;
 import korat.instrumentation.IKoratArray;
 import korat.instrumentation.InstrumentationManager;
 import korat.instrumentation.KoratArrayManager;
+import korat.testing.ITester;
 import korat.utils.ReflectionUtils;
 
 /**
@@ -52,12 +53,43 @@ public class Finitization implements IFinitization {
         classLoader = Finitization.class.getClassLoader();
     }
 
+    private static final InheritableThreadLocal<ClassLoader> currentClassLoader = new InheritableThreadLocal<ClassLoader>();
+
     public static void setClassLoader(ClassLoader classLoader2) {
         classLoader = classLoader2;
     }
 
+    /**
+     * Sets the class loader used by finitizations created in the current
+     * thread (and in the threads it starts afterwards), overriding the one
+     * given to <code>setClassLoader</code>.
+     * 
+     * @param classLoader2 -
+     *            class loader of the current session, or <code>null</code>
+     *            for the default one
+     */
+    public static void setCurrentClassLoader(ClassLoader classLoader2) {
+        currentClassLoader.set(classLoader2);
+    }
+
     public static ClassLoader getClassLoader() {
-        return classLoader;
+        ClassLoader ret = currentClassLoader.get();
+        return ret != null ? ret : classLoader;
+    }
+
+    protected static final ThreadLocal<ITester> tester = new ThreadLocal<ITester>();
+
+    /**
+     * Sets the tester that objects created by finitizations in the current
+     * thread will report field accesses to. If not set (or set to
+     * <code>null</code>), the <code>TestCradle</code> instance is used.
+     */
+    public static void setTester(ITester tester2) {
+        tester.set(tester2);
+    }
+
+    public static ITester getTester() {
+        return tester.get();
     }
 
     public Finitization(Class myClass) {
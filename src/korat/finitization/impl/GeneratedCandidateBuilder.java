@@ -0,0 +1,62 @@
+package korat.finitization.impl;
+
+import korat.instrumentation.Setter;
+import korat.utils.IIntList;
+
+/**
+ * Base class for the candidate builders generated by
+ * <code>CandidateBuilderGenerator</code>.
+ *
+ * <p/> Fields of the state space are divided into kinds, one kind for each
+ * pair of setter class and type of the field values. The generated
+ * <code>build</code> method has one <code>switch</code> case for every kind,
+ * so each case calls the typed <code>set</code> method of only one setter
+ * class, and the values are taken from the arrays that are precomputed for
+ * each field.
+ *
+ * @see CandidateBuilderGenerator
+ * @author korat.team
+ */
+abstract class GeneratedCandidateBuilder {
+
+    /** setter for each field */
+    Setter[] setters;
+
+    /** kind of each field (<code>switch</code> case in generated code) */
+    int[] kinds;
+
+    /*
+     * values of each field, indexed by the value index from the candidate
+     * vector; only the array of the field's type is set
+     */
+
+    Object[][] objectValues;
+
+    int[][] intValues;
+
+    boolean[][] booleanValues;
+
+    byte[][] byteValues;
+
+    short[][] shortValues;
+
+    long[][] longValues;
+
+    float[][] floatValues;
+
+    double[][] doubleValues;
+
+    public GeneratedCandidateBuilder() {
+    }
+
+    /**
+     * Sets the values of the changed fields
+     *
+     * @param candidateVector -
+     *            candidate vector
+     * @param changedFields -
+     *            indices of the fields that should be set
+     */
+    abstract void build(int[] candidateVector, IIntList changedFields);
+
+}
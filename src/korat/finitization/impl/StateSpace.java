@@ -1,6 +1,8 @@
 package korat.finitization.impl;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 import java.util.Map.Entry;
@@ -22,18 +24,75 @@ public class StateSpace {
     protected CVElem[] structureList;
       
     protected int getIndex(Object obj, String fieldName) {
-        
-        int ind = -1;
+
+        if (indexObjs == null)
+            initializeIndex();
+
+        int mask = indexObjs.length - 1;
+        for (int slot = hash(obj, fieldName) & mask;; slot = (slot + 1) & mask) {
+            Object o = indexObjs[slot];
+            if (o == null)
+                return -1;
+            if (o == obj) {
+                String name = indexNames[slot];
+                if (name == fieldName || name.equals(fieldName))
+                    return indexPositions[slot];
+            }
+        }
+
+    }
+
+    /*
+     * Open addressing hash table from (object, field name) to the index in
+     * candidate vector. Objects are compared by identity, and field names are
+     * interned, so lookups with names obtained through reflection or string
+     * literals only compare references.
+     */
+
+    private Object[] indexObjs;
+
+    private String[] indexNames;
+
+    private int[] indexPositions;
+
+    private void initializeIndex() {
+
+        int capacity = 2;
+        while (capacity < 2 * structureList.length)
+            capacity <<= 1;
+
+        Object[] objs = new Object[capacity];
+        String[] names = new String[capacity];
+        int[] positions = new int[capacity];
+        int mask = capacity - 1;
 
         for (int i = 0; i < structureList.length; i++) {
             CVElem elem = structureList[i];
-            if (elem.obj == obj && elem.fieldName.equals(fieldName)) {
-                ind = i;
-                break;
+            if (elem.obj == null)
+                continue;
+            String name = elem.fieldName.intern();
+            int slot = hash(elem.obj, name) & mask;
+            while (objs[slot] != null) {
+                if (objs[slot] == elem.obj && names[slot] == name)
+                    break; // keep the first occurrence, as the linear scan did
+                slot = (slot + 1) & mask;
+            }
+            if (objs[slot] == null) {
+                objs[slot] = elem.obj;
+                names[slot] = name;
+                positions[slot] = i;
             }
         }
-        return ind;
-        
+
+        indexNames = names;
+        indexPositions = positions;
+        indexObjs = objs;
+
+    }
+
+    private static int hash(Object obj, String fieldName) {
+        int h = System.identityHashCode(obj) * 31 + fieldName.hashCode();
+        return h ^ (h >>> 16);
     }
 
     protected CVElem getCVElem(Object obj, String fieldName) {
@@ -55,14 +114,17 @@ public class StateSpace {
         return structureList[candidateVectorIndex];
     }
 
-    protected static StateSpace lastInstance = null;
+    protected static final ThreadLocal<StateSpace> lastInstance = new ThreadLocal<StateSpace>();
 
+    /**
+     * @return the state space created last in the current thread
+     */
     public static StateSpace getLastInstance() {
-        return lastInstance;
+        return lastInstance.get();
     }
 
     public StateSpace() {
-        lastInstance = this;
+        lastInstance.set(this);
     }
 
     public CVElem[] getStructureList() {
@@ -81,6 +143,7 @@ public class StateSpace {
      */
     public void setStructureList(CVElem[] structureList) {
         this.structureList = structureList;
+        indexObjs = null;
     }
 
     /**
@@ -186,6 +249,89 @@ public class StateSpace {
         return structureList.length;
     }
 
+    /**
+     * Returns a fingerprint of this state space, computed from the object
+     * class, field name and field domain of every element of the candidate
+     * vector. State spaces built by the same finitization (with the same
+     * parameters) have the same fingerprint.
+     * 
+     * @return 64-bit fingerprint
+     */
+    public long getFingerprint() {
+        if (fingerprint == null)
+            fingerprint = computeFingerprint();
+        return fingerprint;
+    }
+
+    private Long fingerprint;
+
+    private long computeFingerprint() {
+        long h = FNV_OFFSET;
+        for (CVElem elem : structureList) {
+            Object obj = elem.getObj();
+            FieldDomain fd = elem.getFieldDomain();
+            h = hash(h, obj == null ? "null" : obj.getClass().getName());
+            h = hash(h, elem.getFieldName());
+            h = hash(h, fd.getClassOfField().getName());
+            h = hash(h, fd.getNumberOfElements());
+            h = hash(h, elem.isExcludedFromSearch() ? 1 : 0);
+        }
+        return h;
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long hash(long h, String str) {
+        for (int i = 0; i < str.length(); i++)
+            h = (h ^ str.charAt(i)) * FNV_PRIME;
+        return (h ^ 0xff) * FNV_PRIME;
+    }
+
+    private static long hash(long h, int val) {
+        for (int i = 0; i < 4; i++, val >>>= 8)
+            h = (h ^ (val & 0xff)) * FNV_PRIME;
+        return h;
+    }
+
+    /**
+     * Returns the objects of this state space, numbered by their class
+     * domain and their index in it: the objects whose fields are in the
+     * candidate vector, and the objects of the class domains of the field
+     * domains (in the order of the candidate vector).
+     * 
+     * @return objects of the state space, each one once
+     * @see korat.instrumentation.StructureCopier
+     */
+    public Object[] getObjects() {
+        Map<Object, Object> added = new IdentityHashMap<Object, Object>();
+        List<Object> ret = new ArrayList<Object>();
+        for (CVElem elem : structureList) {
+            addObject(elem.getObj(), added, ret);
+            FieldDomain fd = elem.getFieldDomain();
+            if (fd.isPrimitiveType())
+                continue;
+            for (int i = 0; i < fd.getNumOfClassDomains(); i++)
+                addObjects(fd.getClassDomain(i), added, ret);
+        }
+        return ret.toArray();
+    }
+
+    private static void addObjects(ClassDomain cd, Map<Object, Object> added,
+            List<Object> objects) {
+        if (cd == null)
+            return;
+        for (Object obj : cd.getObjects())
+            addObject(obj, added, objects);
+    }
+
+    private static void addObject(Object obj, Map<Object, Object> added,
+            List<Object> objects) {
+        if (obj != null && added.put(obj, obj) == null)
+            objects.add(obj);
+    }
+
     public String toString() {
 
         StringBuffer ret = new StringBuffer();
@@ -254,6 +400,7 @@ public class StateSpace {
         initialized = true;
 
         initializeFieldMap();
+        initializeIndex();
         
         for (int i = 0; i < structureList.length; i++)
             structureList[i].initialize(i);
@@ -33,35 +33,53 @@ import korat.loading.filter.FilterManager;
  */
 abstract class AbstractInstrumenter implements IInstrumenter {
 
-    protected ClassPool cp;
-    
-    protected AbstractInstrumenter() {
-        cp = ClassPool.getDefault();
-    }
-    
     /**
      * @see korat.instrumentation.IInstrumenter#getBytecode(java.lang.String)
      */
     public byte[] getBytecode(String className) throws ClassNotFoundException {
+        // the class pool (and the set of instrumented classes) is shared 
+        // by the class loaders of all sessions in the same mode
+        ClassPool cp = InstrumentationManager.getClassPool();
+        synchronized (cp) {
+            return getBytecodeSync(cp, className);
+        }
+    }
+
+    private byte[] getBytecodeSync(ClassPool cp, String className)
+            throws ClassNotFoundException {
+        ConfigManager config = ConfigManager.getInstance();
+        BytecodeCache cache = null;
+        if (config.bytecodeCache != null)
+            cache = BytecodeCache.getInstance(config.bytecodeCache,
+                    InstrumentationManager.getModeInstrumenter(), config.excludePackages,
+                    config.traceBuffer, config.fieldEpochs);
+
         byte[] data = null;
         try {
 
-            CtClass clz = cp.get(className);
-            clz.stopPruning(true); // for JUnit regression tests
+            if (cache != null)
+                data = cache.get(className);
 
-            if (clz.isFrozen()) {
-                clz.defrost();
-            } else {
-                //this method calls instrument(CtClass) for the 
-                //currently configured instrumenter
-                InstrumentationManager.instrumentClassIfNeeded(clz);
-            }
+            if (data == null) {
+                CtClass clz = getCtClass(cp, className, cache);
+                clz.stopPruning(true); // for JUnit regression tests
 
-            data = clz.toBytecode();
+                if (clz.isFrozen()) {
+                    clz.defrost();
+                } else {
+                    //this method calls instrument(CtClass) for the 
+                    //currently configured instrumenter
+                    InstrumentationManager.instrumentClassIfNeeded(clz);
+                }
+
+                data = clz.toBytecode();
+                if (cache != null)
+                    cache.put(className, data);
+            }
 
-            if (ConfigManager.getInstance().dumpBytecodes) {
+            if (config.dumpBytecodes) {
                 korat.utils.BytecodeDumper.getInstance().dumpAndEatExceptions(data,
-                    clz.getName(), true);
+                    className, true);
             }
             
         } catch (CannotCompileException e) {
@@ -75,6 +93,27 @@ abstract class AbstractInstrumenter implements IInstrumenter {
         return data;
     }
 
+    /**
+     * Gets the class from the pool. Classes generated during instrumentation
+     * are not in the pool if the classes they were generated for have been
+     * served from the cache, so these are instrumented in the pool first.
+     */
+    private CtClass getCtClass(ClassPool cp, String className,
+            BytecodeCache cache)
+            throws NotFoundException, CannotCompileException, IOException {
+        try {
+            return cp.get(className);
+        } catch (NotFoundException e) {
+            if (cache == null || !cache.materialize(className))
+                throw e;
+            return cp.get(className);
+        }
+    }
+
+    public String toString() {
+        return getClass().getName();
+    }
+
     protected abstract void instrument(CtClass clz) 
             throws CannotCompileException, NotFoundException, IOException;
     
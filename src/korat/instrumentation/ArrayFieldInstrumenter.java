@@ -134,9 +134,9 @@ class ArrayFieldInstrumenter extends FieldInstrumenter {
                 CodeIterator cit = ca.iterator();
                 stack.clear();
                 ArrayBytecodesVisitor arrayBytecodesVisitor = 
-                    new ArrayBytecodesVisitor(cp, cPool, stack);
+                    new ArrayBytecodesVisitor(clz.getClassPool(), cPool, stack);
                 StackTracerVisitor tracerVisitor = 
-                    new StackTracerVisitor(cp, cPool, clz, mi, stack);
+                    new StackTracerVisitor(clz.getClassPool(), cPool, clz, mi, stack);
 
                 while (cit.hasNext()) {
                     int idx = cit.next();
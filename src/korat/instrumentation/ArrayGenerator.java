@@ -8,7 +8,9 @@ import static javassist.Modifier.TRANSIENT;
 import java.io.Serializable;
 import java.security.InvalidParameterException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javassist.CannotCompileException;
@@ -18,6 +20,7 @@ import javassist.CtConstructor;
 import javassist.CtField;
 import javassist.CtMethod;
 import javassist.NotFoundException;
+import korat.testing.FieldTrace;
 import korat.testing.ITester;
 
 /**
@@ -40,6 +43,9 @@ import korat.testing.ITester;
  *      static class Korat_Array_<b>Type</b>_Length_Setter extends Setter {...}
  *      
  *      korat.testing.ITester tester;
+ *      korat.testing.FieldTrace trace; // only with --traceBuffer
+ *      long[] values_epochs;           // only with --fieldEpochs
+ *      long length_epoch;              // only with --fieldEpochs
  *      
  *      <b>Type</b>[] values;
  *      int[] values_ids;
@@ -53,13 +59,19 @@ import korat.testing.ITester;
  *      public Setter get_element_setter(int position, int field_id);
  *      public <b>Type</b> get(int index);
  *      public void set(int position, Korat_Array_<b>Type</b> newValue);
- *      public Object [] getValues();
+ *      public Object getValue(int index);
+ *      public Object toArray();
+ *      
+ *      // only for primitive <b>Type</b>s (IKoratArray.Of<b>Type</b>)
+ *      public <b>Type</b> get<b>Type</b>(int index);
+ *      public void copyTo(<b>Type</b>[] dest, int destPos);
  *      
  *      public Setter get_length_setter(int field_id);
  *      public int getLength(int index);
  *      public void setLength(int newValue);
  *      
  *      // + methods that implement IKoratTouchable (if required)
+ *      // + methods that implement IKoratCopyable
  * }
  * </pre>
  * 
@@ -94,6 +106,24 @@ public class ArrayGenerator {
 
     private boolean TRACE = false; // used for debugging the arrays!
 
+    /**
+     * whether the accessed elements are stored to the trace buffer of the
+     * tester (<code>--traceBuffer</code>)
+     */
+    private final boolean traceBuffer = InstrumentationManager.useTraceBuffer();
+
+    /**
+     * whether the accessed elements are stamped with the epoch of the trace
+     * buffer (<code>--fieldEpochs</code>)
+     */
+    private final boolean fieldEpochs = InstrumentationManager.useFieldEpochs();
+
+    /**
+     * whether the methods that copy test cases are generated
+     * (<code>--copyTestCases</code>)
+     */
+    private final boolean copyable = InstrumentationManager.useCopyMethods();
+
     private ClassPool cp;
 
     private CtClass arrayType;
@@ -118,7 +148,7 @@ public class ArrayGenerator {
         if (!arrayType.isArray())
             throw new IllegalArgumentException("Arugment class is not an array");
 
-        this.cp = ClassPool.getDefault();
+        this.cp = arrayType.getClassPool();
         this.arrayType = arrayType;
 
         componentType = arrayType.getComponentType();
@@ -135,7 +165,7 @@ public class ArrayGenerator {
     }
 
     public ArrayGenerator(Class arrayType) throws NotFoundException {
-        this(ClassPool.getDefault().get(arrayType.getName()));
+        this(InstrumentationManager.getClassPool().get(arrayType.getName()));
     }
 
     /**
@@ -198,22 +228,29 @@ public class ArrayGenerator {
         CtClass lengthSetter = createLengthSetter(koratClass);
         createLengthMethods(koratClass);
         implementIKoratTouchableInterface(koratClass);
+        if (copyable)
+            implementIKoratCopyableInterface(koratClass);
         
         return new CtClass[] {koratClass, elementSetter, lengthSetter};
         
     }
 
     protected void setImplementedInterfaces(CtClass clz) {
-        CtClass[] ints = new CtClass[2];
+        List<CtClass> ints = new ArrayList<CtClass>();
         try {
-            ints[0] = cp.get(IKoratArray.class.getName());
-            ints[1] = cp.get(Serializable.class.getName());
+            ints.add(cp.get(IKoratArray.class.getName()));
+            ints.add(cp.get(Serializable.class.getName()));
+            if (copyable)
+                ints.add(cp.get(IKoratCopyable.class.getName()));
+            if (componentType.isPrimitive())
+                ints.add(cp.get(IKoratArray.class.getName() + "$Of"
+                        + getPrimitiveSuffix(componentType.getSimpleName())));
         } catch (NotFoundException e) {
             // should never reach this point 
-            //(IKoratArray and Serializable should exist on the classpath)
+            //(IKoratArray, Serializable and IKoratCopyable should exist on the classpath)
             throw new RuntimeException(e);
         }
-        clz.setInterfaces(ints);
+        clz.setInterfaces(ints.toArray(new CtClass[ints.size()]));
     }
 
     /**
@@ -325,6 +362,19 @@ public class ArrayGenerator {
      * <td style="white-space:nowrap;"><code>korat.testing.ITester tester </code></td>
      * <td>object to which the field accesses will be reported</td>
      * </tr>
+     *
+     * <tr>
+     * <td style="white-space:nowrap;"><code>korat.testing.FieldTrace trace </code></td>
+     * <td>trace buffer of the tester, to which the field accesses are stored 
+     * (only with the <code>--traceBuffer</code> option)</td>
+     * </tr>
+     *
+     * <tr>
+     * <td style="white-space:nowrap;"><code>long[] values_epochs, long length_epoch </code></td>
+     * <td>epochs of the trace buffer in which the accesses of the elements
+     * and the length were last stored (only with the <code>--fieldEpochs</code> 
+     * option)</td>
+     * </tr>
      * </table>
      * 
      * <p>For detailed explanation on purpose of _id fields, please see 
@@ -358,6 +408,21 @@ public class ArrayGenerator {
         koratTester.setModifiers(PROTECTED | TRANSIENT | FINAL);
         clz.addField(koratTester);
 
+        if (traceBuffer) {
+            CtField koratTrace = new CtField(cp.get(FieldTrace.class.getName()), "trace", clz);
+            koratTrace.setModifiers(PROTECTED | TRANSIENT);
+            clz.addField(koratTrace);
+        }
+
+        if (fieldEpochs) {
+            CtField values_epochs = new CtField(cp.get("long[]"), "values_epochs", clz);
+            values_epochs.setModifiers(PROTECTED | TRANSIENT);
+            clz.addField(values_epochs);
+            CtField length_epoch = new CtField(CtClass.longType, "length_epoch", clz);
+            length_epoch.setModifiers(PROTECTED | TRANSIENT);
+            clz.addField(length_epoch);
+        }
+
     }
 
     /**
@@ -378,6 +443,7 @@ public class ArrayGenerator {
      *    length = maxSize; 
      *    for (int i = 0; i < maxSize; i++) 
      *       values_ids[i] = -1;
+     *    values_epochs = new long[maxSize]; // only with --fieldEpochs
      *  }
      * </pre>
      * 
@@ -387,6 +453,9 @@ public class ArrayGenerator {
      * <pre>
      *      public void setTester(korat.testing.ITester tester) {
      *         this.tester = tester;
+     *         // only with --traceBuffer
+     *         if (tester != null)
+     *             this.trace = tester.getFieldTrace();
      *      }
      * 
      * </pre>
@@ -406,6 +475,7 @@ public class ArrayGenerator {
                   "  length = $1; " +
                   "  for (int i = 0; i < $1; i++) " +
                   "    values_ids[i] = -1; " +
+                  (fieldEpochs ? "  values_epochs = new long[$1]; " : "") +
                   "}");
         c.setModifiers(PUBLIC);
         clz.addConstructor(c);
@@ -415,6 +485,7 @@ public class ArrayGenerator {
         setTester.setBody("{ " 
                 + addTrace("initialize()") 
                 + "  tester = $1;"
+                + (traceBuffer ? "  if ($1 != null) trace = $1.getFieldTrace();" : "")
                 + "}");
         clz.addMethod(setTester);
 
@@ -498,6 +569,19 @@ public class ArrayGenerator {
 
     }
 
+    /**
+     * Returns the source that notifies the tester about the access of the
+     * element with the given id, or, with the <code>--traceBuffer</code>
+     * option, stores it to the trace buffer (with <code>--fieldEpochs</code>,
+     * only if the given epoch stamp differs from the epoch of the buffer).
+     */
+    private String getNotifySrc(String id, String epoch) {
+        if (traceBuffer)
+            return InstrumentationManager.getTraceBufferSrc("trace", "tester",
+                    id, fieldEpochs ? epoch : null);
+        return " tester.notifyFieldAccess(" + id + "); ";
+    }
+
     /**
      * Creates methods for KoratArray class, that manipulate array values.
      * 
@@ -528,11 +612,29 @@ public class ArrayGenerator {
      *      if (index >= length)
      *          throw new IndexOutOfBoundsException();
      *      // For Primitive Types:
-     *      return new <b>TypeWrapper</b> values[index];
+     *      return <b>TypeWrapper</b>.valueOf(values[index]);
      *      // ---------------------
      *      // For other types
      *      return values[index];
      * }
+     * 
+     * // Returns a copy of the elements, without boxing them (IKoratArray)
+     * public Object toArray() {
+     *      <b>Type</b>[] ret = new <b>Type</b>[length];
+     *      System.arraycopy(values, 0, ret, 0, length);
+     *      return ret;
+     * }
+     * 
+     * // For Primitive Types only (IKoratArray.Of<b>Type</b>):
+     * public <b>Type</b> get<b>Type</b>(int index) {
+     *      if (index >= length)
+     *          throw new IndexOutOfBoundsException();
+     *      return values[index];
+     * }
+     * 
+     * public void copyTo(<b>Type</b>[] dest, int destPos) {
+     *      System.arraycopy(values, 0, dest, destPos, length);
+     * }
      * </pre>
      * 
      */
@@ -564,7 +666,7 @@ public class ArrayGenerator {
         getValue.setBody(
                 "{" + 
                   addTrace("get($1)") +
-                  " tester.notifyFieldAccess(values_ids[$1]); " +
+                  getNotifySrc("values_ids[$1]", "values_epochs[$1]") +
                   " if ($1 >= length) " +
                   "    throw new IndexOutOfBoundsException(); " +
                   " return values[$1];" + "}");
@@ -594,7 +696,7 @@ public class ArrayGenerator {
                     addTrace("getValue($1)") +
                     "if ($1 >= length) " +
                     "    throw new IndexOutOfBoundsException(); " +                    
-                    "   return new " + compObjType + "(values[$1]);" +
+                    "   return " + compObjType + ".valueOf(values[$1]);" +
                     "}");
         } else
             getValues.setBody(
@@ -606,6 +708,45 @@ public class ArrayGenerator {
                     "}");
         clz.addMethod(getValues);
 
+        // --- Object toArray()
+        String arrayType = componentType.getName() + "[]";
+        CtMethod toArray = new CtMethod(objClass, "toArray", new CtClass[0],
+                clz);
+        toArray.setBody(
+                "{ " +
+                    addTrace("toArray()") +
+                "   " + arrayType + " ret = new " + componentType.getName() + "[length]; " +
+                "   System.arraycopy(values, 0, ret, 0, length); " +
+                "   return ret;" +
+                "}");
+        clz.addMethod(toArray);
+
+        if (!componentType.isPrimitive())
+            return;
+
+        // --- <Type> get<Type>(int index)
+        String suffix = getPrimitiveSuffix(componentType.getSimpleName());
+        CtMethod getPrimitive = new CtMethod(componentType, "get" + suffix,
+                new CtClass[] { CtClass.intType }, clz);
+        getPrimitive.setBody(
+                "{ " +
+                    addTrace("get" + suffix + "($1)") +
+                "   if ($1 >= length) " +
+                "      throw new IndexOutOfBoundsException(); " +
+                "   return values[$1];" +
+                "}");
+        clz.addMethod(getPrimitive);
+
+        // --- void copyTo(<Type>[] dest, int destPos)
+        CtMethod copyTo = new CtMethod(CtClass.voidType, "copyTo",
+                new CtClass[] { cp.get(arrayType), CtClass.intType }, clz);
+        copyTo.setBody(
+                "{ " +
+                    addTrace("copyTo($1, $2)") +
+                "   System.arraycopy(values, 0, $1, $2, length);" +
+                "}");
+        clz.addMethod(copyTo);
+
     }
     
 
@@ -712,7 +853,7 @@ public class ArrayGenerator {
         getValue.setBody(
                 "{" +
                    addTrace("getLength()") +
-                "  tester.notifyFieldAccess(length_id); " +
+                getNotifySrc("length_id", "length_epoch") +
                 "  return length;" + 
                 "}");
         clz.addMethod(getValue);
@@ -857,6 +998,70 @@ public class ArrayGenerator {
 
     }
     
+    /**
+     * Implements IKoratCopyable interface, with which
+     * <code>StructureCopier</code> copies korat arrays
+     * 
+     * <pre>
+     *  public Object __korat_newCopy(korat.testing.ITester tester) {
+     *    Korat_Array_<b>Type</b> ret = new Korat_Array_<b>Type</b>(values.length);
+     *    ret.initialize(tester);
+     *    return ret;
+     *  }
+     *  
+     *  public void __korat_copyTo(Object copy, StructureCopier copier) {
+     *    Korat_Array_<b>Type</b> c = (Korat_Array_<b>Type</b>) copy;
+     *    c.length = length;
+     *    
+     *    // For Primitive Types:
+     *    System.arraycopy(values, 0, c.values, 0, length);
+     *    
+     *    // For other types
+     *    for (int i = 0; i &lt; length; i++)
+     *      c.values[i] = (<b>Type</b>) copier.copy(values[i]);
+     *  }
+     * </pre>
+     * 
+     * @param clz
+     * @see IKoratCopyable
+     */
+    protected void implementIKoratCopyableInterface(CtClass clz)
+            throws CannotCompileException, NotFoundException {
+
+        CtMethod newCopy = new CtMethod(cp.get("java.lang.Object"),
+                IKoratCopyable.newCopyName,
+                new CtClass[] { cp.get(ITester.class.getName()) }, clz);
+        newCopy.setBody(
+                "{ " +
+                    addTrace("__korat_newCopy()") +
+                "   " + clz.getName() + " ret = new " + clz.getName() + "(values.length); " +
+                "   ret.initialize($1); " +
+                "   return ret;" +
+                "}");
+        clz.addMethod(newCopy);
+
+        CtMethod copyTo = new CtMethod(CtClass.voidType,
+                IKoratCopyable.copyToName, new CtClass[] {
+                        cp.get("java.lang.Object"),
+                        cp.get(StructureCopier.class.getName()) }, clz);
+        String copyValues;
+        if (componentType.isPrimitive())
+            copyValues = "   System.arraycopy(values, 0, c.values, 0, length); ";
+        else
+            copyValues = 
+                "   for (int i = 0; i < length; i++) " +
+                "      c.values[i] = (" + componentType.getName() + ") $2.copy(values[i]); ";
+        copyTo.setBody(
+                "{ " +
+                    addTrace("__korat_copyTo()") +
+                "   " + clz.getName() + " c = (" + clz.getName() + ") $1; " +
+                "   c.length = length; " +
+                    copyValues +
+                "}");
+        clz.addMethod(copyTo);
+
+    }
+    
     /**
      * Returns name of the wrapper class corresponding to the primitive type
      * 
@@ -864,10 +1069,26 @@ public class ArrayGenerator {
      * @return - name of its object counterpart (Boolean, Byte, Character, Double, Float, Integer, Long, Short)
      */
     private String getPrimitiveClassCounterpart (String primitiveClassName) {
-        if ("int".equals(primitiveClassName))
+        if ("char".equals(primitiveClassName))
+            return "Character";
+        else if ("int".equals(primitiveClassName))
             return "Integer";
+        else
+            return getPrimitiveSuffix(primitiveClassName);
+    }
+
+    /**
+     * Returns the suffix of the IKoratArray.Of<b>Type</b> interface (and of its
+     * get<b>Type</b> method) for the primitive type
+     * 
+     * @param primitiveClassName - name of primitive class (boolean, byte, char, double, float, int, long, short)
+     * @return - Boolean, Byte, Char, Double, Float, Int, Long, Short
+     */
+    private static String getPrimitiveSuffix (String primitiveClassName) {
+        if ("int".equals(primitiveClassName))
+            return "Int";
         else if ("char".equals(primitiveClassName))
-            return "Character";
+            return "Char";
         else if ("boolean".equals(primitiveClassName))
             return "Boolean";
         else if ("byte".equals(primitiveClassName))
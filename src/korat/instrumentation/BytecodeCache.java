@@ -0,0 +1,286 @@
+package korat.instrumentation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+
+/**
+ * <p>Content-addressed disk cache of instrumented bytecode.</p>
+ *
+ * <p>The key of a class that exists on the class path is the SHA-1 digest of
+ * its original class file, the Korat version (the class files of the
+ * instrumenters), the Javassist version and the instrumenter configuration
+ * (instrumenters, excluded packages and how getters store field accesses).
+ * Classes generated during the
+ * instrumentation are keyed by their name and the key of the class they
+ * were generated for (setter classes), or by their name only
+ * (<code>Korat_Array_*</code> classes).</p>
+ *
+ * <p>Classes served from the cache are not instrumented in the class pool.
+ * If a generated class is requested that is neither in the cache nor in the
+ * pool, the classes served from the cache are instrumented in the pool,
+ * which generates it.</p>
+ *
+ * <p>Entries are written atomically, so several virtual machines may share
+ * the cache directory.</p>
+ *
+ * @see AbstractInstrumenter#getBytecode(String)
+ * @author korat.team
+ */
+class BytecodeCache {
+
+    /**
+     * Class files of the code that determines the instrumented bytecode
+     */
+    private static final String[] KORAT_CLASSES = {
+            "korat/instrumentation/AbstractInstrumenter.class",
+            "korat/instrumentation/ArrayFieldInstrumenter.class",
+            "korat/instrumentation/ArrayGenerator.class",
+            "korat/instrumentation/CompoundInstrumenter.class",
+            "korat/instrumentation/CopyInstrumenter.class",
+            "korat/instrumentation/FieldInstrumenter.class",
+            "korat/instrumentation/IKoratCopyable.class",
+            "korat/instrumentation/InstrumentationManager.class",
+            "korat/instrumentation/NestedClassCreator.class",
+            "korat/instrumentation/SpecialConstructorInstrumenter.class",
+            "korat/instrumentation/StructureCopier.class",
+            "korat/instrumentation/bytecode/ArrayBytecodesVisitor.class",
+            "korat/instrumentation/bytecode/BytecodeInstruction.class",
+            "korat/instrumentation/bytecode/BytecodeUtils.class",
+            "korat/instrumentation/bytecode/JavassistInstructionVisitor.class",
+            "korat/instrumentation/bytecode/OperandStack.class",
+            "korat/instrumentation/bytecode/StackTracerVisitor.class",
+            "korat/instrumentation/bytecode/VisitorSupport.class" };
+
+    private static final Map<String, BytecodeCache> caches = new HashMap<String, BytecodeCache>();
+
+    /**
+     * Returns the cache in the given directory for the given instrumenter
+     * configuration
+     */
+    static BytecodeCache getInstance(String dirName, IInstrumenter instrumenter,
+            String[] excludePackages, boolean traceBuffer, boolean fieldEpochs) {
+        StringBuilder config = new StringBuilder();
+        config.append(instrumenter).append('\n');
+        if (traceBuffer)
+            config.append("traceBuffer\n");
+        if (fieldEpochs)
+            config.append("fieldEpochs\n");
+        if (excludePackages != null)
+            for (String p : excludePackages)
+                config.append(p).append(',');
+        String cacheId = new File(dirName).getAbsolutePath() + '\n' + config;
+
+        BytecodeCache ret = caches.get(cacheId);
+        if (ret == null) {
+            ret = new BytecodeCache(new File(dirName), config.toString());
+            caches.put(cacheId, ret);
+        }
+        return ret;
+    }
+
+    private final ClassPool cp;
+
+    private final File dir;
+
+    private final byte[] configDigest;
+
+    /**
+     * keys of the classes looked up so far
+     */
+    private final Map<String, String> keys = new HashMap<String, String>();
+
+    /**
+     * classes (from the class path) served from the cache
+     */
+    private final Set<String> served = new LinkedHashSet<String>();
+
+    private BytecodeCache(File dir, String config) {
+        // caches are kept per instrumentation mode as well
+        this.cp = InstrumentationManager.getClassPool();
+        this.dir = dir;
+        dir.mkdirs();
+
+        MessageDigest md = newDigest();
+        md.update(CtClass.version.getBytes());
+        md.update(config.getBytes());
+        ClassLoader loader = BytecodeCache.class.getClassLoader();
+        for (String name : KORAT_CLASSES) {
+            try {
+                md.update(readFully(loader.getResourceAsStream(name)));
+            } catch (Exception e) {
+                // without the class file, classes are still keyed by the
+                // rest of the configuration
+                md.update(name.getBytes());
+            }
+        }
+        configDigest = md.digest();
+    }
+
+    /**
+     * Returns the cached instrumented bytecode of the given class, or
+     * <code>null</code> if the cache does not contain it
+     */
+    byte[] get(String className) {
+        String key = getKey(className);
+        if (key == null)
+            return null;
+        File f = getFile(key);
+        if (!f.isFile())
+            return null;
+        byte[] data;
+        try {
+            data = readFully(new FileInputStream(f));
+        } catch (IOException e) {
+            return null;
+        }
+        if (cp.find(className) != null)
+            served.add(className);
+        return data;
+    }
+
+    /**
+     * Stores the instrumented bytecode of the given class
+     */
+    void put(String className, byte[] data) {
+        String key = getKey(className);
+        if (key == null)
+            return;
+        File f = getFile(key);
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(key, ".tmp", dir);
+            FileOutputStream fos = new FileOutputStream(tmp);
+            try {
+                fos.write(data);
+            } finally {
+                fos.close();
+            }
+            if (!tmp.renameTo(f) && !f.isFile())
+                throw new IOException("Cannot rename " + tmp + " to " + f);
+        } catch (IOException e) {
+            System.err.println("WARNING: cannot write " + className
+                    + " to bytecode cache: " + e.getMessage());
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+    }
+
+    /**
+     * Instruments the classes served from the cache in the pool if the given
+     * class may be generated by their instrumentation
+     *
+     * @return <code>false</code> if there were no such classes, or the given
+     *         class cannot be a generated class
+     */
+    boolean materialize(String className) throws CannotCompileException,
+            NotFoundException, IOException {
+        if (served.isEmpty() || !isGenerated(className))
+            return false;
+        List<String> names = new ArrayList<String>(served);
+        served.clear();
+        for (String name : names)
+            InstrumentationManager.instrumentClassIfNeeded(cp.get(name));
+        return true;
+    }
+
+    /**
+     * @return whether the class with the given name may be a setter class or
+     *         a Korat array class (the class loader is also asked for classes
+     *         that don't exist at all, e.g. when finitizations look up class
+     *         names)
+     */
+    private static boolean isGenerated(String className) {
+        if (className.startsWith(ArrayGenerator.ARRAY_FULLNAME_PREFIX))
+            return true;
+        int i = className.lastIndexOf('$');
+        return i >= 0
+                && className.substring(i + 1).matches(
+                        InstrumentationManager.getSetterClassName(".*"));
+    }
+
+    private String getKey(String className) {
+        String key = keys.get(className);
+        if (key != null)
+            return key;
+
+        MessageDigest md = newDigest();
+        md.update(configDigest);
+        URL url = cp.find(className);
+        if (url != null) {
+            try {
+                md.update(readFully(url.openStream()));
+            } catch (IOException e) {
+                return null;
+            }
+        } else if (className.startsWith(ArrayGenerator.ARRAY_FULLNAME_PREFIX)) {
+            md.update(className.getBytes());
+        } else {
+            // generated for the outer class
+            int i = className.lastIndexOf('$');
+            String outerKey = i < 0 ? null : getKey(className.substring(0, i));
+            if (outerKey == null)
+                return null;
+            md.update(outerKey.getBytes());
+            md.update(className.getBytes());
+        }
+
+        key = toHex(md.digest());
+        keys.put(className, key);
+        return key;
+    }
+
+    private File getFile(String key) {
+        return new File(dir, key + ".class");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf)) > 0)
+                bos.write(buf, 0, n);
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+}
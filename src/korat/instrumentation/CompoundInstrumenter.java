@@ -33,6 +33,10 @@ class CompoundInstrumenter extends AbstractInstrumenter {
         return instrumenters.remove(instr);
     }
 
+    public String toString() {
+        return super.toString() + instrumenters;
+    }
+
     @Override
     protected void instrument(CtClass clz) throws CannotCompileException,
             NotFoundException, IOException {
@@ -0,0 +1,144 @@
+package korat.instrumentation;
+
+import static javassist.Modifier.isAbstract;
+import static javassist.Modifier.isStatic;
+
+import java.io.IOException;
+
+import javassist.CannotCompileException;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.NotFoundException;
+import korat.testing.ITester;
+
+/**
+ * This instrumenter implements the <code>IKoratCopyable</code> interface,
+ * with which <code>StructureCopier</code> copies test cases into fresh
+ * objects. It runs after the other instrumenters, so the fields it copies
+ * are the fields of the instrumented class (with korat arrays instead of
+ * arrays), and the field reads in the added methods are not replaced with
+ * the special getters (copying doesn't report field accesses).
+ *
+ * <p>
+ * Enums are not made copyable, so their constants are shared by the test
+ * case and its copy.
+ * </p>
+ *
+ * @see IKoratCopyable
+ * @see StructureCopier
+ * @see AbstractInstrumenter
+ *
+ * @author korat.team
+ *
+ */
+class CopyInstrumenter extends AbstractInstrumenter {
+
+    @Override
+    protected void instrument(CtClass clz) throws CannotCompileException,
+            NotFoundException, IOException {
+        if (clz.isEnum())
+            return;
+        addCopyableInterface(clz);
+        if (!isAbstract(clz.getModifiers()))
+            addNewCopyMethod(clz);
+        addCopyToMethod(clz);
+    }
+
+    protected void addCopyableInterface(CtClass clz) throws NotFoundException {
+        clz.addInterface(clz.getClassPool().get(IKoratCopyable.class.getName()));
+    }
+
+    /**
+     * Adds the method that creates the copy with the korat-special
+     * constructor:
+     *
+     * <pre>
+     *     public Object __korat_newCopy(ITester tester) {
+     *         return new <b>Foo</b>(tester);
+     *     }
+     * </pre>
+     *
+     * @param clz
+     * @throws NotFoundException
+     * @throws CannotCompileException
+     * @see SpecialConstructorInstrumenter
+     */
+    protected void addNewCopyMethod(CtClass clz) throws NotFoundException,
+            CannotCompileException {
+        CtMethod newCopy = new CtMethod(clz.getClassPool().get(
+                Object.class.getName()), IKoratCopyable.newCopyName,
+                new CtClass[] { clz.getClassPool().get(ITester.class.getName()) },
+                clz);
+        newCopy.setBody("{ return new " + clz.getName() + "($1); }");
+        clz.addMethod(newCopy);
+    }
+
+    /**
+     * Adds the method that sets the fields of the copy:
+     *
+     * <pre>
+     *     public void __korat_copyTo(Object copy, StructureCopier copier) {
+     *         // if superclass is instrumented
+     *         super.__korat_copyTo(copy, copier);
+     *
+     *         <b>Foo</b> c = (<b>Foo</b>) copy;
+     *
+     *         // - For Each Primitive Field -
+     *         c.<b>size</b> = <b>size</b>;
+     *
+     *         // - For Each Non-Primitive Field (including korat arrays) -
+     *         c.<b>left</b> = (<b>Node</b>) copier.copy(<b>left</b>);
+     *     }
+     * </pre>
+     *
+     * Korat fields (such as the tester and the field ids) are not copied,
+     * and neither are the original array fields, which are replaced with the
+     * korat array fields.
+     *
+     * @param clz
+     * @throws NotFoundException
+     * @throws CannotCompileException
+     */
+    protected void addCopyToMethod(CtClass clz) throws NotFoundException,
+            CannotCompileException {
+
+        CtMethod copyTo = new CtMethod(CtClass.voidType,
+                IKoratCopyable.copyToName, new CtClass[] {
+                        clz.getClassPool().get(Object.class.getName()),
+                        clz.getClassPool().get(StructureCopier.class.getName()) },
+                clz);
+
+        StringBuilder src = new StringBuilder();
+        src.append("{ ");
+        if (InstrumentationManager.isAlreadyInstrumented(clz.getSuperclass()))
+            src.append("super." + IKoratCopyable.copyToName + "($1, $2); ");
+        src.append(clz.getName() + " c = (" + clz.getName() + ") $1; ");
+        for (CtField f : clz.getDeclaredFields()) {
+            if (!shouldCopyField(f))
+                continue;
+            String fieldName = f.getName();
+            CtClass type = f.getType();
+            if (type.isPrimitive())
+                src.append("c." + fieldName + " = " + fieldName + "; ");
+            else
+                src.append("c." + fieldName + " = (" + type.getName()
+                        + ") $2.copy(" + fieldName + "); ");
+        }
+        src.append("}");
+
+        copyTo.setBody(src.toString());
+        clz.addMethod(copyTo);
+
+    }
+
+    private boolean shouldCopyField(CtField f) throws NotFoundException {
+        String fieldName = f.getName();
+        if (isStatic(f.getModifiers()))
+            return false;
+        if (InstrumentationManager.isKoratField(fieldName))
+            return fieldName.startsWith(InstrumentationManager._KORAT_ARRAY_FIELD_PREFIX);
+        return !f.getType().isArray();
+    }
+
+}
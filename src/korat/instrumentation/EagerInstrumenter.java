@@ -0,0 +1,217 @@
+package korat.instrumentation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+import javassist.bytecode.ClassFile;
+import korat.loading.filter.FilterManager;
+import korat.loading.filter.IComparingFilter;
+
+/**
+ * <p>Instruments the classes the class under test (transitively) refers to
+ * at startup, with several threads, instead of one class at a time when the
+ * classes are loaded.</p>
+ *
+ * <p>Each thread takes classes from the list of reachable classes and
+ * instruments them in its own class pool, with its own instrumenter. A class
+ * may be instrumented in more than one pool (e.g. the superclass of classes
+ * taken by different threads), which gives the same bytecode, since
+ * superclasses are always instrumented before their subclasses.</p>
+ *
+ * @see korat.loading.InstrumentingClassLoader#defineInstrumentedClasses(Map)
+ * @author korat.team
+ *
+ */
+public class EagerInstrumenter {
+
+    private final List<String> classNames;
+
+    private int next;
+
+    private final Map<String, byte[]> bytecodes = new HashMap<String, byte[]>();
+
+    private final Map<String, String[]> supertypes = new HashMap<String, String[]>();
+
+    private Throwable failure;
+
+    /**
+     * @param className -
+     *            name of the class under test
+     */
+    public EagerInstrumenter(String className) {
+        classNames = findReachableClasses(className);
+    }
+
+    /**
+     * @return names of the classes to be instrumented
+     */
+    public List<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * Instruments the classes with the given number of threads.
+     *
+     * @return instrumented bytecode of the classes and of the classes
+     *         generated during the instrumentation, with superclasses and
+     *         interfaces before the classes that extend them. Empty if some
+     *         class could not be instrumented (all classes are then
+     *         instrumented when loaded).
+     */
+    public Map<String, byte[]> instrument(int threads) {
+
+        Thread[] workers = new Thread[Math.max(1, Math.min(threads,
+                classNames.size()))];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Worker(), "korat-instrumenter-" + i);
+            workers[i].start();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                workers[i].join();
+            } catch (InterruptedException e) {
+                i--;
+            }
+        }
+
+        if (failure != null) {
+            System.err.println("WARNING: eager instrumentation failed ("
+                    + failure + "), classes are instrumented when loaded");
+            return new LinkedHashMap<String, byte[]>();
+        }
+
+        Map<String, byte[]> ret = new LinkedHashMap<String, byte[]>();
+        for (String name : new TreeSet<String>(bytecodes.keySet()))
+            addInDependencyOrder(name, ret);
+        return ret;
+
+    }
+
+    private void addInDependencyOrder(String name, Map<String, byte[]> ret) {
+        if (ret.containsKey(name) || !bytecodes.containsKey(name))
+            return;
+        for (String s : supertypes.get(name))
+            addInDependencyOrder(s, ret);
+        ret.put(name, bytecodes.get(name));
+    }
+
+    private synchronized String take() {
+        if (failure != null || next == classNames.size())
+            return null;
+        return classNames.get(next++);
+    }
+
+    private synchronized void fail(Throwable t) {
+        if (failure == null)
+            failure = t;
+    }
+
+    private synchronized void addResult(String name, byte[] bytecode,
+            String[] types) {
+        if (bytecodes.containsKey(name))
+            return;
+        bytecodes.put(name, bytecode);
+        supertypes.put(name, types);
+    }
+
+    /**
+     * Finds the classes that Korat would instrument among the classes the
+     * given class (transitively) refers to.
+     */
+    private static List<String> findReachableClasses(String className) {
+        ClassPool pool = new ClassPool(true);
+        IComparingFilter filter = FilterManager.getFilter();
+        Set<String> found = new LinkedHashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        found.add(className);
+        queue.add(className);
+        while (!queue.isEmpty()) {
+            String name = queue.removeFirst();
+            CtClass clz;
+            try {
+                clz = pool.get(name);
+            } catch (NotFoundException e) {
+                // left for the class loader to report, if ever loaded
+                found.remove(name);
+                continue;
+            }
+            for (Object ref : clz.getRefClasses()) {
+                String refName = getElementClassName((String) ref);
+                if (refName != null && filter.allowProcessing(refName)
+                        && found.add(refName))
+                    queue.add(refName);
+            }
+            clz.detach();
+        }
+        return new ArrayList<String>(found);
+    }
+
+    /**
+     * @return name of the element class for array class names, the given
+     *         name for other classes, or <code>null</code> for arrays of
+     *         primitives
+     */
+    private static String getElementClassName(String name) {
+        while (name.endsWith("[]"))
+            name = name.substring(0, name.length() - 2);
+        if (!name.startsWith("["))
+            return name;
+        name = name.substring(name.lastIndexOf('[') + 1);
+        if (!name.startsWith("L"))
+            return null;
+        return name.substring(1, name.length() - 1).replace('/', '.');
+    }
+
+    /* -------------------------------------------------------------------------
+     * Worker.
+     * ------------------------------------------------------------------------- */
+
+    private class Worker implements Runnable {
+
+        public void run() {
+            ClassPool pool = new ClassPool(true);
+            InstrumentationManager.setCurrentInstrumenter(InstrumentationManager.createInstrumenter());
+            try {
+                String name;
+                // interfaces are not instrumented, but loaded as they are
+                List<CtClass> results = new ArrayList<CtClass>();
+                while ((name = take()) != null) {
+                    CtClass clz = pool.get(name);
+                    clz.stopPruning(true);
+                    if (clz.isInterface())
+                        results.add(clz);
+                    else
+                        InstrumentationManager.instrumentClassIfNeeded(clz);
+                }
+                results.addAll(InstrumentationManager.getAlreadyInstrumented(pool));
+                for (CtClass clz : results) {
+                    ClassFile cf = clz.getClassFile2();
+                    String[] interfaceNames = cf.getInterfaces();
+                    String[] types = new String[interfaceNames.length + 1];
+                    types[0] = cf.getSuperclass();
+                    System.arraycopy(interfaceNames, 0, types, 1,
+                            interfaceNames.length);
+                    clz.stopPruning(true);
+                    addResult(clz.getName(), clz.toBytecode(), types);
+                }
+            } catch (Throwable t) {
+                fail(t);
+            } finally {
+                InstrumentationManager.setCurrentInstrumenter(null);
+                InstrumentationManager.removeClassPool(pool);
+            }
+        }
+
+    }
+
+}
@@ -18,6 +18,7 @@ import static javassist.Modifier.*;
  * For all declared fields, this instrumenter does the following:
  * <ul>
  *   <li> adds "id field" of type int </li>
+ *   <li> adds "epoch field" of type long (with <code>--fieldEpochs</code>) </li>
  *   <li> adds special getter method </li>
  *   <li> creates nested setter class </li>
  *   <li> adds get setter method.</li>
@@ -127,6 +128,9 @@ class FieldInstrumenter extends AbstractInstrumenter {
     protected void handleFieldDeclaration(CtClass clz, CtField f)
             throws NotFoundException, CannotCompileException {
         addIdField(clz, f);
+        if (InstrumentationManager.useFieldEpochs()
+                && InstrumentationManager.hasTraceField(clz))
+            addEpochField(clz, f);
         addGetterMethod(clz, f);
         createNestedSetterClass(clz, f);
         addGetSetterMethod(clz, f);
@@ -148,6 +152,24 @@ class FieldInstrumenter extends AbstractInstrumenter {
         clz.addField(idField, "-1");
     }
 
+    /**
+     * Adds one extra <code>long</code> field, in which the getter stamps the
+     * epoch of the trace buffer (the number of the predicate invocation) when
+     * it appends the access of the field to the buffer. The getter doesn't
+     * append the access again until the epoch changes.
+     * 
+     * @param clz
+     * @param f
+     * @throws CannotCompileException
+     */
+    protected void addEpochField(CtClass clz, CtField f)
+            throws CannotCompileException {
+        String epochFieldName = InstrumentationManager.getEpochFieldName(f.getName());
+        CtField epochField = new CtField(CtClass.longType, epochFieldName, clz);
+        epochField.setModifiers(TRANSIENT);
+        clz.addField(epochField);
+    }
+
     /**
      * Adds special getter method which before returning the value of the field
      * notifies the instance of the <code>ITestCradle</code> about the field access.
@@ -183,12 +205,37 @@ class FieldInstrumenter extends AbstractInstrumenter {
      *         return foo;
      *     }  
      * </pre>
+     * If the class has the trace buffer field (see 
+     * <code>SpecialConstructorInstrumenter</code>), the getter appends the
+     * id to the trace buffer instead:
+     * <pre>
+     *     public int __korat_get_<b>foo</b>() {
+     *         FieldTrace tr = __myTrace;
+     *         if (tr != null)
+     *             tr.add(__id_<b>foo</b>);
+     *         else if (__myTester != null)
+     *             __myTester.notifyFieldAccess(__id_<b>foo</b>);
+     *         return foo;
+     *     }  
+     * </pre>
+     * If the class has the epoch field of the field, the access is appended
+     * only if <code>__epoch_<b>foo</b></code> differs from the epoch of the
+     * buffer, and the getter then sets it to the epoch.
      * @param clz
      * @param fieldName
      * @param idFieldName
      * @return the source for the "korat getter method"
      */
     protected String getGetterSrc(CtClass clz, String fieldName, String idFieldName) {
+        if (InstrumentationManager.hasTraceField(clz)) {
+            String epochFieldName = InstrumentationManager.getEpochFieldName(fieldName);
+            if (!hasDeclaredField(clz, epochFieldName))
+                epochFieldName = null;
+            return "{ " + InstrumentationManager.getTraceBufferSrc(
+                    InstrumentationManager.TRACE_FIELD_NAME,
+                    InstrumentationManager.TESTER_FIELD_NAME, idFieldName,
+                    epochFieldName) + " return " + fieldName + "; }";
+        }
         StringBuilder getterBody = new StringBuilder();
         getterBody.append("'{' "); 
         getterBody.append("  if ({0} != null)");
@@ -198,6 +245,15 @@ class FieldInstrumenter extends AbstractInstrumenter {
         return MessageFormat.format(getterBody.toString(), 
                 InstrumentationManager.TESTER_FIELD_NAME, idFieldName, fieldName);
     }
+
+    private static boolean hasDeclaredField(CtClass clz, String fieldName) {
+        try {
+            clz.getDeclaredField(fieldName);
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
     
     /**
      * <p>
@@ -278,7 +334,7 @@ class FieldInstrumenter extends AbstractInstrumenter {
 
         String setterClassName = InstrumentationManager.getSetterClassName(fieldName);
         CtClass setterClz = NestedClassCreator.createNestedClass(
-                setterClassName, clz, cp.get(Setter.class.getName()));
+                setterClassName, clz, clz.getClassPool().get(Setter.class.getName()));
 
         // add reference field to this obj
         CtField myRef = new CtField(clz, InstrumentationManager.SETTER_THIS_FIELD_NAME, setterClz);
@@ -292,7 +348,7 @@ class FieldInstrumenter extends AbstractInstrumenter {
         // add appropriate set() implementatin
         CtClass param = f.getType();
         if (!param.isPrimitive())
-            param = cp.get("java.lang.Object");
+            param = clz.getClassPool().get("java.lang.Object");
         CtClass[] params = new CtClass[] { param };
 
         CtMethod setterMethod = new CtMethod(CtClass.voidType, "set", params,
@@ -302,7 +358,7 @@ class FieldInstrumenter extends AbstractInstrumenter {
 
         setterClz.addMethod(setterMethod);
 
-        InstrumentationManager.alreadyInstrumented.add(setterClz);
+        InstrumentationManager.addToAlreadyInstrumented(setterClz);
 
     }
     
@@ -347,7 +403,7 @@ class FieldInstrumenter extends AbstractInstrumenter {
         String idFieldName = InstrumentationManager.getIdFieldName(fieldName);
         String getterMethodName = InstrumentationManager.getGetSetterName(fieldName);    
         String setterClassName = InstrumentationManager.getSetterClassName(fieldName);
-        CtClass isetter = cp.get(Setter.class.getName());
+        CtClass isetter = clz.getClassPool().get(Setter.class.getName());
         CtMethod getSetterMethod = new CtMethod(isetter, getterMethodName,
                 new CtClass[] { CtClass.intType }, clz);        
         String getSetterSrc = getGetSetterSrc(clz, fieldName, idFieldName,
@@ -39,6 +39,18 @@ public interface IKoratArray extends IKoratTouchable {
      */  
     Object getValue(int index);
 
+    /**
+     * Returns a copy of the elements of the korat array, as an array of its
+     * component type (<code>int[]</code> for korat arrays of
+     * <code>int</code>, for example), so primitive elements are not boxed.
+     * Field accesses are not reported to the tester.
+     * 
+     * @see ArrayGenerator#createArrayElementMethods(javassist.CtClass)
+     * 
+     * @return - new array with the first <code>getLength()</code> elements
+     */
+    Object toArray();
+
     /**
      * @see ArrayGenerator#createArrayElementMethods(javassist.CtClass) 
      */
@@ -48,5 +60,100 @@ public interface IKoratArray extends IKoratTouchable {
      *@see ArrayGenerator#createLengthMethods(javassist.CtClass) 
      */
     Setter get_length_setter(int field_id);
-    
+
+    /* -------------------------------------------------------------------------
+     * Korat arrays of primitive types implement one of the following
+     * interfaces, which read the elements without boxing them. As with
+     * getValue, the index must be between 0 and KoratArray length, and field
+     * accesses are not reported to the tester.
+     * ------------------------------------------------------------------------- */
+
+    /**
+     * Korat arrays of <code>boolean</code>
+     */
+    interface OfBoolean extends IKoratArray {
+
+        boolean getBoolean(int index);
+
+        void copyTo(boolean[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>byte</code>
+     */
+    interface OfByte extends IKoratArray {
+
+        byte getByte(int index);
+
+        void copyTo(byte[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>char</code>
+     */
+    interface OfChar extends IKoratArray {
+
+        char getChar(int index);
+
+        void copyTo(char[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>short</code>
+     */
+    interface OfShort extends IKoratArray {
+
+        short getShort(int index);
+
+        void copyTo(short[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>int</code>
+     */
+    interface OfInt extends IKoratArray {
+
+        int getInt(int index);
+
+        void copyTo(int[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>long</code>
+     */
+    interface OfLong extends IKoratArray {
+
+        long getLong(int index);
+
+        void copyTo(long[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>float</code>
+     */
+    interface OfFloat extends IKoratArray {
+
+        float getFloat(int index);
+
+        void copyTo(float[] dest, int destPos);
+
+    }
+
+    /**
+     * Korat arrays of <code>double</code>
+     */
+    interface OfDouble extends IKoratArray {
+
+        double getDouble(int index);
+
+        void copyTo(double[] dest, int destPos);
+
+    }
+
 }
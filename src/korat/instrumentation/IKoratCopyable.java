@@ -0,0 +1,50 @@
+package korat.instrumentation;
+
+import korat.testing.ITester;
+
+/**
+ * <p>
+ * IKoratCopyable interface is applied to all instrumented classes and to
+ * korat arrays. It allows <code>StructureCopier</code> to copy a test case
+ * into fresh objects without reflection or serialization.
+ *
+ * <p>
+ * The default implementation of this interface is provided during
+ * instrumentation.
+ *
+ * @see CopyInstrumenter
+ * @see StructureCopier
+ * @author korat.team
+ *
+ */
+public interface IKoratCopyable {
+
+    public static String newCopyName = "__korat_newCopy";
+
+    public static String copyToName = "__korat_copyTo";
+
+    /**
+     * Creates a new object of the same class, with the korat-special
+     * constructor (or, for korat arrays, with the same maximal length). Its
+     * fields are set by <code>__korat_copyTo</code>.
+     *
+     * @param tester -
+     *            tester of the new object
+     * @return new object
+     */
+    public Object __korat_newCopy(ITester tester);
+
+    /**
+     * Sets the fields of the given copy (created by
+     * <code>__korat_newCopy</code>) to the values of the fields of this
+     * object. Objects referenced by the fields are replaced with their
+     * copies, obtained from the copier.
+     *
+     * @param copy -
+     *            object to set the fields of
+     * @param copier -
+     *            copier of the whole structure
+     */
+    public void __korat_copyTo(Object copy, StructureCopier copier);
+
+}
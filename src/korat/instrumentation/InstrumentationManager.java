@@ -2,12 +2,16 @@ package korat.instrumentation;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javassist.CannotCompileException;
+import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.NotFoundException;
+import korat.config.ConfigManager;
 
 /**
  * The place for various constants, utility method and such related
@@ -23,15 +27,35 @@ import javassist.NotFoundException;
  */
 public class InstrumentationManager {
     
-    private static AbstractInstrumenter instrumenter = null;
+    private static AbstractInstrumenter instrumenter = createInstrumenter();
 
-    static {
+    /**
+     * instrumenters of the instrumentation modes, which differ in the
+     * instrumenters they consist of
+     */
+    private static final Map<String, AbstractInstrumenter> modeInstrumenters = new HashMap<String, AbstractInstrumenter>();
+
+    /**
+     * instrumenter used by the current thread, if not the default one
+     */
+    private static final ThreadLocal<AbstractInstrumenter> currentInstrumenter = new ThreadLocal<AbstractInstrumenter>();
+
+    /**
+     * Creates a new instance of the configured instrumenter. Instrumenters
+     * keep state while instrumenting a class, so threads that instrument
+     * classes in parallel (each in its own class pool) need their own
+     * instances. Copy methods are generated only if test cases are copied
+     * (see <code>useCopyMethods</code>).
+     */
+    static AbstractInstrumenter createInstrumenter() {
         CompoundInstrumenter ci = new CompoundInstrumenter();
         ci.add(new SpecialConstructorInstrumenter());
         ci.add(new FieldInstrumenter());
         ci.add(new ArrayFieldInstrumenter());
+        if (useCopyMethods())
+            ci.add(new CopyInstrumenter());
         //ci.add(new TouchInstrumenter());
-        instrumenter = ci;
+        return ci;
     }
     
     public static IInstrumenter getInstrumenter() {
@@ -39,12 +63,112 @@ public class InstrumentationManager {
     }
 
     /**
-     * global repository of the instrumented classes
+     * @return instrumenter of the current instrumentation mode
+     */
+    static synchronized AbstractInstrumenter getModeInstrumenter() {
+        String mode = getInstrumentationMode();
+        AbstractInstrumenter ret = modeInstrumenters.get(mode);
+        if (ret == null) {
+            ret = createInstrumenter();
+            modeInstrumenters.put(mode, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Makes <code>instrumentClassIfNeeded</code> use the given instrumenter
+     * in the current thread.
+     * 
+     * @param instr -
+     *            instrumenter of the current thread, or <code>null</code>
+     *            for the default one
+     */
+    static void setCurrentInstrumenter(AbstractInstrumenter instr) {
+        currentInstrumenter.set(instr);
+    }
+
+    /**
+     * class pools of the instrumentation modes other than the default one
+     */
+    private static final Map<String, ClassPool> modeClassPools = new HashMap<String, ClassPool>();
+
+    /**
+     * Returns the class pool shared by the class loaders of all sessions that
+     * use the current instrumentation mode (see
+     * <code>getInstrumentationMode</code>). Classes are instrumented once
+     * per pool, so a class instrumented in one mode is never served to a
+     * session that uses another one.
+     */
+    public static synchronized ClassPool getClassPool() {
+        String mode = getInstrumentationMode();
+        if (mode == null)
+            return ClassPool.getDefault();
+        ClassPool ret = modeClassPools.get(mode);
+        if (ret == null) {
+            ret = new ClassPool(true);
+            modeClassPools.put(mode, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * @return name of the current instrumentation mode, or <code>null</code>
+     *         for the default one
+     */
+    static String getInstrumentationMode() {
+        String mode = "";
+        if (useFieldEpochs())
+            mode = "fieldEpochs";
+        else if (useTraceBuffer())
+            mode = "traceBuffer";
+        if (useCopyMethods())
+            mode += "+copy";
+        return mode.length() == 0 ? null : mode;
+    }
+
+    /**
+     * global repository of the instrumented classes, for each class pool
      */
-    protected static Set<CtClass> alreadyInstrumented = new HashSet<CtClass>();
+    private static final Map<ClassPool, Set<CtClass>> alreadyInstrumented = new HashMap<ClassPool, Set<CtClass>>();
+
+    /**
+     * @return the classes instrumented (or generated) in the given class
+     *         pool, which can be iterated while other classes are instrumented
+     */
+    static synchronized Set<CtClass> getAlreadyInstrumented(ClassPool cp) {
+        return new HashSet<CtClass>(getInstrumentedSet(cp));
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private static Set<CtClass> getInstrumentedSet(ClassPool cp) {
+        Set<CtClass> ret = alreadyInstrumented.get(cp);
+        if (ret == null) {
+            ret = new HashSet<CtClass>();
+            alreadyInstrumented.put(cp, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Forgets the classes instrumented in the given class pool (which is not
+     * going to be used any more)
+     */
+    static synchronized void removeClassPool(ClassPool cp) {
+        alreadyInstrumented.remove(cp);
+    }
+
+    static synchronized boolean isAlreadyInstrumented(CtClass clz) {
+        return clz != null
+                && getInstrumentedSet(clz.getClassPool()).contains(clz);
+    }
     
-    public static void addToAlreadyInstrumented(CtClass clz) {
-        alreadyInstrumented.add(clz);
+    /**
+     * @return <code>false</code> if the class has already been added
+     */
+    public static synchronized boolean addToAlreadyInstrumented(CtClass clz) {
+        return getInstrumentedSet(clz.getClassPool()).add(clz);
     }
 
     /**
@@ -60,19 +184,23 @@ public class InstrumentationManager {
             throws CannotCompileException, NotFoundException, IOException {
         if (clz.isInterface())
             return;
-        if (!alreadyInstrumented.contains(clz)) {
-            alreadyInstrumented.add(clz);
-            instrumenter.instrument(clz);
+        // checked and added at once, so that the class is instrumented by
+        // one thread only
+        if (addToAlreadyInstrumented(clz)) {
+            AbstractInstrumenter instr = currentInstrumenter.get();
+            if (instr == null)
+                instr = getModeInstrumenter();
+            instr.instrument(clz);
         }
     }
     
     /**
-     * Loads all instrumented classes using class loader cl
+     * Loads all classes instrumented in the current mode using class loader cl
      * 
      * @param cl
      */
     public static void loadAllClasses(ClassLoader cl) {
-        for (CtClass cls : alreadyInstrumented) 
+        for (CtClass cls : getAlreadyInstrumented(getClassPool())) 
             try {
                 cls.toClass(cl, null);
             } catch (CannotCompileException e) {
@@ -84,8 +212,12 @@ public class InstrumentationManager {
 
     public static final String TESTER_FIELD_NAME = KORAT_FIELD_PREFIX + "myTester";
     
+    public static final String TRACE_FIELD_NAME = KORAT_FIELD_PREFIX + "myTrace";
+    
     public static final String ID_FIELD_PREFIX = KORAT_FIELD_PREFIX + "id_";
 
+    public static final String EPOCH_FIELD_PREFIX = KORAT_FIELD_PREFIX + "epoch_";
+
     public static final String GETTER_PREFIX = KORAT_FIELD_PREFIX + "_get_";
 
     public static final String SETTER_THIS_FIELD_NAME = KORAT_FIELD_PREFIX + "_this";
@@ -118,6 +250,102 @@ public class InstrumentationManager {
         return methodName.startsWith(KORAT_FIELD_PREFIX);
     }
 
+    /**
+     * @return whether the classes are instrumented (now) to store field 
+     * accesses to the trace buffer of the tester
+     * @see korat.testing.FieldTrace
+     */
+    static boolean useTraceBuffer() {
+        ConfigManager config = ConfigManager.getInstance();
+        return config.traceBuffer || config.fieldEpochs;
+    }
+
+    /**
+     * @return whether the classes are instrumented (now) to stamp objects 
+     * with the epoch of the trace buffer, to skip the fields already accessed
+     * in the current predicate invocation
+     * @see korat.testing.FieldTrace#getEpoch()
+     */
+    static boolean useFieldEpochs() {
+        return ConfigManager.getInstance().fieldEpochs;
+    }
+
+    /**
+     * @return whether the classes are instrumented (now) with the methods
+     * that copy test cases
+     * @see korat.testing.impl.TestCradle#copyTestCase(Object)
+     */
+    static boolean useCopyMethods() {
+        return ConfigManager.getInstance().copyTestCases;
+    }
+
+    /**
+     * @param clz - instrumented class
+     * @return whether the given class has (or inherits) the field that holds
+     * the trace buffer of the tester
+     */
+    static boolean hasTraceField(CtClass clz) {
+        try {
+            clz.getField(TRACE_FIELD_NAME);
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the source that appends the index of the accessed field to the
+     * trace buffer, or notifies the tester if it has no buffer. 
+     * 
+     * @param traceField - name of the field that holds the trace buffer
+     * @param testerField - name of the field that holds the tester
+     * @param index - expression that gives the index of the accessed field
+     * @return the source of the statement
+     */
+    static String getTraceBufferSrc(String traceField, String testerField, 
+            String index) {
+        return getTraceBufferSrc(traceField, testerField, index, null);
+    }
+
+    /**
+     * Returns the source that appends the index of the accessed field to the
+     * trace buffer, unless the field is stamped with the current epoch of the
+     * buffer, or notifies the tester if it has no buffer. 
+     * 
+     * @param traceField - name of the field that holds the trace buffer
+     * @param testerField - name of the field that holds the tester
+     * @param index - expression that gives the index of the accessed field
+     * @param epoch - expression that gives the epoch stamp of the accessed
+     *            field (<code>long</code>), or <code>null</code> to append
+     *            all accesses
+     * @return the source of the statement
+     */
+    static String getTraceBufferSrc(String traceField, String testerField, 
+            String index, String epoch) {
+        StringBuilder src = new StringBuilder();
+        if (epoch != null) {
+            src.append("'{' korat.testing.FieldTrace tr = {0}; ");
+            src.append("  if (tr != null) '{' ");
+            src.append("    long e = tr.getEpoch(); ");
+            src.append("    if ({3} != e) '{' ");
+            src.append("      {3} = e; ");
+            src.append("      tr.add({2}); ");
+            src.append("    '}' ");
+            src.append("  '}' else if ({1} != null) ");
+            src.append("    {1}.notifyFieldAccess({2}); ");
+            src.append("'}' ");
+            return MessageFormat.format(src.toString(), traceField, 
+                    testerField, index, epoch);
+        }
+        src.append("'{' korat.testing.FieldTrace tr = {0}; ");
+        src.append("  if (tr != null) ");
+        src.append("    tr.add({2}); ");
+        src.append("  else if ({1} != null) ");
+        src.append("    {1}.notifyFieldAccess({2}); ");
+        src.append("'}' ");
+        return MessageFormat.format(src.toString(), traceField, testerField, index);
+    }
+
     public static String getGetterName(String fieldName) {
         return GETTER_PREFIX + fieldName;
     }
@@ -126,6 +354,10 @@ public class InstrumentationManager {
         return ID_FIELD_PREFIX + fieldName;
     }
 
+    public static String getEpochFieldName(String fieldName) {
+        return EPOCH_FIELD_PREFIX + fieldName;
+    }
+
     public static String getGetSetterName(String fieldName) {
         return MessageFormat.format(GETSETTER_TEMPLATE,
                 new Object[] { fieldName });
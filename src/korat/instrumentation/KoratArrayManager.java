@@ -3,6 +3,7 @@ package korat.instrumentation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 
+import korat.loading.InstrumentingClassLoader;
 import korat.testing.ITester;
 import korat.testing.impl.TestCradle;
 import korat.utils.ReflectionUtils;
@@ -32,16 +33,39 @@ public final class KoratArrayManager {
      * @return - Generated KoratArray_<b>Type</b> Class
      */
     public static Class createArrayClass(Class arrayClass) throws Exception {
-        Class clz = new korat.instrumentation.ArrayGenerator(arrayClass).getArrayClass();
+        ClassLoader loader = TestCradle.getInstance().getClassLoader();
+        if (loader instanceof InstrumentingClassLoader) {
+            // generated ahead of time
+            String name = ArrayGenerator.getArrayClassName(
+                    getCtClassName(arrayClass.getComponentType()));
+            if (((InstrumentingClassLoader) loader).hasInstrumentedClass(name))
+                return loader.loadClass(name);
+        }
+
+        Class clz;
+        // korat array classes are generated in the class pool shared by 
+        // all sessions in the same mode
+        synchronized (InstrumentationManager.getClassPool()) {
+            clz = new korat.instrumentation.ArrayGenerator(arrayClass).getArrayClass();
+        }
 
         //COMPAT1.4
         //clz = TestCradle.getInstance().getClassLoader().loadClass(
         //          clz.getCanonicalName());
-        clz = TestCradle.getInstance().getClassLoader().loadClass(
-                clz.getName());        
+        clz = loader.loadClass(clz.getName());        
         return clz;
     }
 
+    /**
+     * @return javassist name of the given class (<code>int[]</code> instead
+     *         of <code>[I</code>, for example)
+     */
+    private static String getCtClassName(Class<?> clz) {
+        if (clz.isArray())
+            return getCtClassName(clz.getComponentType()) + "[]";
+        return clz.getName();
+    }
+
     /**
      * Creates instance of koratArrayClz
      * 
@@ -100,15 +124,38 @@ public final class KoratArrayManager {
         return ((IKoratArray)array).get_length_setter(len_id);
     }
 
+    /**
+     * @return values of the korat array as an Object array. For primitive
+     *         types, automatic wrapper classes are returned as array
+     *         elements (see {@link IKoratArray#toArray()} for reading them
+     *         without boxing).
+     */
     public static Object[] getArrayValues(Object koratArray) {
         IKoratArray array = (IKoratArray) koratArray;
+        if (!isPrimitiveArray(array))
+            return (Object[]) array.toArray();
         int len = array.getLength();
         Object [] ret = new Object[len];
         for (int i = 0; i <len; i++)
             ret[i] =array.getValue(i);
         return ret;
     }
-    
+
+    /**
+     * @return whether the components of the korat array are of a primitive
+     *         type
+     */
+    private static boolean isPrimitiveArray(IKoratArray array) {
+        return array instanceof IKoratArray.OfInt
+                || array instanceof IKoratArray.OfBoolean
+                || array instanceof IKoratArray.OfByte
+                || array instanceof IKoratArray.OfChar
+                || array instanceof IKoratArray.OfShort
+                || array instanceof IKoratArray.OfLong
+                || array instanceof IKoratArray.OfFloat
+                || array instanceof IKoratArray.OfDouble;
+    }
+
     /**
      * @param obj - object that contains field of the class name
      * @param name - name of the array field
@@ -0,0 +1,184 @@
+package korat.instrumentation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+import korat.config.ConfigManager;
+import korat.loading.filter.ExcludingPackageFilter;
+import korat.loading.filter.FilterManager;
+import korat.loading.filter.IComparingFilter;
+
+/**
+ * <p>Instruments classes ahead of time.</p>
+ *
+ * <p>Instruments all classes in the given class path entries (directories
+ * or jars) that Korat would instrument when loading them, and writes them to
+ * a jar, together with the classes generated during the instrumentation
+ * (setter classes and <code>Korat_Array_*</code> classes):</p>
+ *
+ * <pre>
+ *     java korat.instrumentation.PreInstrumenter [-E packages] [--traceBuffer|--fieldEpochs] out.jar classes/ lib/model.jar
+ * </pre>
+ *
+ * <p>Korat loads the classes from the jar without instrumenting them when
+ * it is given with the <code>--instrumentedJar</code> option. The classes
+ * from the class path entries must also be on Korat's class path, and the
+ * packages excluded from instrumentation (<code>-E</code>) should be the same
+ * as Korat's <code>--excludePackages</code>. So should
+ * <code>--traceBuffer</code> and <code>--fieldEpochs</code>, which change
+ * the instrumentation of getters.</p>
+ *
+ * @see korat.loading.InstrumentingClassLoader#setInstrumentedJar(String)
+ * @author korat.team
+ *
+ */
+public class PreInstrumenter {
+
+    public static void main(String[] args) {
+
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-E")) {
+            ExcludingPackageFilter excludeFilter = new ExcludingPackageFilter();
+            for (String pckName : args[1].split(","))
+                excludeFilter.addPackage(pckName);
+            FilterManager.addFilter(excludeFilter);
+            i = 2;
+        }
+        if (args.length > i && args[i].equals("--traceBuffer")) {
+            ConfigManager.getInstance().traceBuffer = true;
+            i++;
+        } else if (args.length > i && args[i].equals("--fieldEpochs")) {
+            ConfigManager.getInstance().fieldEpochs = true;
+            i++;
+        }
+        if (args.length - i < 2) {
+            System.out.println("Usage: java korat.instrumentation.PreInstrumenter "
+                    + "[-E packages] [--traceBuffer|--fieldEpochs] <jarFile> <classPathEntry>...");
+            System.exit(1);
+        }
+
+        String jarFile = args[i++];
+        String[] classPath = new String[args.length - i];
+        System.arraycopy(args, i, classPath, 0, classPath.length);
+
+        try {
+            int n = instrument(classPath, new File(jarFile));
+            System.out.println(n + " classes written to " + jarFile);
+        } catch (Exception e) {
+            System.err.println("Cannot instrument classes: " + e);
+            System.exit(1);
+        }
+
+    }
+
+    /**
+     * Instruments the classes in the given class path entries and writes
+     * them to the given jar file
+     *
+     * @return number of classes written
+     */
+    public static int instrument(String[] classPath, File jarFile)
+            throws IOException, NotFoundException, CannotCompileException {
+
+        ClassPool cp = InstrumentationManager.getClassPool();
+        IComparingFilter filter = FilterManager.getFilter();
+        Map<String, CtClass> classes = new TreeMap<String, CtClass>();
+
+        // the class pool is shared with the instrumenting class loaders
+        synchronized (cp) {
+
+            for (String entry : classPath)
+                cp.insertClassPath(entry);
+
+            for (String entry : classPath) {
+                for (String className : getClassNames(new File(entry))) {
+                    if (!filter.allowProcessing(className))
+                        continue;
+                    CtClass clz = cp.get(className);
+                    clz.stopPruning(true);
+                    InstrumentationManager.instrumentClassIfNeeded(clz);
+                    classes.put(className, clz);
+                }
+            }
+
+            // superclasses and generated classes
+            for (CtClass clz : InstrumentationManager.getAlreadyInstrumented(cp))
+                classes.put(clz.getName(), clz);
+
+            Manifest manifest = new Manifest();
+            Attributes attrs = manifest.getMainAttributes();
+            attrs.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            attrs.putValue("Created-By", PreInstrumenter.class.getName());
+
+            JarOutputStream jos = new JarOutputStream(new FileOutputStream(
+                    jarFile), manifest);
+            try {
+                for (CtClass clz : classes.values()) {
+                    if (clz.isFrozen())
+                        clz.defrost();
+                    clz.stopPruning(true);
+                    jos.putNextEntry(new JarEntry(clz.getName().replace('.', '/')
+                            + ".class"));
+                    jos.write(clz.toBytecode());
+                    jos.closeEntry();
+                }
+            } finally {
+                jos.close();
+            }
+
+        }
+        return classes.size();
+
+    }
+
+    private static Set<String> getClassNames(File entry) throws IOException {
+        Set<String> names = new TreeSet<String>();
+        if (entry.isDirectory()) {
+            addClassNames(entry, "", names);
+        } else {
+            JarFile jar = new JarFile(entry);
+            try {
+                Enumeration<JarEntry> en = jar.entries();
+                while (en.hasMoreElements())
+                    addClassName(en.nextElement().getName(), names);
+            } finally {
+                jar.close();
+            }
+        }
+        return names;
+    }
+
+    private static void addClassNames(File dir, String path,
+            Set<String> names) {
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory())
+                addClassNames(f, path + f.getName() + "/", names);
+            else
+                addClassName(path + f.getName(), names);
+        }
+    }
+
+    private static void addClassName(String fileName, Set<String> names) {
+        if (!fileName.endsWith(".class"))
+            return;
+        String className = fileName.substring(0, fileName.length()
+                - ".class".length()).replace('/', '.');
+        names.add(className);
+    }
+
+}
@@ -10,6 +10,8 @@ import javassist.CtConstructor;
 import javassist.CtField;
 import javassist.NotFoundException;
 import javassist.bytecode.Descriptor;
+import korat.loading.filter.FilterManager;
+import korat.testing.FieldTrace;
 import korat.testing.ITester;
 
 /**
@@ -31,12 +33,35 @@ class SpecialConstructorInstrumenter extends AbstractInstrumenter {
     @Override
     protected void instrument(CtClass clz) throws CannotCompileException, 
             NotFoundException, IOException {
-        if (!InstrumentationManager.alreadyInstrumented.contains(clz.getSuperclass())) {
+        instrumentSuperclassIfNeeded(clz);
+        if (!InstrumentationManager.isAlreadyInstrumented(clz.getSuperclass())) {
             addITesterField(clz);
         }
+        if (InstrumentationManager.useTraceBuffer()
+                && !InstrumentationManager.hasTraceField(clz)) {
+            addFieldTraceField(clz);
+        }
         addConstructors(clz);
     }
     
+    /**
+     * Instruments the superclass first if it is going to be instrumented
+     * anyway (when it is loaded), so the constructors added to the given
+     * class do not depend on the order in which classes are loaded.
+     * 
+     * @param clz
+     * @throws NotFoundException
+     * @throws CannotCompileException
+     * @throws IOException
+     */
+    protected void instrumentSuperclassIfNeeded(CtClass clz)
+            throws NotFoundException, CannotCompileException, IOException {
+        CtClass superclass = clz.getSuperclass();
+        if (superclass != null
+                && FilterManager.getFilter().allowProcessing(superclass.getName()))
+            InstrumentationManager.instrumentClassIfNeeded(superclass);
+    }
+
     /**
      * Adds <code>ITester</code> field that holds an instance of the <code>ITester</code> 
      * class that should be notified about field accesses. This field gets initialized
@@ -48,12 +73,29 @@ class SpecialConstructorInstrumenter extends AbstractInstrumenter {
      */
     protected void addITesterField(CtClass clz) throws NotFoundException, CannotCompileException {
         String testerFieldName = InstrumentationManager.TESTER_FIELD_NAME;
-        CtClass testerFieldType = cp.get(ITester.class.getName());
+        CtClass testerFieldType = clz.getClassPool().get(ITester.class.getName());
         CtField f = new CtField(testerFieldType, testerFieldName, clz);
         f.setModifiers(TRANSIENT);
         clz.addField(f);
     }
     
+    /**
+     * Adds <code>FieldTrace</code> field that holds the trace buffer of the 
+     * tester, to which the getters store field accesses (with the 
+     * <code>--traceBuffer</code> option). This field gets initialized in the 
+     * korat-special constructor.
+     * 
+     * @param clz
+     * @throws NotFoundException
+     * @throws CannotCompileException
+     */
+    protected void addFieldTraceField(CtClass clz) throws NotFoundException, CannotCompileException {
+        CtClass traceFieldType = clz.getClassPool().get(FieldTrace.class.getName());
+        CtField f = new CtField(traceFieldType, InstrumentationManager.TRACE_FIELD_NAME, clz);
+        f.setModifiers(TRANSIENT);
+        clz.addField(f);
+    }
+    
     /**
      * <p>
      * Adds needed constructors to class under test
@@ -98,7 +140,8 @@ class SpecialConstructorInstrumenter extends AbstractInstrumenter {
 
     /**
      * Adds a special constructor that Korat will call to initialize object
-     * under test. This constructor only initializes <code>ITester</code> field.
+     * under test. This constructor only initializes <code>ITester</code> field
+     * (and the <code>FieldTrace</code> field, if the class has it).
      * 
      * @param clz
      * @throws NotFoundException
@@ -108,12 +151,12 @@ class SpecialConstructorInstrumenter extends AbstractInstrumenter {
     private void addKoratConstructor(CtClass clz) throws NotFoundException,
             CannotCompileException {
 
-        CtClass testerFieldType = cp.get(ITester.class.getName());
+        CtClass testerFieldType = clz.getClassPool().get(ITester.class.getName());
         CtConstructor koratConstructor = new CtConstructor(
                 new CtClass[] { testerFieldType }, clz);
 
         String superConstructorCall = "";
-        if (InstrumentationManager.alreadyInstrumented.contains(clz.getSuperclass()))
+        if (InstrumentationManager.isAlreadyInstrumented(clz.getSuperclass()))
             superConstructorCall = "super($1);";
         else
             superConstructorCall = "this();";
@@ -122,6 +165,9 @@ class SpecialConstructorInstrumenter extends AbstractInstrumenter {
         constrSrc.append("{"); 
         constrSrc.append(superConstructorCall); 
         constrSrc.append(InstrumentationManager.TESTER_FIELD_NAME + " = $1;");                      
+        if (InstrumentationManager.hasTraceField(clz))
+            constrSrc.append("if ($1 != null) " + InstrumentationManager.TRACE_FIELD_NAME
+                    + " = $1.getFieldTrace();");
         constrSrc.append("}");
 
         koratConstructor.setBody(constrSrc.toString());
@@ -0,0 +1,142 @@
+package korat.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import korat.testing.FieldTrace;
+import korat.testing.ITester;
+
+/**
+ * Copies test cases into fresh objects, with the <code>IKoratCopyable</code>
+ * methods generated during instrumentation.
+ *
+ * <p/> The copier is created with the objects of a state space, numbered by
+ * their class domain and their index in it (see
+ * <code>StateSpace.getObjects()</code>), and keeps the copy of each of them
+ * in an array at its number, so every object is copied once, however many
+ * fields refer to it. Objects outside the state space that are instances of
+ * instrumented classes are copied as well. Other objects (strings, for
+ * example) are not copied, but shared by the test case and its copy.
+ *
+ * <p/> Objects are copied from a work list, not recursively, so long chains
+ * of objects don't overflow the stack. Copies don't report field accesses to
+ * the search.
+ *
+ * @see IKoratCopyable
+ * @author korat.team
+ *
+ */
+public class StructureCopier {
+
+    /**
+     * Tester of the copies, which ignores field accesses
+     */
+    private static final ITester COPY_TESTER = new ITester() {
+
+        public void startFieldTrace() {
+        }
+
+        public void continueFieldTrace() {
+        }
+
+        public void stopFieldTrace() {
+        }
+
+        public void notifyFieldAccess(Object obj, String field) {
+        }
+
+        public void notifyFieldAccess(int accessedFieldIndex) {
+        }
+
+        public FieldTrace getFieldTrace() {
+            return null;
+        }
+
+    };
+
+    private final Map<Object, Integer> indices;
+
+    private final Object[] copies;
+
+    private Map<Object, Object> otherCopies;
+
+    /**
+     * originals and copies whose fields are not set yet, in pairs
+     */
+    private final List<Object> workList = new ArrayList<Object>();
+
+    /**
+     * @param objects -
+     *            objects the copier keeps the copies of by their index
+     */
+    public StructureCopier(Object[] objects) {
+        indices = new IdentityHashMap<Object, Integer>(objects.length);
+        for (int i = 0; i < objects.length; i++)
+            if (!indices.containsKey(objects[i]))
+                indices.put(objects[i], i);
+        copies = new Object[objects.length];
+    }
+
+    /**
+     * Copies the object structure reachable from the given root.
+     *
+     * @param root -
+     *            root object of the structure
+     * @return copy of the root object
+     */
+    public synchronized Object copyStructure(Object root) {
+        try {
+            Object ret = copy(root);
+            while (!workList.isEmpty()) {
+                int n = workList.size();
+                Object copy = workList.remove(n - 1);
+                IKoratCopyable original = (IKoratCopyable) workList.remove(n - 2);
+                original.__korat_copyTo(copy, this);
+            }
+            return ret;
+        } finally {
+            Arrays.fill(copies, null);
+            otherCopies = null;
+            workList.clear();
+        }
+    }
+
+    /**
+     * Called by <code>__korat_copyTo</code> methods for the objects their
+     * fields refer to.
+     *
+     * @param original -
+     *            object referred to by the original structure
+     * @return copy of the object (whose fields may not be set yet), or the
+     *         object itself if it is not an instance of an instrumented class
+     */
+    public Object copy(Object original) {
+        if (!(original instanceof IKoratCopyable))
+            return original;
+
+        Object ret;
+        Integer index = indices.get(original);
+        if (index != null) {
+            ret = copies[index];
+            if (ret != null)
+                return ret;
+            ret = ((IKoratCopyable) original).__korat_newCopy(COPY_TESTER);
+            copies[index] = ret;
+        } else {
+            if (otherCopies == null)
+                otherCopies = new IdentityHashMap<Object, Object>();
+            ret = otherCopies.get(original);
+            if (ret != null)
+                return ret;
+            ret = ((IKoratCopyable) original).__korat_newCopy(COPY_TESTER);
+            otherCopies.put(original, ret);
+        }
+        workList.add(original);
+        workList.add(ret);
+        return ret;
+    }
+
+}
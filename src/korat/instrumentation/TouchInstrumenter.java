@@ -29,7 +29,7 @@ class TouchInstrumenter extends AbstractInstrumenter {
     
     protected void addTouchableInterface(CtClass clz) {
         try {
-            CtClass touchable = cp.get(IKoratTouchable.class.getName());
+            CtClass touchable = clz.getClassPool().get(IKoratTouchable.class.getName());
             clz.addInterface(touchable);
         } catch (NotFoundException e) {
             // should never reach this code
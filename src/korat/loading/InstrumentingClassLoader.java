@@ -1,5 +1,14 @@
 package korat.loading;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
 import korat.instrumentation.IInstrumenter;
 import korat.instrumentation.InstrumentationManager;
 import korat.loading.filter.FilterManager;
@@ -17,6 +26,14 @@ public class InstrumentingClassLoader extends ClassLoader {
     private IInstrumenter instrumenter;
 
     private IComparingFilter comparingFilter;
+
+    private JarFile instrumentedJar;
+
+    /**
+     * classes instrumented ahead of time and defined by 
+     * <code>defineInstrumentedClasses</code>
+     */
+    private Set<String> eagerClasses = new HashSet<String>();
     
     private static final boolean DEBUG = false;
 
@@ -31,7 +48,7 @@ public class InstrumentingClassLoader extends ClassLoader {
     }
 
     @Override
-    protected Class<?> loadClass(String className, boolean resolve)
+    protected synchronized Class<?> loadClass(String className, boolean resolve)
             throws ClassNotFoundException {
 
         // find the class if it was already loaded
@@ -44,8 +61,10 @@ public class InstrumentingClassLoader extends ClassLoader {
 
             if (pass) {
 
-                // instrument and load class
-                byte data[] = instrumenter.getBytecode(className);
+                // load class instrumented ahead of time, or instrument it
+                byte data[] = getInstrumentedBytecode(className);
+                if (data == null)
+                    data = instrumenter.getBytecode(className);
                 c = defineClass(className, data, 0, data.length);
                 
             } else {
@@ -73,6 +92,85 @@ public class InstrumentingClassLoader extends ClassLoader {
         
     }
 
+    /**
+     * Makes this class loader load the classes found in the given jar 
+     * (written by <code>PreInstrumenter</code>) as they are, without 
+     * instrumenting them. Classes not found in the jar are still 
+     * instrumented when loaded.
+     * 
+     * @param fileName -
+     *            name of the jar file, or <code>null</code> to instrument all
+     *            classes
+     */
+    public synchronized void setInstrumentedJar(String fileName)
+            throws IOException {
+        if (instrumentedJar != null) {
+            if (instrumentedJar.getName().equals(fileName))
+                return;
+            instrumentedJar.close();
+            instrumentedJar = null;
+        }
+        if (fileName != null)
+            instrumentedJar = new JarFile(fileName);
+    }
+
+    /**
+     * Defines the given classes, instrumented ahead of time (by
+     * <code>EagerInstrumenter</code>), in the given order. Superclasses and
+     * interfaces should come before the classes that extend them. Classes
+     * that have already been loaded are skipped.
+     * 
+     * @param classes -
+     *            instrumented bytecode of the classes
+     */
+    public synchronized void defineInstrumentedClasses(Map<String, byte[]> classes) {
+        for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+            String className = e.getKey();
+            if (findLoadedClass(className) != null)
+                continue;
+            byte[] data = e.getValue();
+            defineClass(className, data, 0, data.length);
+            eagerClasses.add(className);
+        }
+    }
+
+    /**
+     * @return whether the class with the given name has been instrumented
+     *         ahead of time (is in the jar with the instrumented classes, or
+     *         has been defined by <code>defineInstrumentedClasses</code>)
+     */
+    public synchronized boolean hasInstrumentedClass(String className) {
+        return eagerClasses.contains(className) || getEntry(className) != null;
+    }
+
+    private ZipEntry getEntry(String className) {
+        if (instrumentedJar == null)
+            return null;
+        return instrumentedJar.getEntry(className.replace('.', '/') + ".class");
+    }
+
+    private byte[] getInstrumentedBytecode(String className)
+            throws ClassNotFoundException {
+        ZipEntry entry = getEntry(className);
+        if (entry == null)
+            return null;
+        try {
+            InputStream is = instrumentedJar.getInputStream(entry);
+            try {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                int n;
+                while ((n = is.read(buf)) > 0)
+                    bos.write(buf, 0, n);
+                return bos.toByteArray();
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            throw new ClassNotFoundException(className, e);
+        }
+    }
+
     public IComparingFilter getComparingFilter() {
         return comparingFilter;
     }
@@ -28,4 +28,11 @@ public class FilterManager {
         getCompoundFilter().add(flt);
     }
 
+    /**
+     * @return whether the filter was added before
+     */
+    public static boolean removeFilter(IComparingFilter flt) {
+        return getCompoundFilter().remove(flt);
+    }
+
 }
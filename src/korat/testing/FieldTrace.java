@@ -0,0 +1,105 @@
+package korat.testing;
+
+import korat.utils.IIntList;
+
+/**
+ * <p>Buffer of the field accesses of one predicate invocation.</p>
+ *
+ * <p>With the <code>--traceBuffer</code> option, the getters of the
+ * instrumented classes don't call <code>ITester.notifyFieldAccess</code>,
+ * but append the index of the accessed field to the buffer of their tester,
+ * which only stores it to an array. The buffer may contain duplicates and
+ * <code>-1</code> (fields not in the candidate vector), which are removed
+ * once per candidate, when the tester moves the buffer to its accessed field
+ * list.</p>
+ *
+ * <p>With the <code>--fieldEpochs</code> option, the getters also skip the
+ * accesses of fields already appended since the last {@link #clear()} (see
+ * {@link #getEpoch()}).</p>
+ *
+ * @see ITester#getFieldTrace()
+ * @author korat.team
+ *
+ */
+public final class FieldTrace {
+
+    /**
+     * indices of the accessed fields, in the order of accesses
+     */
+    private int[] ids;
+
+    /**
+     * number of accesses in the buffer
+     */
+    private int size;
+
+    /**
+     * number of the current predicate invocation (see 
+     * {@link #getEpoch()})
+     */
+    private long epoch = 1;
+
+    public FieldTrace(int capacity) {
+        ids = new int[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Appends an access to the buffer, unless it is the same as the last one
+     * (e.g. <code>if (n.left != null) visit(n.left);</code>).
+     */
+    public void add(int accessedFieldIndex) {
+        int n = size;
+        int[] a = ids;
+        if (n != 0 && a[n - 1] == accessedFieldIndex)
+            return;
+        if (n == a.length)
+            a = grow();
+        a[n] = accessedFieldIndex;
+        size = n + 1;
+    }
+
+    private int[] grow() {
+        int[] newIds = new int[2 * ids.length];
+        System.arraycopy(ids, 0, newIds, 0, size);
+        return ids = newIds;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of the current predicate invocation. With the
+     * <code>--fieldEpochs</code> option, the getters stamp the object with
+     * the epoch when they append an access, and don't append accesses of
+     * fields already stamped with the current epoch.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Empties the buffer and starts a new epoch (the fields stamped so far
+     * have to be appended again).
+     */
+    public void clear() {
+        size = 0;
+        epoch++;
+    }
+
+    /**
+     * Adds the accessed fields to the given list (which ignores fields
+     * already in it) in the order of their first access, and empties the
+     * buffer.
+     */
+    public void moveTo(IIntList accessedFields) {
+        int[] a = ids;
+        for (int i = 0, n = size; i < n; i++) {
+            int accessedFieldIndex = a[i];
+            if (accessedFieldIndex != -1)
+                accessedFields.add(accessedFieldIndex);
+        }
+        size = 0;
+    }
+
+}
@@ -44,4 +44,14 @@ public interface ITester {
      */
     void notifyFieldAccess(int accessedFieldIndex);
 
+    /**
+     * Returns the buffer that the getters instrumented with the
+     * <code>--traceBuffer</code> option store field accesses to, instead of
+     * calling <code>notifyFieldAccess</code>
+     * 
+     * @return buffer of field accesses, or <code>null</code> if the tester
+     *         only accepts notifications
+     */
+    FieldTrace getFieldTrace();
+
 }
@@ -45,10 +45,22 @@ public abstract class AbstractTestCaseGenerator {
     }
 
     protected void notifyClients(Object testCase) {
+        //TODO: this is not nice way of doing things
+        notifyClients(testCase, TestCradle.getInstance().isPredicateOK());
+    }
+
+    protected void notifyClients(Object testCase, boolean predicateOK) {
         if (interrupted)
             return;
-        //TODO: this is not nice way of doing things
-        if (TestCradle.getInstance().isPredicateOK()) {
+        deliverToClients(testCase, predicateOK);
+    }
+
+    /**
+     * Notifies the clients (of valid test cases only) and the special
+     * clients, even after the search has been interrupted
+     */
+    protected void deliverToClients(Object testCase, boolean predicateOK) {
+        if (predicateOK) {
             for (ITestCaseListener client : clients)
                 client.notifyNewTestCase(testCase);
         }
@@ -56,6 +68,14 @@ public abstract class AbstractTestCaseGenerator {
             special.notifyNewTestCase(testCase);
     }
 
+    protected boolean hasClients() {
+        return !clients.isEmpty() || !specialClients.isEmpty();
+    }
+
+    protected boolean hasSpecialClients() {
+        return !specialClients.isEmpty();
+    }
+
     protected void notifyTestFinished(long numOfExplored, long numOfGenerated) {
 //        if (interrupted)
 //            return;
@@ -96,7 +116,7 @@ public abstract class AbstractTestCaseGenerator {
         out.print(str);
     }
 
-    protected boolean interrupted;
+    protected volatile boolean interrupted;
 
     public void interrupt() {
         interrupted = true;
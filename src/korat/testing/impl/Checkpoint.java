@@ -0,0 +1,137 @@
+package korat.testing.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import korat.utils.IIntList;
+
+/**
+ * Snapshot of the sequential search: the candidate vector explored last, the
+ * accessed field list after it has been explored, the number of explored and
+ * valid candidates so far, and the fingerprint of the state space the search
+ * runs on.
+ *
+ * <p/> Checkpoints are written atomically: the data is first written to a
+ * temporary file which then replaces the checkpoint file, so a search that
+ * is killed while writing leaves the previous checkpoint intact.
+ *
+ * @author korat.team
+ *
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x4b435031; // "KCP1"
+
+    private final long fingerprint;
+
+    private final long totalExplored;
+
+    private final long validCasesGenerated;
+
+    private final int[] candidateVector;
+
+    private final int[] accessedFields;
+
+    public Checkpoint(long fingerprint, long totalExplored,
+            long validCasesGenerated, int[] candidateVector,
+            IIntList accessedFields) {
+        this(fingerprint, totalExplored, validCasesGenerated, candidateVector,
+                accessedFields.toArray());
+    }
+
+    private Checkpoint(long fingerprint, long totalExplored,
+            long validCasesGenerated, int[] candidateVector, int[] accessedFields) {
+        this.fingerprint = fingerprint;
+        this.totalExplored = totalExplored;
+        this.validCasesGenerated = validCasesGenerated;
+        this.candidateVector = candidateVector;
+        this.accessedFields = accessedFields;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getTotalExplored() {
+        return totalExplored;
+    }
+
+    public long getValidCasesGenerated() {
+        return validCasesGenerated;
+    }
+
+    /**
+     * @return split that describes the rest of the search
+     */
+    public SearchSplit toSearchSplit() {
+        return new SearchSplit(candidateVector, accessedFields, 0);
+    }
+
+    public void write(File file) throws IOException {
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+            dos.writeInt(MAGIC);
+            dos.writeLong(fingerprint);
+            dos.writeLong(totalExplored);
+            dos.writeLong(validCasesGenerated);
+            writeArray(dos, candidateVector);
+            writeArray(dos, accessedFields);
+            dos.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            // some platforms do not allow renaming to an existing file
+            file.delete();
+            if (!tmp.renameTo(file))
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+
+    }
+
+    public static Checkpoint read(File file) throws IOException {
+
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (dis.readInt() != MAGIC)
+                throw new IOException(file + " is not a korat checkpoint file");
+            long fingerprint = dis.readLong();
+            long totalExplored = dis.readLong();
+            long validCasesGenerated = dis.readLong();
+            int[] cv = readArray(dis);
+            int[] accessedFields = readArray(dis);
+            return new Checkpoint(fingerprint, totalExplored,
+                    validCasesGenerated, cv, accessedFields);
+        } finally {
+            dis.close();
+        }
+
+    }
+
+    private static void writeArray(DataOutputStream dos, int[] arr)
+            throws IOException {
+        dos.writeInt(arr.length);
+        for (int i = 0; i < arr.length; i++)
+            dos.writeInt(arr[i]);
+    }
+
+    private static int[] readArray(DataInputStream dis) throws IOException {
+        int[] arr = new int[dis.readInt()];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = dis.readInt();
+        return arr;
+    }
+
+}
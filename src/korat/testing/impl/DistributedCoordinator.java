@@ -0,0 +1,386 @@
+package korat.testing.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import korat.config.ConfigManager;
+import korat.finitization.IFinitization;
+import korat.finitization.impl.Finitization;
+
+/**
+ * Coordinates the search distributed over several worker JVMs.
+ *
+ * <p/> The coordinator first runs a sampling pass: it explores a small part
+ * of the state space itself and cuts the rest of it into independent ranges
+ * (see {@link SearchSplit}), refining the largest ranges until there are
+ * enough of them. The ranges are then handed out to workers, one at a time,
+ * over a plain text socket protocol:
+ *
+ * <pre>
+ *   coordinator -&gt; worker:  RANGE &lt;id&gt; &lt;candidate vector&gt; &lt;accessed fields&gt;
+ *   worker -&gt; coordinator:  RESULT &lt;id&gt; &lt;explored&gt; &lt;valid&gt;
+ *   coordinator -&gt; worker:  DONE
+ * </pre>
+ *
+ * Workers are either local JVMs started by the coordinator or remote ones
+ * started with the <code>--worker host:port</code> option. Ranges of workers
+ * that fail are given to other workers, and ranges that take longer than
+ * <code>rangeTimeout</code> are given to idle workers as well (only the
+ * first result for each range is counted).
+ *
+ * @see DistributedWorker
+ * @author korat.team
+ *
+ */
+public class DistributedCoordinator {
+
+    /**
+     * Number of candidates explored by the sampling pass before a range is
+     * cut further.
+     */
+    private static final long SAMPLE_SIZE = 1000;
+
+    private static final long POLL_MILLIS = 1000;
+
+    private final TestCradle testCradle;
+
+    private final ConfigManager config = ConfigManager.getInstance();
+
+    public DistributedCoordinator(TestCradle testCradle) {
+        this.testCradle = testCradle;
+    }
+
+    public void start(IFinitization fin) throws CannotInvokePredicateException,
+            CannotFindPredicateException {
+
+        Method predicate = testCradle.getPredicateMethod(fin.getFinClass(),
+                config.predicate);
+
+        testCradle.totalExplored = 0;
+        testCradle.validCasesGenerated = 0;
+
+        List<SearchSplit> splits = sample(fin, predicate);
+        System.out.println("Sampling pass explored:" + testCradle.totalExplored
+                + ", ranges:" + splits.size());
+
+        for (int i = 0; i < splits.size(); i++)
+            pending.add(new Range(i, splits.get(i)));
+        remaining = splits.size();
+
+        if (remaining > 0 && !testCradle.isInterrupted()) {
+            try {
+                distribute();
+            } catch (IOException e) {
+                throw new RuntimeException("Exception during distributed search", e);
+            }
+        }
+
+        testCradle.totalExplored += explored;
+        testCradle.validCasesGenerated += valid;
+        testCradle.finishTestGeneration();
+
+    }
+
+    /* -------------------------------------------------------------------------
+     * Sampling pass.
+     * ------------------------------------------------------------------------- */
+
+    /**
+     * Explores parts of the state space, always continuing with the
+     * shallowest split, until the rest of the state space is cut into at
+     * least <code>ranges</code> splits.
+     */
+    private List<SearchSplit> sample(IFinitization fin, Method predicate)
+            throws CannotInvokePredicateException {
+
+        List<SearchSplit> splits = new ArrayList<SearchSplit>();
+        splits.add(new SearchSplit(((Finitization) fin).getInitialCandidateVector()));
+
+        while (!splits.isEmpty() && splits.size() < config.ranges
+                && !testCradle.isInterrupted()) {
+
+            int shallowest = 0;
+            for (int i = 1; i < splits.size(); i++)
+                if (splits.get(i).getFloor() < splits.get(shallowest).getFloor())
+                    shallowest = i;
+
+            SearchSplit split = splits.remove(shallowest);
+            StateSpaceExplorer explorer = testCradle.searchSplit(fin, split,
+                    predicate, SAMPLE_SIZE);
+            if (explorer == null)
+                continue;
+
+            SearchSplit s;
+            while ((s = explorer.split()) != null)
+                splits.add(s);
+
+        }
+
+        return splits;
+
+    }
+
+    /* -------------------------------------------------------------------------
+     * Distribution of ranges.
+     * ------------------------------------------------------------------------- */
+
+    private static class Range {
+
+        final int id;
+
+        final SearchSplit split;
+
+        int running;
+
+        long startTime;
+
+        Range(int id, SearchSplit split) {
+            this.id = id;
+            this.split = split;
+        }
+
+    }
+
+    private final LinkedList<Range> pending = new LinkedList<Range>();
+
+    private final Map<Integer, Range> running = new HashMap<Integer, Range>();
+
+    private int remaining;
+
+    private long explored;
+
+    private long valid;
+
+    private int localRestarts;
+
+    private final List<Process> processes = new ArrayList<Process>();
+
+    private void distribute() throws IOException {
+
+        final ServerSocket server = new ServerSocket(config.coordinatorPort);
+        int port = server.getLocalPort();
+        System.out.println("Coordinator listening on port " + port);
+
+        Thread acceptor = new Thread("korat-coordinator") {
+            public void run() {
+                while (true) {
+                    try {
+                        final Socket socket = server.accept();
+                        Thread t = new Thread("korat-coordinator-" + socket) {
+                            public void run() {
+                                serve(socket);
+                            }
+                        };
+                        t.setDaemon(true);
+                        t.start();
+                    } catch (IOException e) {
+                        // server socket closed
+                        return;
+                    }
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        localRestarts = 2 * config.distribute;
+        for (int i = 0; i < config.distribute; i++)
+            startLocalWorker(port, i);
+
+        synchronized (this) {
+            while (remaining > 0 && !testCradle.isInterrupted()) {
+                try {
+                    wait(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    testCradle.interrupt();
+                }
+            }
+        }
+
+        server.close();
+
+        // workers that are still exploring duplicates of finished ranges
+        synchronized (this) {
+            for (Process p : processes)
+                p.destroy();
+        }
+
+    }
+
+    private synchronized Range take() throws InterruptedException {
+        while (remaining > 0 && !testCradle.isInterrupted()) {
+            if (!pending.isEmpty()) {
+                Range r = pending.removeFirst();
+                return assign(r);
+            }
+            if (config.rangeTimeout >= 0) {
+                // give the slowest range to this idle worker as well
+                long now = System.currentTimeMillis();
+                Range slowest = null;
+                for (Range r : running.values())
+                    if (r.running == 1
+                            && now - r.startTime >= config.rangeTimeout * 1000
+                            && (slowest == null || r.startTime < slowest.startTime))
+                        slowest = r;
+                if (slowest != null)
+                    return assign(slowest);
+            }
+            wait(POLL_MILLIS);
+        }
+        return null;
+    }
+
+    private Range assign(Range r) {
+        if (r.running == 0)
+            r.startTime = System.currentTimeMillis();
+        r.running++;
+        running.put(r.id, r);
+        return r;
+    }
+
+    private synchronized void complete(Range r, long rangeExplored, long rangeValid) {
+        r.running--;
+        if (running.remove(r.id) == null)
+            return; // somebody else has already finished this range
+        explored += rangeExplored;
+        valid += rangeValid;
+        remaining--;
+        notifyAll();
+    }
+
+    private synchronized void fail(Range r) {
+        r.running--;
+        if (r.running == 0 && running.remove(r.id) != null) {
+            pending.addFirst(r);
+            notifyAll();
+        }
+    }
+
+    private void serve(Socket socket) {
+        Range r = null;
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            while ((r = take()) != null) {
+                out.println("RANGE " + r.id + " " + encode(r.split.getCandidateVector())
+                        + " " + encode(r.split.getAccessedFields()));
+                String line = in.readLine();
+                if (line == null)
+                    throw new IOException("Worker closed the connection");
+                String[] parts = line.split(" ");
+                if (parts.length != 4 || !"RESULT".equals(parts[0])
+                        || Integer.parseInt(parts[1]) != r.id)
+                    throw new IOException("Unexpected message from worker: " + line);
+                complete(r, Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                r = null;
+            }
+            out.println("DONE");
+        } catch (Exception e) {
+            System.err.println("WARNING: worker " + socket.getRemoteSocketAddress()
+                    + " failed: " + e.getMessage());
+            if (r != null)
+                fail(r);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /* -------------------------------------------------------------------------
+     * Local workers.
+     * ------------------------------------------------------------------------- */
+
+    private void startLocalWorker(final int port, final int index) throws IOException {
+
+        List<String> cmd = new ArrayList<String>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("korat.Korat");
+        cmd.addAll(Arrays.asList(config.getCmdLineArgs()));
+        cmd.add("--worker");
+        cmd.add("localhost:" + port);
+
+        final Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        synchronized (this) {
+            processes.add(process);
+        }
+
+        Thread pump = new Thread("korat-worker-" + index) {
+            public void run() {
+                try {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(
+                            process.getInputStream()));
+                    String line;
+                    while ((line = in.readLine()) != null)
+                        System.out.println("[worker-" + index + "] " + line);
+                    if (process.waitFor() != 0)
+                        restartLocalWorker(port, index);
+                } catch (Exception e) {
+                    if (!isFinished())
+                        System.err.println("WARNING: cannot read output of worker " + index);
+                }
+            }
+        };
+        pump.setDaemon(true);
+        pump.start();
+
+    }
+
+    private synchronized boolean isFinished() {
+        return remaining == 0;
+    }
+
+    private void restartLocalWorker(int port, int index) throws IOException {
+        synchronized (this) {
+            if (remaining == 0 || localRestarts == 0)
+                return;
+            localRestarts--;
+        }
+        System.err.println("WARNING: worker " + index + " died, starting a new one");
+        startLocalWorker(port, index);
+    }
+
+    /* -------------------------------------------------------------------------
+     * Encoding of vectors.
+     * ------------------------------------------------------------------------- */
+
+    static String encode(int[] vector) {
+        if (vector.length == 0)
+            return "-";
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(vector[i]);
+        }
+        return sb.toString();
+    }
+
+    static int[] decode(String str) {
+        if ("-".equals(str))
+            return new int[0];
+        String[] parts = str.split(",");
+        int[] ret = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            ret[i] = Integer.parseInt(parts[i]);
+        return ret;
+    }
+
+}
@@ -0,0 +1,98 @@
+package korat.testing.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.Socket;
+
+import korat.config.ConfigManager;
+import korat.finitization.IFinitization;
+import korat.finitization.impl.Finitization;
+
+/**
+ * Explores the ranges of the state space given by the coordinator of the
+ * distributed search, until the coordinator says there are no more ranges.
+ *
+ * @see DistributedCoordinator
+ * @author korat.team
+ *
+ */
+public class DistributedWorker {
+
+    private final TestCradle testCradle;
+
+    private final String host;
+
+    private final int port;
+
+    public DistributedWorker(TestCradle testCradle, String coordinator) {
+        this.testCradle = testCradle;
+        int sep = coordinator.lastIndexOf(':');
+        if (sep == -1)
+            throw new RuntimeException("Coordinator address should be given as host:port, not "
+                    + coordinator);
+        this.host = coordinator.substring(0, sep);
+        this.port = Integer.parseInt(coordinator.substring(sep + 1));
+    }
+
+    public void start(IFinitization fin) throws CannotInvokePredicateException,
+            CannotFindPredicateException {
+
+        Method predicate = testCradle.getPredicateMethod(fin.getFinClass(),
+                ConfigManager.getInstance().predicate);
+
+        testCradle.totalExplored = 0;
+        testCradle.validCasesGenerated = 0;
+
+        int numOfFields = ((Finitization) fin).getStateSpace().getTotalNumberOfFields();
+
+        Socket socket = null;
+        try {
+
+            socket = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+
+            String line;
+            while ((line = in.readLine()) != null && !"DONE".equals(line)) {
+
+                String[] parts = line.split(" ");
+                if (parts.length != 4 || !"RANGE".equals(parts[0]))
+                    throw new IOException("Unexpected message from coordinator: " + line);
+
+                SearchSplit split = new SearchSplit(
+                        DistributedCoordinator.decode(parts[2]),
+                        DistributedCoordinator.decode(parts[3]));
+                if (split.getCandidateVector().length != numOfFields)
+                    throw new IOException("Range does not match the finitization");
+
+                long explored = testCradle.totalExplored;
+                long valid = testCradle.validCasesGenerated;
+                testCradle.searchSplit(fin, split, predicate, -1);
+                if (testCradle.isInterrupted())
+                    break;
+
+                out.println("RESULT " + parts[1] + " "
+                        + (testCradle.totalExplored - explored) + " "
+                        + (testCradle.validCasesGenerated - valid));
+
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Exception during communication with coordinator", e);
+        } finally {
+            try {
+                if (socket != null)
+                    socket.close();
+            } catch (IOException e) {
+            }
+        }
+
+        testCradle.finishTestGeneration();
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package korat.testing.impl;
+
+import java.io.IOException;
+
+import korat.config.ConfigManager;
+import korat.finitization.IFinitization;
+import korat.finitization.impl.Finitization;
+import korat.testing.ITestCaseListener;
+import korat.utils.cv.CVDeserializer;
+
+/**
+ * Korat search with its own options, test cradle and instrumenting class
+ * loader, so several searches can run in one virtual machine at the same time
+ * (each in its own thread):
+ *
+ * <pre>
+ *     KoratSession session = new KoratSession(new String[] {
+ *             &quot;--class&quot;, &quot;korat.examples.binarytree.BinaryTree&quot;,
+ *             &quot;--args&quot;, &quot;5&quot; });
+ *     session.run();
+ *     long valid = session.getValidCasesGenerated();
+ * </pre>
+ *
+ * While the session runs (and while its options are parsed), the session is
+ * bound to the current thread and to the threads it starts, so
+ * <code>ConfigManager.getInstance()</code> and
+ * <code>TestCradle.getInstance()</code> return the session's objects.
+ *
+ * <p/> Limitations: packages excluded from instrumentation
+ * (<code>--excludePackages</code>) are shared by all sessions, and
+ * <code>--help</code> or invalid options still terminate the virtual machine.
+ *
+ * @author korat.team
+ *
+ */
+public class KoratSession {
+
+    private final ConfigManager config;
+
+    private final TestCradle testCradle;
+
+    public KoratSession(String[] args) {
+        config = ConfigManager.createInstance();
+        testCradle = new TestCradle(config);
+        bind();
+        try {
+            config.parseCmdLine(args);
+        } finally {
+            unbind();
+        }
+    }
+
+    /**
+     * Runs the search in the current thread
+     */
+    public void run() throws KoratTestException {
+        bind();
+        try {
+            testCradle.start(config.className, config.args);
+        } finally {
+            unbind();
+        }
+    }
+
+    /**
+     * Opens the test cases serialized with <code>--serializeCV</code> by a
+     * search with the same class and finitization arguments as this session.
+     * The test cases are built on the objects of a new state space of the
+     * session's finitization, without searching it.
+     */
+    public CVDeserializer readTestCases(String fileName)
+            throws KoratTestException, IOException {
+        bind();
+        try {
+            IFinitization fin = testCradle.createFinitization(config.className,
+                    config.args);
+            return new CVDeserializer(fileName,
+                    ((Finitization) fin).getStateSpace());
+        } finally {
+            unbind();
+        }
+    }
+
+    private void bind() {
+        ConfigManager.setCurrentInstance(config);
+        TestCradle.setCurrentInstance(testCradle);
+        Finitization.setCurrentClassLoader(testCradle.getClassLoader());
+    }
+
+    private void unbind() {
+        ConfigManager.setCurrentInstance(null);
+        TestCradle.setCurrentInstance(null);
+        Finitization.setCurrentClassLoader(null);
+    }
+
+    public void attachClient(ITestCaseListener client) {
+        testCradle.attachClient(client);
+    }
+
+    /**
+     * Stops the search (from another thread)
+     */
+    public void interrupt() {
+        testCradle.interrupt();
+    }
+
+    public ConfigManager getConfig() {
+        return config;
+    }
+
+    public TestCradle getTestCradle() {
+        return testCradle;
+    }
+
+    public long getValidCasesGenerated() {
+        return testCradle.getValidCasesGenerated();
+    }
+
+    public long getTotalExplored() {
+        return testCradle.getTotalExplored();
+    }
+
+}
@@ -0,0 +1,392 @@
+package korat.testing.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import korat.finitization.IFinitization;
+import korat.finitization.impl.CandidateBuilder;
+import korat.finitization.impl.Finitization;
+import korat.finitization.impl.StateSpace;
+import korat.testing.FieldTrace;
+import korat.testing.ITester;
+import korat.utils.IIntList;
+import korat.utils.IntListAI;
+
+/**
+ * Notifies the listeners of a search in its own thread, so slow listeners
+ * don't stall the search (<code>--asyncListeners</code> option).
+ *
+ * <p/> The search thread only copies the candidate vector of each reported
+ * candidate to a preallocated ring buffer. The dispatch thread takes the
+ * candidate vectors in the order they were reported, builds the test case
+ * from each one on the objects of its own finitization (whose objects don't
+ * report field accesses to the search), and notifies the listeners. While
+ * listeners are notified, <code>TestCradle.getCandidateVector()</code> and
+ * <code>isPredicateOK()</code> return the values of the notified candidate.
+ *
+ * <p/> When the buffer is full, the search either waits for the dispatch
+ * thread (<code>block</code>), skips the candidate (<code>drop</code>), or
+ * appends it to a temporary file (<code>spill</code>), which the dispatch
+ * thread reads after the buffer. Listeners are notified of the same test
+ * cases in the same order as when they are notified synchronously, except
+ * for the candidates dropped.
+ *
+ * @author korat.team
+ *
+ */
+class ListenerDispatcher implements ITester, Runnable {
+
+    static final String BLOCK = "block";
+
+    static final String DROP = "drop";
+
+    static final String SPILL = "spill";
+
+    private final TestCradle testCradle;
+
+    private final String policy;
+
+    private final int[][] cvs;
+
+    private final boolean[] oks;
+
+    /**
+     * number of candidates taken from the buffer (next one is at
+     * <code>head % cvs.length</code>), written only by the dispatch thread
+     */
+    private volatile long head;
+
+    /**
+     * number of candidates put to the buffer, written only by the search
+     */
+    private volatile long tail;
+
+    /*
+     * The buffer is accessed without locking, since there is one producer
+     * (the search) and one consumer (the dispatch thread). The monitor is
+     * taken only to wait for the other thread, or to spill candidates. A
+     * thread sets its waiting flag before checking the indices again, and
+     * the other one checks the flag after moving its index, so a wake-up
+     * cannot be lost.
+     */
+
+    private volatile boolean producerWaiting;
+
+    private volatile boolean consumerWaiting;
+
+    private volatile boolean finished;
+
+    private long dropped;
+
+    private volatile Throwable failure;
+
+    private Thread thread;
+
+    /* -------------------------------------------------------------------------
+     * Test cases built by the dispatch thread.
+     * ------------------------------------------------------------------------- */
+
+    private StateSpace stateSpace;
+
+    private CandidateBuilder candidateBuilder;
+
+    private IIntList changedFields;
+
+    /**
+     * candidate vector of the test case built last
+     */
+    private int[] builtCV;
+
+    private boolean builtOK;
+
+    /* -------------------------------------------------------------------------
+     * Candidates spilled to disk.
+     * ------------------------------------------------------------------------- */
+
+    private File spillFile;
+
+    private DataOutputStream spillOut;
+
+    private DataInputStream spillIn;
+
+    private volatile long spilled;
+
+    private long spillFlushed;
+
+    private volatile long spillRead;
+
+    private int[] spillCV;
+
+    ListenerDispatcher(TestCradle testCradle, int capacity, String policy) {
+        if (!BLOCK.equals(policy) && !DROP.equals(policy)
+                && !SPILL.equals(policy))
+            throw new RuntimeException("Invalid listener dispatch policy \""
+                    + policy + "\", expected block, drop or spill");
+        this.testCradle = testCradle;
+        this.policy = policy;
+        cvs = new int[Math.max(1, capacity)][];
+        oks = new boolean[cvs.length];
+    }
+
+    /**
+     * Sets the finitization the test cases are built on, and starts the
+     * dispatch thread. The objects of the finitization should be created with
+     * this dispatcher as their tester.
+     */
+    void start(IFinitization fin) {
+        stateSpace = ((Finitization) fin).getStateSpace();
+        int n = stateSpace.getTotalNumberOfFields();
+        for (int i = 0; i < cvs.length; i++)
+            cvs[i] = new int[n];
+        builtCV = new int[n];
+        spillCV = new int[n];
+        // the first test case sets all fields
+        changedFields = new IntListAI(n);
+        for (int i = 0; i < n; i++)
+            changedFields.add(i);
+        candidateBuilder = new CandidateBuilder(stateSpace, changedFields);
+
+        thread = new Thread(this, "korat-listeners");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    boolean isDispatchThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return candidate vector of the test case the listeners are notified
+     *         of (in the dispatch thread)
+     */
+    int[] getCandidateVector() {
+        return builtCV;
+    }
+
+    boolean isPredicateOK() {
+        return builtOK;
+    }
+
+    /**
+     * Called by the search for every candidate the listeners should be
+     * notified of.
+     */
+    void dispatch(int[] cv, boolean predicateOK) {
+        checkFailure();
+        // once spilled, candidates are spilled until the dispatch thread
+        // catches up, to keep them in order
+        if (spilled != spillRead || tail - head == cvs.length) {
+            if (DROP.equals(policy)) {
+                dropped++;
+                return;
+            }
+            if (SPILL.equals(policy)) {
+                spill(cv, predicateOK);
+                return;
+            }
+            awaitSpace();
+        }
+        int slot = (int) (tail % cvs.length);
+        System.arraycopy(cv, 0, cvs[slot], 0, cv.length);
+        oks[slot] = predicateOK;
+        tail++;
+        if (consumerWaiting)
+            wakeUp();
+    }
+
+    private synchronized void awaitSpace() {
+        producerWaiting = true;
+        try {
+            while (tail - head == cvs.length) {
+                checkFailure();
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                }
+            }
+        } finally {
+            producerWaiting = false;
+        }
+    }
+
+    private synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    private synchronized void spill(int[] cv, boolean predicateOK) {
+        try {
+            if (spillOut == null) {
+                spillFile = File.createTempFile("korat", ".spill");
+                spillFile.deleteOnExit();
+                spillOut = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(spillFile), 65536));
+                spillIn = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(spillFile), 65536));
+            }
+            for (int i = 0; i < cv.length; i++)
+                spillOut.writeInt(cv[i]);
+            spillOut.writeBoolean(predicateOK);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot spill candidate vectors to "
+                    + spillFile, e);
+        }
+        spilled++;
+        if (consumerWaiting)
+            notifyAll();
+    }
+
+    /**
+     * Throws an exception if a listener has failed
+     */
+    void checkFailure() {
+        if (failure != null)
+            throw new RuntimeException("Listener failed", failure);
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                long t = tail;
+                if (head != t) {
+                    // notify of all candidates in the buffer before looking
+                    // at the spilled ones
+                    for (long h = head; h != t; h++) {
+                        int slot = (int) (h % cvs.length);
+                        notifyListeners(cvs[slot], oks[slot]);
+                        head = h + 1;
+                        if (producerWaiting)
+                            wakeUp();
+                    }
+                } else if (spillRead != spilled) {
+                    readSpilled();
+                } else if (!awaitCandidates()) {
+                    return;
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            wakeUp();
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the search has finished and all
+     *         candidates have been taken
+     */
+    private synchronized boolean awaitCandidates() throws InterruptedException {
+        consumerWaiting = true;
+        try {
+            while (head == tail && spillRead == spilled) {
+                if (finished)
+                    return false;
+                wait();
+            }
+            return true;
+        } finally {
+            consumerWaiting = false;
+        }
+    }
+
+    private void readSpilled() throws IOException {
+        synchronized (this) {
+            if (spillRead == spillFlushed) {
+                spillOut.flush();
+                spillFlushed = spilled;
+            }
+        }
+        for (int i = 0; i < spillCV.length; i++)
+            spillCV[i] = spillIn.readInt();
+        boolean ok = spillIn.readBoolean();
+        notifyListeners(spillCV, ok);
+        spillRead++;
+    }
+
+    private void notifyListeners(int[] cv, boolean predicateOK) {
+        for (int i = 0; i < cv.length; i++) {
+            if (builtCV[i] != cv[i]) {
+                builtCV[i] = cv[i];
+                changedFields.add(i);
+            }
+        }
+        builtOK = predicateOK;
+        Object testCase = candidateBuilder.buildCandidate(builtCV);
+        changedFields.clear();
+        testCradle.deliverToClients(testCase, predicateOK);
+    }
+
+    /**
+     * Waits until the listeners are notified of all candidates reported so
+     * far (or until a listener fails), and stops the dispatch thread.
+     */
+    void finish() {
+        finished = true;
+        wakeUp();
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+            }
+        }
+        if (spillFile != null)
+            deleteSpillFile();
+        if (dropped > 0)
+            System.err.println("WARNING: listeners were not notified of "
+                    + dropped + " candidates (listener buffer full)");
+    }
+
+    /**
+     * Closes and deletes the spill file, which can be large, instead of
+     * leaving it until the virtual machine exits. The file is truncated
+     * first, in case it cannot be deleted (while still open elsewhere, for
+     * example).
+     */
+    private void deleteSpillFile() {
+        try {
+            if (spillOut != null)
+                spillOut.close();
+        } catch (IOException e) {
+        }
+        try {
+            if (spillIn != null)
+                spillIn.close();
+        } catch (IOException e) {
+        }
+        if (!spillFile.delete()) {
+            try {
+                new FileOutputStream(spillFile).close();
+            } catch (IOException e) {
+            }
+        }
+        spillFile = null;
+    }
+
+    /* -------------------------------------------------------------------------
+     * Objects of the dispatcher's finitization don't report field accesses.
+     * ------------------------------------------------------------------------- */
+
+    public void startFieldTrace() {
+    }
+
+    public void continueFieldTrace() {
+    }
+
+    public void stopFieldTrace() {
+    }
+
+    public void notifyFieldAccess(Object obj, String field) {
+    }
+
+    public void notifyFieldAccess(int accessedFieldIndex) {
+    }
+
+    public FieldTrace getFieldTrace() {
+        return null;
+    }
+
+}
@@ -0,0 +1,360 @@
+package korat.testing.impl;
+
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import korat.finitization.IFinitization;
+import korat.finitization.impl.Finitization;
+import korat.finitization.impl.StateSpace;
+import korat.testing.FieldTrace;
+import korat.testing.ITester;
+import korat.utils.IIntList;
+
+/**
+ * Explores the state space using several worker threads.
+ *
+ * <p/> Every worker owns its own finitization (and therefore its own
+ * <code>StateSpace</code>, objects and <code>CandidateBuilder</code>) and
+ * acts as the tester for the objects of that finitization. Initially, only
+ * one worker has work - the whole state space. Idle workers ask for work,
+ * and busy workers respond by splitting their search (see
+ * {@link StateSpaceExplorer#split()}): the untried values of a shallow entry
+ * in the accessed field list are handed over to the idle worker.
+ *
+ * <p/> Every candidate is explored by exactly one worker, so the number of
+ * explored and valid candidates is the same as in the sequential search; only
+ * the order in which valid test cases are reported to listeners differs.
+ *
+ * @author korat.team
+ *
+ */
+public class ParallelExplorer {
+
+    private final TestCradle testCradle;
+
+    private final Worker[] workers;
+
+    private final long maxStructs;
+
+    private final AtomicLong validCases = new AtomicLong();
+
+    private boolean countOnly;
+
+    private Throwable failure;
+
+    public ParallelExplorer(TestCradle testCradle, int numOfWorkers, long maxStructs) {
+        this.testCradle = testCradle;
+        this.maxStructs = maxStructs;
+        workers = new Worker[numOfWorkers];
+        for (int i = 0; i < numOfWorkers; i++)
+            workers[i] = new Worker();
+    }
+
+    /**
+     * In count-only mode, valid test cases are only counted (per size), and
+     * listeners are not notified.
+     */
+    public void setCountOnly(boolean countOnly) {
+        this.countOnly = countOnly;
+    }
+
+    public int getNumberOfWorkers() {
+        return workers.length;
+    }
+
+    /**
+     * Returns the tester that the objects of <code>i</code>-th worker's
+     * finitization should report field accesses to.
+     */
+    public ITester getTester(int i) {
+        return workers[i];
+    }
+
+    /**
+     * Sets the finitization that <code>i</code>-th worker will use. The
+     * objects of the finitization should be created with
+     * <code>getTester(i)</code> as their tester.
+     */
+    public void setFinitization(int i, IFinitization fin) {
+        workers[i].fin = fin;
+        workers[i].stateSpace = ((Finitization) fin).getStateSpace();
+    }
+
+    /**
+     * Explores the whole state space and waits for all workers to finish.
+     *
+     * @param predicate -
+     *            predicate method
+     */
+    public void explore(Method predicate) throws CannotInvokePredicateException {
+
+        Finitization fin = (Finitization) workers[0].fin;
+        queue.add(new SearchSplit(fin.getInitialCandidateVector()));
+
+        Thread[] threads = new Thread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].predicate = predicate;
+            workers[i].predicateInvoker = testCradle.getPredicateInvoker(predicate);
+            threads[i] = new Thread(workers[i], "korat-worker-" + i);
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                testCradle.interrupt();
+                stop();
+                i--;
+            }
+        }
+
+        if (failure instanceof CannotInvokePredicateException)
+            throw (CannotInvokePredicateException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new RuntimeException(failure);
+
+    }
+
+    public long getTotalExplored() {
+        long ret = 0;
+        for (Worker w : workers)
+            ret += w.explored;
+        return ret;
+    }
+
+    public long getValidCasesGenerated() {
+        if (maxStructs > 0)
+            return Math.min(validCases.get(), maxStructs);
+        long ret = 0;
+        for (Worker w : workers)
+            ret += w.valid;
+        return ret;
+    }
+
+    /**
+     * @return number of valid test cases of each size found by all workers
+     *         (in count-only mode)
+     */
+    public SizeCounts getSizeCounts() {
+        SizeCounts ret = new SizeCounts();
+        for (Worker w : workers)
+            ret.addAll(w.sizes);
+        return ret;
+    }
+
+    /* -------------------------------------------------------------------------
+     * Work distribution.
+     * ------------------------------------------------------------------------- */
+
+    private final LinkedList<SearchSplit> queue = new LinkedList<SearchSplit>();
+
+    private int idle;
+
+    private boolean stopped;
+
+    /**
+     * Number of idle workers that are not going to be served by the splits
+     * already in the queue. Busy workers poll it after each candidate.
+     */
+    private volatile int hungry;
+
+    private synchronized SearchSplit take() {
+        idle++;
+        while (queue.isEmpty() && idle < workers.length && !stopped) {
+            updateHungry();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                stopped = true;
+            }
+        }
+        if (queue.isEmpty() || stopped) {
+            // either everybody is idle and there is no work left, or the
+            // search was stopped
+            stopped = true;
+            hungry = 0;
+            notifyAll();
+            return null;
+        }
+        idle--;
+        SearchSplit split = queue.removeFirst();
+        updateHungry();
+        return split;
+    }
+
+    private synchronized void offer(SearchSplit split) {
+        queue.addLast(split);
+        updateHungry();
+        notifyAll();
+    }
+
+    private synchronized void stop() {
+        stopped = true;
+        hungry = 0;
+        notifyAll();
+    }
+
+    private void updateHungry() {
+        hungry = idle - queue.size();
+    }
+
+    private synchronized void fail(Throwable t) {
+        if (failure == null)
+            failure = t;
+    }
+
+    /* -------------------------------------------------------------------------
+     * Worker.
+     * ------------------------------------------------------------------------- */
+
+    private class Worker implements ITester, Runnable {
+
+        IFinitization fin;
+
+        StateSpace stateSpace;
+
+        Method predicate;
+
+        PredicateInvoker predicateInvoker;
+
+        long explored;
+
+        long valid;
+
+        final SizeCounts sizes = new SizeCounts();
+
+        private IIntList accessedFields;
+
+        private boolean traceStarted;
+
+        private final FieldTrace fieldTrace = new FieldTrace(64);
+
+        public void run() {
+            try {
+                SearchSplit split;
+                while ((split = take()) != null)
+                    explore(split);
+            } catch (Throwable t) {
+                fail(t);
+                testCradle.interrupt();
+                stop();
+            }
+        }
+
+        private void explore(SearchSplit split)
+                throws CannotInvokePredicateException {
+
+            StateSpaceExplorer explorer = new StateSpaceExplorer(fin, split);
+            accessedFields = explorer.getAccessedFields();
+
+            while (!testCradle.isInterrupted()) {
+
+                Object testCase = explorer.nextTestCase();
+                if (testCase == null)
+                    break;
+
+                explored++;
+
+                if (checkPredicate(testCase)) {
+                    if (maxStructs > 0) {
+                        long n = validCases.incrementAndGet();
+                        if (n > maxStructs)
+                            break;
+                        reportValid(testCase, explorer);
+                        if (n == maxStructs) {
+                            testCradle.interrupt();
+                            stop();
+                            break;
+                        }
+                    } else {
+                        valid++;
+                        reportValid(testCase, explorer);
+                    }
+                    explorer.reportCurrentAsValid();
+                }
+
+                if (hungry > 0) {
+                    SearchSplit s = explorer.split();
+                    if (s != null)
+                        offer(s);
+                }
+
+            }
+
+        }
+
+        private void reportValid(Object testCase, StateSpaceExplorer explorer) {
+            if (countOnly) {
+                sizes.add(explorer.getCurrentSize());
+                return;
+            }
+            synchronized (testCradle) {
+                testCradle.notifyClients(testCase,
+                        explorer.getCandidateVector(), true);
+            }
+        }
+
+        private boolean checkPredicate(Object testCase)
+                throws CannotInvokePredicateException {
+            startFieldTrace();
+            try {
+                return predicateInvoker.invoke(testCase);
+            } catch (Throwable e) {
+                throw new CannotInvokePredicateException(testCase.getClass(),
+                        predicate.getName(), e.getMessage(), e);
+            } finally {
+                stopFieldTrace();
+            }
+        }
+
+        /* ---- Implementation of ITester interface ---- */
+
+        public void startFieldTrace() {
+            traceStarted = true;
+            accessedFields.clear();
+            fieldTrace.clear();
+        }
+
+        public void continueFieldTrace() {
+            traceStarted = true;
+            fieldTrace.clear();
+        }
+
+        public void stopFieldTrace() {
+            traceStarted = false;
+            // duplicates are removed once per candidate
+            fieldTrace.moveTo(accessedFields);
+        }
+
+        public void notifyFieldAccess(Object obj, String field) {
+            if (!traceStarted)
+                return;
+
+            notifyFieldAccess(stateSpace.getIndexInCandidateVector(obj, field));
+        }
+
+        public void notifyFieldAccess(int accessedFieldIndex) {
+            if (!traceStarted)
+                return;
+
+            // after the accesses from getters instrumented with --traceBuffer, 
+            // if any, so the order of accesses is kept if both are used
+            if (!fieldTrace.isEmpty())
+                fieldTrace.add(accessedFieldIndex);
+            else if (accessedFieldIndex != -1)
+                accessedFields.add(accessedFieldIndex);
+        }
+
+        public FieldTrace getFieldTrace() {
+            return fieldTrace;
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package korat.testing.impl;
+
+import java.lang.reflect.Method;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+/**
+ * Invokes the predicate on candidates.
+ *
+ * <p/> For every predicate method, a subclass is generated (with Javassist)
+ * whose <code>invoke</code> method calls the predicate directly:
+ *
+ * <pre>
+ *     public boolean invoke(Object testCase) {
+ *         return ((<b>TestClass</b>) testCase).<b>repOK</b>();
+ *     }
+ * </pre>
+ *
+ * The generated class is defined by the class loader of the test class, in
+ * the same package, so it sees the instrumented test class. Unlike
+ * <code>Method.invoke</code>, the call does not box the result and can be
+ * inlined by the virtual machine. If the invoker cannot be generated, the
+ * predicate is invoked through reflection.
+ *
+ * <p/> Invokers are not cached here, so that they don't keep class loaders
+ * of finished sessions; test cradle keeps the invokers of its session (see
+ * <code>TestCradle.getPredicateInvoker</code>).
+ *
+ * @author korat.team
+ *
+ */
+public abstract class PredicateInvoker {
+
+    private static final String INVOKER_TEMPLATE = "$Korat_{0}_invoker";
+
+    /**
+     * Invokes the predicate on the given candidate.
+     *
+     * @throws Throwable -
+     *             whatever the predicate throws (when the predicate is
+     *             invoked through reflection, wrapped in
+     *             <code>InvocationTargetException</code>)
+     */
+    public abstract boolean invoke(Object testCase) throws Throwable;
+
+    /**
+     * Returns the invoker for the given predicate (a public method without
+     * parameters that returns <code>boolean</code>). The class generated for
+     * the predicate is reused if its class loader has already defined it.
+     */
+    public static synchronized PredicateInvoker getInvoker(Method predicate) {
+
+        try {
+            return generate(predicate);
+        } catch (Exception e) {
+            System.err.println("WARNING: cannot generate invoker for predicate "
+                    + predicate.getName() + ", using reflection: " + e);
+            return new ReflectionInvoker(predicate);
+        }
+
+    }
+
+    private static PredicateInvoker generate(Method predicate) throws Exception {
+
+        Class<?> cls = predicate.getDeclaringClass();
+        ClassLoader loader = cls.getClassLoader();
+        if (predicate.getReturnType() != boolean.class || loader == null)
+            return new ReflectionInvoker(predicate);
+
+        String name = cls.getName()
+                + INVOKER_TEMPLATE.replace("{0}", predicate.getName());
+        try {
+            // one generated class per predicate and class loader, since the
+            // class cannot be defined twice by the same loader
+            return (PredicateInvoker) Class.forName(name, true, loader).newInstance();
+        } catch (ClassNotFoundException e) {
+            // not generated yet
+        }
+
+        ClassPool pool = new ClassPool(true);
+        pool.insertClassPath(new ClassClassPath(PredicateInvoker.class));
+        pool.insertClassPath(new LoaderClassPath(loader));
+
+        CtClass clz = pool.makeClass(name);
+        clz.setSuperclass(pool.get(PredicateInvoker.class.getName()));
+        clz.addMethod(CtNewMethod.make("public boolean invoke(Object testCase) { "
+                + "  return ((" + cls.getName() + ") testCase)."
+                + predicate.getName() + "(); " + "}", clz));
+
+        Class<?> invokerClass = clz.toClass(loader, cls.getProtectionDomain());
+        clz.detach();
+        return (PredicateInvoker) invokerClass.newInstance();
+
+    }
+
+    private static class ReflectionInvoker extends PredicateInvoker {
+
+        private final Method predicate;
+
+        ReflectionInvoker(Method predicate) {
+            this.predicate = predicate;
+        }
+
+        public boolean invoke(Object testCase) throws Throwable {
+            return (Boolean) predicate.invoke(testCase, (Object[]) null);
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package korat.testing.impl;
+
+/**
+ * Describes a part of the state space that can be explored independently of
+ * the rest of the search. A split consists of a candidate vector and a prefix
+ * of the accessed field list: the fields in the prefix (except the last one)
+ * keep their values from the candidate vector, while the last one takes all
+ * its remaining values, together with the whole subtree below each of them.
+ *
+ * <p/> A split may also fix fewer fields and let the explorer backtrack down
+ * to a given floor; with floor 0, the split describes the rest of the
+ * sequential search after the given candidate vector.
+ *
+ * <p/> A split with an empty prefix represents the whole state space,
+ * starting from the given candidate vector.
+ *
+ * @see StateSpaceExplorer#split()
+ * @author korat.team
+ *
+ */
+public class SearchSplit {
+
+    private final int[] candidateVector;
+
+    private final int[] accessedFields;
+
+    private final int floor;
+
+    public SearchSplit(int[] candidateVector, int[] accessedFields) {
+        this(candidateVector, accessedFields, accessedFields.length - 1);
+    }
+
+    /**
+     * @param floor -
+     *            the lowest position in the accessed field list that the
+     *            explorer may advance
+     */
+    public SearchSplit(int[] candidateVector, int[] accessedFields, int floor) {
+        this.candidateVector = candidateVector;
+        this.accessedFields = accessedFields;
+        this.floor = floor;
+    }
+
+    /**
+     * Creates the split that represents the whole state space
+     *
+     * @param startCV -
+     *            the first candidate vector to be explored
+     */
+    public SearchSplit(int[] startCV) {
+        this(startCV, new int[0]);
+    }
+
+    /**
+     * @return Returns the candidate vector that the donor explored last.
+     */
+    public int[] getCandidateVector() {
+        return candidateVector;
+    }
+
+    /**
+     * @return Returns the prefix of the accessed field list.
+     */
+    public int[] getAccessedFields() {
+        return accessedFields;
+    }
+
+    /**
+     * @return the lowest position in the accessed field list that the
+     *         explorer may advance (for donated splits, position of the
+     *         donated field)
+     */
+    public int getFloor() {
+        return floor;
+    }
+
+    public boolean isRoot() {
+        return floor < 0;
+    }
+
+}
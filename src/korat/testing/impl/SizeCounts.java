@@ -0,0 +1,66 @@
+package korat.testing.impl;
+
+import java.io.PrintStream;
+
+/**
+ * Number of valid structures found for each structure size, as counted in
+ * count-only mode.
+ *
+ * @see StateSpaceExplorer#getCurrentSize()
+ * @author korat.team
+ *
+ */
+public class SizeCounts {
+
+    private long[] counts = new long[16];
+
+    private int maxSize = -1;
+
+    public void add(int size) {
+        if (size >= counts.length) {
+            long[] tmp = new long[Math.max(size + 1, 2 * counts.length)];
+            System.arraycopy(counts, 0, tmp, 0, counts.length);
+            counts = tmp;
+        }
+        counts[size]++;
+        if (size > maxSize)
+            maxSize = size;
+    }
+
+    /**
+     * Adds the counts of the given object to the counts of this object
+     */
+    public void addAll(SizeCounts other) {
+        for (int size = 0; size <= other.maxSize; size++) {
+            long n = other.counts[size];
+            if (n == 0)
+                continue;
+            add(size);
+            counts[size] += n - 1;
+        }
+    }
+
+    /**
+     * @return number of valid structures of the given size
+     */
+    public long getCount(int size) {
+        if (size < 0 || size > maxSize)
+            return 0;
+        return counts[size];
+    }
+
+    /**
+     * @return the largest size of a valid structure, -1 if there are none
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void print(PrintStream out) {
+        out.println("Valid structures per size:");
+        for (int size = 0; size <= maxSize; size++)
+            if (counts[size] > 0)
+                out.println("  " + size + ": " + counts[size]);
+    }
+
+}
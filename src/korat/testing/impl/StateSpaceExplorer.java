@@ -1,6 +1,9 @@
 package korat.testing.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import korat.finitization.IFinitization;
@@ -39,21 +42,56 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
 
     protected IIntList changedFields;
 
+    /**
+     * The lowest position in <code>accessedFields</code> that this explorer
+     * is allowed to advance. Positions below the floor are fixed by the split
+     * this explorer was started from.
+     */
+    protected int floor;
+
+    /**
+     * Positions in <code>accessedFields</code> whose untried values have been
+     * handed over to another explorer (see {@link #split()}).
+     */
+    protected boolean[] donated;
+
+    protected SearchSplit startSplit;
+
     public StateSpaceExplorer(IFinitization ifin) {
+        this(ifin, null);
+    }
+
+    /**
+     * Creates an explorer that searches only the part of the state space
+     * described by the given split. If <code>split</code> is
+     * <code>null</code>, the whole state space is explored.
+     */
+    public StateSpaceExplorer(IFinitization ifin, SearchSplit split) {
         Finitization fin = (Finitization)ifin; 
         stateSpace = fin.getStateSpace();
 
         int totalNumberOfFields = stateSpace.getTotalNumberOfFields();
-        accessedFields = new IntListAI(totalNumberOfFields);
+        initClassDomainIndices();
+        candidateVector = new int[totalNumberOfFields];
+        accessedFields = new AccessedFieldList(candidateVector, valueClassDomain,
+                valueClassDomainIndex, classDomainIsomorphic.length);
 
         changedFields = new IntListAI(totalNumberOfFields);
         for (int i = 0; i < totalNumberOfFields; i++)
             changedFields.add(i);
 
         candidateBuilder = new CandidateBuilder(stateSpace, changedFields);
-        candidateVector = new int[totalNumberOfFields];
+        donated = new boolean[totalNumberOfFields + 1];
         
-        startCV = fin.getInitialCandidateVector();
+        if (split == null) {
+            startCV = fin.getInitialCandidateVector();
+        } else {
+            startCV = split.getCandidateVector().clone();
+            if (!split.isRoot()) {
+                startSplit = split;
+                floor = split.getFloor();
+            }
+        }
         
         endCV = null;
     }
@@ -88,8 +126,21 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
     public Object nextTestCase() {
         if (firstTestCase) {
             firstTestCase = false;
-            // candidate vector to start vector
-            candidateVector = startCV;
+            // candidate vector to start vector (accessed field list keeps 
+            // the reference to candidateVector, so it is copied)
+            System.arraycopy(startCV, 0, candidateVector, 0, startCV.length);
+            if (startSplit != null) {
+                // split vectors have already been explored by their donor, 
+                // so continue with the next one, but build all the fields
+                int[] prefix = startSplit.getAccessedFields();
+                for (int i = 0; i < prefix.length; i++)
+                    accessedFields.add(prefix[i]);
+                if (!getNextCandidate())
+                    return null;
+                changedFields.clear();
+                for (int i = 0; i < candidateVector.length; i++)
+                    changedFields.add(i);
+            }
         } else {
             // find next candidate vector
             boolean hasNext = getNextCandidate();
@@ -101,6 +152,368 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
         return candidateBuilder.buildCandidate(candidateVector);
     }
     
+    /*
+     * -------------------------------------------------------------------------
+     * Class domains for the non-isomorphism check.
+     * -------------------------------------------------------------------------
+     */
+
+    /**
+     * For each field and each value index of that field: the class domain of
+     * the value (as an index into <code>classDomainIsomorphic</code>, or -1
+     * if the value does not belong to a class domain) and the index of the
+     * value within its class domain. Fields with the same field domain share
+     * the arrays.
+     */
+    protected int[][] valueClassDomain;
+
+    protected int[][] valueClassDomainIndex;
+
+    /**
+     * Whether the class domain is included in isomorphism checking.
+     */
+    protected boolean[] classDomainIsomorphic;
+
+    private void initClassDomainIndices() {
+        int n = stateSpace.getTotalNumberOfFields();
+        valueClassDomain = new int[n][];
+        valueClassDomainIndex = new int[n][];
+
+        Map<ClassDomain, Integer> cdIds = new IdentityHashMap<ClassDomain, Integer>();
+        List<ClassDomain> cds = new ArrayList<ClassDomain>();
+        Map<FieldDomain, Integer> done = new IdentityHashMap<FieldDomain, Integer>();
+
+        for (int i = 0; i < n; i++) {
+            FieldDomain fd = stateSpace.getFieldDomain(i);
+            Integer first = done.get(fd);
+            if (first != null) {
+                valueClassDomain[i] = valueClassDomain[first];
+                valueClassDomainIndex[i] = valueClassDomainIndex[first];
+                continue;
+            }
+            done.put(fd, i);
+
+            int size = fd.getNumberOfElements();
+            int[] cdOf = new int[size];
+            int[] indexOf = new int[size];
+            for (int v = 0; v < size; v++) {
+                ClassDomain cd = fd.getClassDomainFor(v);
+                if (cd == null) {
+                    cdOf[v] = -1;
+                } else {
+                    Integer id = cdIds.get(cd);
+                    if (id == null) {
+                        id = cds.size();
+                        cdIds.put(cd, id);
+                        cds.add(cd);
+                    }
+                    cdOf[v] = id;
+                }
+                indexOf[v] = fd.getClassDomainIndexFor(v);
+            }
+            valueClassDomain[i] = cdOf;
+            valueClassDomainIndex[i] = indexOf;
+        }
+
+        classDomainIsomorphic = new boolean[cds.size()];
+        sizeStamps = new int[cds.size()][];
+        for (int i = 0; i < classDomainIsomorphic.length; i++) {
+            ClassDomain cd = cds.get(i);
+            classDomainIsomorphic[i] = cd.isIncludedInIsomorphismChecking();
+            if (cd.getClassOfObjects() != null)
+                sizeStamps[i] = new int[cd.getSize()];
+        }
+    }
+
+    /*
+     * -------------------------------------------------------------------------
+     * Size of the current candidate.
+     * -------------------------------------------------------------------------
+     */
+
+    /**
+     * For each class domain (<code>null</code> for the null class domain),
+     * the number of the last <code>getCurrentSize</code> call that counted
+     * the object with the given index.
+     */
+    private int[][] sizeStamps;
+
+    private int sizeStamp;
+
+    /**
+     * Returns the size of the current candidate: the number of distinct
+     * objects from class domains (not counting <code>null</code> and arrays)
+     * that are values of the fields in the accessed field list. For linked
+     * structures, this is the number of nodes reachable from the root.
+     */
+    public int getCurrentSize() {
+        if (++sizeStamp == 0) {
+            for (int[] stamps : sizeStamps)
+                if (stamps != null)
+                    Arrays.fill(stamps, 0);
+            sizeStamp = 1;
+        }
+        int size = 0;
+        for (int i = 0, n = accessedFields.numberOfElements(); i < n; i++) {
+            int field = accessedFields.get(i);
+            int value = candidateVector[field];
+            int cd = valueClassDomain[field][value];
+            if (cd < 0 || sizeStamps[cd] == null)
+                continue;
+            int index = valueClassDomainIndex[field][value];
+            if (index >= 0 && sizeStamps[cd][index] != sizeStamp) {
+                sizeStamps[cd][index] = sizeStamp;
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Accessed field list that also keeps, for every class domain, the
+     * maximal index within that class domain among the values of the fields
+     * in the list, so that the non-isomorphism check does not have to scan
+     * the list.
+     *
+     * <p/> Pushes are on the hot path of the predicate (every field access),
+     * so they only record the field; the bounds are brought up to date by
+     * <code>updateBounds</code> when the non-isomorphism check needs them,
+     * and each pop restores the bounds that held before the popped field was
+     * pushed.
+     */
+    static final class AccessedFieldList implements IIntList {
+
+        private final int[] elems;
+
+        private int lastElementIndex = -1;
+
+        /*
+         * an element is in the list iff its stamp equals the current epoch;
+         * clear() empties the list by moving to the next epoch
+         */
+        private final int[] stamps;
+
+        private int epoch = 1;
+
+        private final int[] candidateVector;
+
+        private final int[][] valueClassDomain;
+
+        private final int[][] valueClassDomainIndex;
+
+        private final int[] classDomainMax;
+
+        private final int[] entryClassDomain;
+
+        private final int[] previousMax;
+
+        /*
+         * number of elements (from the bottom of the list) that the bounds
+         * include
+         */
+        private int boundedElements;
+
+        AccessedFieldList(int[] candidateVector, int[][] valueClassDomain,
+                int[][] valueClassDomainIndex, int numOfClassDomains) {
+            int n = candidateVector.length;
+            this.candidateVector = candidateVector;
+            this.valueClassDomain = valueClassDomain;
+            this.valueClassDomainIndex = valueClassDomainIndex;
+            elems = new int[n];
+            stamps = new int[n];
+            classDomainMax = new int[numOfClassDomains];
+            Arrays.fill(classDomainMax, -1);
+            entryClassDomain = new int[n];
+            previousMax = new int[n];
+        }
+
+        public boolean contains(int elem) {
+            return stamps[elem] == epoch;
+        }
+
+        public boolean add(int elem) {
+            if (stamps[elem] == epoch)
+                return false;
+
+            elems[++lastElementIndex] = elem;
+            stamps[elem] = epoch;
+            return true;
+        }
+
+        /**
+         * Includes the fields pushed since the last call in the class domain
+         * bounds.
+         */
+        void updateBounds() {
+            for (int pos = boundedElements; pos <= lastElementIndex; pos++) {
+                int elem = elems[pos];
+                int value = candidateVector[elem];
+                int cd = valueClassDomain[elem][value];
+                entryClassDomain[pos] = cd;
+                if (cd != -1) {
+                    int max = classDomainMax[cd];
+                    previousMax[pos] = max;
+                    int index = valueClassDomainIndex[elem][value];
+                    if (index > max)
+                        classDomainMax[cd] = index;
+                }
+            }
+            boundedElements = lastElementIndex + 1;
+        }
+
+        public int removeLast() {
+            int pos = lastElementIndex--;
+            if (pos < boundedElements) {
+                boundedElements = pos;
+                int cd = entryClassDomain[pos];
+                if (cd != -1)
+                    classDomainMax[cd] = previousMax[pos];
+            }
+            int ret = elems[pos];
+            stamps[ret] = 0;
+            return ret;
+        }
+
+        public void clear() {
+            epoch++;
+            if (epoch == 0) {
+                Arrays.fill(stamps, 0);
+                epoch = 1;
+            }
+            lastElementIndex = -1;
+            if (boundedElements > 0) {
+                Arrays.fill(classDomainMax, -1);
+                boundedElements = 0;
+            }
+        }
+
+        /**
+         * Replaces the field at the given position. The bounds that include
+         * the replaced field are restored to the ones that held before it was
+         * pushed, and are brought up to date by the next
+         * <code>updateBounds</code>.
+         */
+        public int set(int idx, int elem) {
+            int old = elems[idx];
+            if (old == elem)
+                return elem;
+            if (stamps[elem] == epoch)
+                throw new IllegalArgumentException("Field " + elem
+                        + " is already in the list");
+
+            // undo the bounds of the fields from idx on, last one first
+            for (int pos = boundedElements - 1; pos >= idx; pos--) {
+                int cd = entryClassDomain[pos];
+                if (cd != -1)
+                    classDomainMax[cd] = previousMax[pos];
+            }
+            if (boundedElements > idx)
+                boundedElements = idx;
+
+            stamps[old] = 0;
+            stamps[elem] = epoch;
+            return elems[idx] = elem;
+        }
+
+        public int numberOfElements() {
+            return lastElementIndex + 1;
+        }
+
+        public boolean isEmpty() {
+            return lastElementIndex == -1;
+        }
+
+        public int get(int idx) {
+            return elems[idx];
+        }
+
+        public int[] toArray() {
+            int[] ret = new int[lastElementIndex + 1];
+            System.arraycopy(elems, 0, ret, 0, ret.length);
+            return ret;
+        }
+
+        int getMaxClassDomainIndex(int cd) {
+            return classDomainMax[cd];
+        }
+
+        public String toString() {
+            return Arrays.toString(toArray());
+        }
+
+    }
+
+    /*
+     * -------------------------------------------------------------------------
+     * Splitting the search for parallel exploration.
+     * -------------------------------------------------------------------------
+     */
+
+    /**
+     * Hands over the untried values of the shallowest entry in the accessed
+     * field list that still has some. This explorer will not try those values
+     * any more; exploring them (together with everything below them) is the
+     * job of the explorer created from the returned split.
+     * 
+     * <p/> Should be called only between two <code>nextTestCase</code>
+     * calls, after the current candidate has been fully processed.
+     * 
+     * @return split describing the donated part of the state space, or
+     *         <code>null</code> if there is nothing left to donate
+     */
+    public SearchSplit split() {
+        int size = accessedFields.numberOfElements();
+        for (int pos = floor; pos < size; pos++) {
+            if (donated[pos] || !hasNextValue(pos))
+                continue;
+
+            donated[pos] = true;
+
+            int[] prefix = new int[pos + 1];
+            for (int i = 0; i <= pos; i++)
+                prefix[i] = accessedFields.get(i);
+
+            // fields accessed after the donated one would be reset by the
+            // time the search backtracks to it
+            int[] cv = candidateVector.clone();
+            for (int i = pos + 1; i < size; i++) {
+                int fldIndex = accessedFields.get(i);
+                if (!stateSpace.getCVElem(fldIndex).isExcludedFromSearch())
+                    cv[fldIndex] = 0;
+            }
+
+            return new SearchSplit(cv, prefix);
+        }
+        return null;
+    }
+
+    private boolean hasNextValue(int pos) {
+        int fldIndex = accessedFields.get(pos);
+        if (stateSpace.getCVElem(fldIndex).isExcludedFromSearch())
+            return false;
+
+        FieldDomain fDomain = stateSpace.getFieldDomain(fldIndex);
+        int currentInstanceIndex = candidateVector[fldIndex];
+        if (currentInstanceIndex >= fDomain.getNumberOfElements() - 1)
+            return false;
+
+        int cDomain = valueClassDomain[fldIndex][currentInstanceIndex];
+        if (fDomain.isPrimitiveType() || !classDomainIsomorphic[cDomain])
+            return true;
+
+        // the bound is needed for a position below the top of the list, 
+        // so it has to be computed by scanning 
+        int currentInstanceIndexInClassDomain = valueClassDomainIndex[fldIndex][currentInstanceIndex];
+        for (int i = 0; i < pos; i++) {
+            int accessedFieldIndex = accessedFields.get(i);
+            int activeInstanceIndex = candidateVector[accessedFieldIndex];
+            if (valueClassDomain[accessedFieldIndex][activeInstanceIndex] == cDomain
+                    && valueClassDomainIndex[accessedFieldIndex][activeInstanceIndex] >= currentInstanceIndexInClassDomain)
+                return true;
+        }
+        return fDomain.getIndexOfFirstObjectInNextClassDomain(currentInstanceIndex) != -1;
+    }
+
     /*
      * -------------------------------------------------------------------------
      * Internal stuff.
@@ -114,7 +527,7 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
 
         while (!nextCandidateFound) {
 
-            if (accessedFields.isEmpty())
+            if (accessedFields.numberOfElements() <= floor)
                 break; // candidate not found - search is completed
 
             int lastAccessedFieldIndex = accessedFields.removeLast();
@@ -122,11 +535,15 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
             FieldDomain fDomain = stateSpace.getFieldDomain(lastAccessedFieldIndex);
             int maxInstanceIndexForFieldDomain = fDomain.getNumberOfElements() - 1;
             int currentInstanceIndex = candidateVector[lastAccessedFieldIndex];
+            int position = accessedFields.numberOfElements();
+            boolean wasDonated = donated[position];
+            donated[position] = false;
 
             if (lastAccessedField.isExcludedFromSearch()){ //array fields are exempt from search
                 nextCandidateFound = false;
             
-            } else if (currentInstanceIndex >= maxInstanceIndexForFieldDomain) {
+            } else if (wasDonated || currentInstanceIndex >= maxInstanceIndexForFieldDomain) {
+                // the rest of the values of a donated field are explored elsewhere
                 
                 candidateVector[lastAccessedFieldIndex] = 0;
                 changedFields.add(lastAccessedFieldIndex);
@@ -140,13 +557,10 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
                  * nextCandidateFound = true;
                  */
 
-                int numberOfAccessedFields = accessedFields.numberOfElements();
-                int maxInstanceIndexInClassDomain = -1;
-
-                ClassDomain cDomain = fDomain.getClassDomainFor(currentInstanceIndex);
+                int cDomain = valueClassDomain[lastAccessedFieldIndex][currentInstanceIndex];
 
                 if (fDomain.isPrimitiveType()
-                        || !cDomain.isIncludedInIsomorphismChecking()) {
+                        || !classDomainIsomorphic[cDomain]) {
 
                     candidateVector[lastAccessedFieldIndex]++;
                     changedFields.add(lastAccessedFieldIndex);
@@ -154,21 +568,11 @@ public class StateSpaceExplorer implements IKoratSearchStrategy {
 
                 } else {
 
-                    for (int i = 0; i < numberOfAccessedFields; i++) {
-                        int accessedFieldIndex = accessedFields.get(i);
-                        int activeInstanceIndex = candidateVector[accessedFieldIndex];
-
-                        FieldDomain fd = stateSpace.getFieldDomain(accessedFieldIndex);
-                        ClassDomain cd = fd.getClassDomainFor(activeInstanceIndex);
-
-                        if (cd != null && cd == (cDomain)) {
-                            int instanceIndex = fd.getClassDomainIndexFor(activeInstanceIndex);
-                            if (maxInstanceIndexInClassDomain < instanceIndex)
-                                maxInstanceIndexInClassDomain = instanceIndex;
-                        }
-                    }
+                    AccessedFieldList fields = (AccessedFieldList) accessedFields;
+                    fields.updateBounds();
+                    int maxInstanceIndexInClassDomain = fields.getMaxClassDomainIndex(cDomain);
 
-                    int currentInstanceIndexInClassDomain = fDomain.getClassDomainIndexFor(currentInstanceIndex);
+                    int currentInstanceIndexInClassDomain = valueClassDomainIndex[lastAccessedFieldIndex][currentInstanceIndex];
 
                     if (currentInstanceIndexInClassDomain <= maxInstanceIndexInClassDomain) {
                         candidateVector[lastAccessedFieldIndex]++;
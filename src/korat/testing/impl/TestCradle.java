@@ -2,21 +2,27 @@ package korat.testing.impl;
 
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import korat.config.ConfigManager;
 import korat.finitization.IFinitization;
 import korat.finitization.impl.Finitization;
 import korat.finitization.impl.StateSpace;
+import korat.instrumentation.EagerInstrumenter;
+import korat.instrumentation.StructureCopier;
 import korat.loading.InstrumentingClassLoader;
+import korat.testing.FieldTrace;
 import korat.testing.IKoratSearchStrategy;
 import korat.testing.ITester;
 import korat.utils.IIntList;
 import korat.utils.cv.CVFactory;
-import korat.utils.cv.ICVFactory;
 import korat.utils.cv.ICVFinder;
 
 /**
@@ -30,18 +36,44 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
 
     private static TestCradle instance = new TestCradle();
 
+    private static final InheritableThreadLocal<TestCradle> current = new InheritableThreadLocal<TestCradle>();
+
+    /**
+     * Returns the test cradle of the session that runs in the current thread
+     * (see {@link KoratSession}), or the default one if there is no such
+     * session.
+     */
     public static TestCradle getInstance() {
-        return instance;
+        TestCradle ret = current.get();
+        return ret != null ? ret : instance;
+    }
+
+    /**
+     * Makes <code>getInstance()</code> return the given test cradle in the
+     * current thread and in the threads it starts afterwards.
+     * 
+     * @param testCradle -
+     *            test cradle of the current session, or <code>null</code>
+     *            for the default one
+     */
+    static void setCurrentInstance(TestCradle testCradle) {
+        current.set(testCradle);
     }
 
-    private ICVFactory cvFactory;
-    
     protected ClassLoader classLoader;
     
     protected TestCradle() {
         classLoader = new InstrumentingClassLoader();
         Finitization.setClassLoader(classLoader);
-        cvFactory = CVFactory.getCVFactory();
+    }
+
+    /**
+     * Creates a test cradle with its own config and class loader, that
+     * doesn't change the defaults used outside of sessions.
+     */
+    TestCradle(ConfigManager config) {
+        this.config = config;
+        classLoader = new InstrumentingClassLoader();
     }
 
     public ClassLoader getClassLoader() {
@@ -56,38 +88,48 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
 
     private boolean traceStarted;
 
+    private final FieldTrace fieldTrace = new FieldTrace(64);
+
     public void startFieldTrace() {
         traceStarted = true;
         accessedFields.clear();
+        fieldTrace.clear();
     }
 
     public void continueFieldTrace() {
         traceStarted = true;
+        fieldTrace.clear();
     }
 
     public void stopFieldTrace() {
         traceStarted = false;
+        // duplicates are removed once per candidate
+        fieldTrace.moveTo(accessedFields);
     }
 
     public void notifyFieldAccess(Object obj, String field) {
         if (!traceStarted)
             return;
 
-        int accessedFieldIndex = stateSpace.getIndexInCandidateVector(obj,
-                field);
-
-        if (accessedFieldIndex != -1)
-            accessedFields.add(accessedFieldIndex);
+        notifyFieldAccess(stateSpace.getIndexInCandidateVector(obj, field));
     }
 
     public void notifyFieldAccess(int accessedFieldIndex) {
         if (!traceStarted)
             return;
 
-        if (accessedFieldIndex != -1)
+        // after the accesses from getters instrumented with --traceBuffer, 
+        // if any, so the order of accesses is kept if both are used
+        if (!fieldTrace.isEmpty())
+            fieldTrace.add(accessedFieldIndex);
+        else if (accessedFieldIndex != -1)
             accessedFields.add(accessedFieldIndex);
     }
 
+    public FieldTrace getFieldTrace() {
+        return fieldTrace;
+    }
+
     /*
      * -------------------------------------------------------------------------
      * Info about korat execution that can be obtained after calling start
@@ -114,10 +156,16 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
      */
     
     public int[] getCandidateVector() {
+        ListenerDispatcher d = dispatcher;
+        if (d != null && d.isDispatchThread())
+            return d.getCandidateVector().clone();
         return stateSpaceExplorer.getCandidateVector().clone();
     }
     
     public boolean isPredicateOK() {
+        ListenerDispatcher d = dispatcher;
+        if (d != null && d.isDispatchThread())
+            return d.isPredicateOK();
         return predicateOK;
     }
     
@@ -128,6 +176,37 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
     public StateSpace getStateSpace() {
         return stateSpace;
     }
+
+    private StructureCopier structureCopier;
+
+    private StateSpace copiedStateSpace;
+
+    /**
+     * Returns a deep copy of the given test case, which listeners can keep
+     * (the test case itself is built on the same objects for every
+     * candidate). The copy is made by the methods generated during
+     * instrumentation, without reflection or serialization, and its objects
+     * don't report field accesses to the search. The methods are generated
+     * only with the <code>copyTestCases</code> option.
+     * 
+     * @param testCase -
+     *            test case the listener is notified of
+     * @return copy of the test case
+     * @see StructureCopier
+     */
+    public synchronized Object copyTestCase(Object testCase) {
+        if (!config.copyTestCases)
+            throw new IllegalStateException(
+                    "Test cases can be copied only with the copyTestCases option");
+        if (structureCopier == null || copiedStateSpace != stateSpace) {
+            // objects of other state spaces (of parallel workers, for
+            // example) are copied as well, only not by their index
+            copiedStateSpace = stateSpace;
+            structureCopier = new StructureCopier(stateSpace == null
+                    ? new Object[0] : stateSpace.getObjects());
+        }
+        return structureCopier.copyStructure(testCase);
+    }
     
     /*
      * -------------------------------------------------------------------------
@@ -138,8 +217,15 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
     public void start(String className, String[] finArgs)
             throws KoratTestException {
 
+        interrupted = false;
         try {
         
+            if (config.eagerInstrument > 0 && config.instrumentedJar == null
+                    && classLoader instanceof InstrumentingClassLoader) {
+                EagerInstrumenter instrumenter = new EagerInstrumenter(className);
+                ((InstrumentingClassLoader) classLoader).defineInstrumentedClasses(
+                        instrumenter.instrument(config.eagerInstrument));
+            }
             Class clazz = classLoader.loadClass(className);
             start(clazz, finArgs);
         
@@ -149,6 +235,27 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
         
     }
 
+    /**
+     * Invokes the finitization of the given class (loaded by the class loader
+     * of this test cradle), without searching its state space.
+     * 
+     * @return finitization, whose state space has the objects that report
+     *         field accesses to this test cradle
+     */
+    public IFinitization createFinitization(String className, String[] finArgs)
+            throws KoratTestException {
+
+        Class clazz;
+        try {
+            clazz = classLoader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new CannotFindClassUnderTest(className, e.getMessage(), e);
+        }
+        Method finitize = getFinMethod(clazz, config.finitization, finArgs);
+        return invokeFinMethod(clazz, finitize, finArgs);
+
+    }
+
     /*
      * -------------------------------------------------------------------------
      * Internal stuff.
@@ -173,12 +280,264 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
         //COMPAT1.4
         //finName = getFinName(clazz.getSimpleName());
         finName = config.finitization;
+        if (config.sweep != null && canSweep()) {
+            startSweep(clazz, finArgs);
+            return;
+        }
+        explore(clazz, finArgs);
+
+    }
+
+    private void explore(Class clazz, String[] finArgs)
+            throws KoratTestException {
+
         Method finitize = getFinMethod(clazz, finName, finArgs);
-        IFinitization fin = invokeFinMethod(clazz, finitize, finArgs);
-        startTestGeneration(fin);
+        sizeCounts = null;
+        if (config.worker != null) {
+            new DistributedWorker(this, config.worker).start(invokeFinMethod(
+                    clazz, finitize, finArgs));
+            return;
+        }
+        if (config.distribute >= 0 && canDistribute()) {
+            new DistributedCoordinator(this).start(invokeFinMethod(clazz,
+                    finitize, finArgs));
+            return;
+        }
+        try {
+            if (config.parallel > 1 && canExploreInParallel()) {
+                startDispatcher(clazz, finitize, finArgs);
+                startParallelTestGeneration(clazz, finitize, finArgs);
+                return;
+            }
+            startDispatcher(clazz, finitize, finArgs);
+            IFinitization fin = invokeFinMethod(clazz, finitize, finArgs);
+            startTestGeneration(fin);
+        } finally {
+            // if the search has failed
+            stopDispatcher();
+        }
 
     }
 
+    /*
+     * -------------------------------------------------------------------------
+     * Asynchronous notification of listeners.
+     * -------------------------------------------------------------------------
+     */
+
+    private volatile ListenerDispatcher dispatcher;
+
+    /**
+     * With the <code>asyncListeners</code> option, starts the thread that
+     * notifies the listeners, on the objects of its own finitization (which
+     * is created before the search's one, so
+     * <code>StateSpace.getLastInstance()</code> is the search's).
+     */
+    private void startDispatcher(Class clazz, Method finitize, String[] finArgs)
+            throws CannotInvokeFinitizationException {
+
+        if (config.asyncListeners == null || config.countOnly || !hasClients())
+            return;
+        ListenerDispatcher d = new ListenerDispatcher(this, config.asyncBuffer,
+                config.asyncListeners);
+        Finitization.setTester(d);
+        try {
+            d.start(invokeFinMethod(clazz, finitize, finArgs));
+        } finally {
+            Finitization.setTester(null);
+        }
+        dispatcher = d;
+
+    }
+
+    /**
+     * Waits until the listeners are notified of all test cases reported so
+     * far.
+     */
+    private void stopDispatcher() {
+        ListenerDispatcher d = dispatcher;
+        if (d == null)
+            return;
+        d.finish();
+        dispatcher = null;
+        d.checkFailure();
+    }
+
+    @Override
+    protected void notifyClients(Object testCase, boolean predicateOK) {
+        if (dispatcher == null)
+            super.notifyClients(testCase, predicateOK);
+        else
+            notifyClients(testCase, stateSpaceExplorer.getCandidateVector(),
+                    predicateOK);
+    }
+
+    /**
+     * Notifies the listeners of the given candidate, or (with the
+     * <code>asyncListeners</code> option) passes its candidate vector to the
+     * thread that notifies them.
+     */
+    void notifyClients(Object testCase, int[] candidateVector,
+            boolean predicateOK) {
+        ListenerDispatcher d = dispatcher;
+        if (d == null)
+            super.notifyClients(testCase, predicateOK);
+        else if (!interrupted && (predicateOK || hasSpecialClients()))
+            d.dispatch(candidateVector, predicateOK);
+    }
+
+    /*
+     * -------------------------------------------------------------------------
+     * Size sweep.
+     * -------------------------------------------------------------------------
+     */
+
+    /**
+     * Finitization argument that is replaced by the size in a sweep.
+     */
+    private static final String SWEEP_ARG = "size";
+
+    private boolean canSweep() {
+        String unsupported = null;
+        if (config.worker != null || config.distribute >= 0)
+            unsupported = "distributed search";
+        else if (config.checkpoint != null || config.resume)
+            unsupported = "checkpoints";
+        if (unsupported == null)
+            return true;
+        System.err.println("WARNING: size sweep is not supported with "
+                + unsupported + ", exploring only the given size.");
+        return false;
+    }
+
+    /**
+     * Explores the state spaces of all sizes in the <code>sweep</code> range,
+     * in this virtual machine, so the classes are loaded and instrumented
+     * only once. The size replaces the finitization arguments given as
+     * <code>size</code> (or the first argument, if there are none), e.g.
+     * <code>--args size,0,size --sweep 1..12</code>.
+     */
+    private void startSweep(Class clazz, String[] finArgs)
+            throws KoratTestException {
+
+        int[] range = getSweepRange(config.sweep);
+        int n = range[1] - range[0] + 1;
+        long[] explored = new long[n];
+        long[] valid = new long[n];
+        long[] time = new long[n];
+
+        int swept = 0;
+        for (; swept < n && !interrupted; swept++) {
+            String[] args = getSweepArgs(finArgs, range[0] + swept);
+            System.out.println("Size " + (range[0] + swept) + ": "
+                    + Arrays.toString(args));
+            long t1 = System.currentTimeMillis();
+            explore(clazz, args);
+            time[swept] = System.currentTimeMillis() - t1;
+            explored[swept] = totalExplored;
+            valid[swept] = validCasesGenerated;
+            System.out.println();
+        }
+
+        totalExplored = 0;
+        validCasesGenerated = 0;
+        System.out.println(String.format("%8s %16s %16s %12s", "Size",
+                "Explored", "Valid", "Time (s)"));
+        for (int i = 0; i < swept; i++) {
+            System.out.println(String.format("%8d %16d %16d %12.3f", range[0]
+                    + i, explored[i], valid[i], time[i] / 1000.0));
+            totalExplored += explored[i];
+            validCasesGenerated += valid[i];
+        }
+
+    }
+
+    private static int[] getSweepRange(String sweep) {
+        int sep = sweep.indexOf("..");
+        try {
+            int from = Integer.parseInt(sweep.substring(0, sep).trim());
+            int to = Integer.parseInt(sweep.substring(sep + 2).trim());
+            if (from <= to)
+                return new int[] { from, to };
+        } catch (RuntimeException e) {
+            // reported below
+        }
+        throw new RuntimeException("Invalid size sweep range \"" + sweep
+                + "\", expected from..to");
+    }
+
+    private static String[] getSweepArgs(String[] finArgs, int size) {
+        String[] ret = finArgs.clone();
+        boolean replaced = false;
+        for (int i = 0; i < ret.length; i++) {
+            if (SWEEP_ARG.equals(ret[i].trim())) {
+                ret[i] = Integer.toString(size);
+                replaced = true;
+            }
+        }
+        if (!replaced && ret.length > 0)
+            ret[0] = Integer.toString(size);
+        return ret;
+    }
+
+    private boolean canExploreInParallel() {
+        String unsupported = null;
+        if (config.cvStart != -1 || config.cvEnd != -1)
+            unsupported = "cvStart/cvEnd";
+        else if (config.cvWrite)
+            unsupported = "cvWrite";
+        else if (config.progress > 0)
+            unsupported = "progress";
+        else if (config.printCandVects)
+            unsupported = "printCandVects";
+        else if (config.serialize != null && config.serializeCV)
+            unsupported = "serializeCV";
+        else if (config.checkpoint != null)
+            unsupported = "checkpoint";
+        else if (config.resume)
+            unsupported = "resume";
+        if (unsupported == null)
+            return true;
+        System.err.println("WARNING: parallel exploration does not support "
+                + unsupported + " option, exploring sequentially.");
+        return false;
+    }
+
+    /**
+     * Workers run with the same options as the coordinator, so options that
+     * write test cases or candidate vectors would make every worker write
+     * the same output, and ranges explored by more than one worker would be
+     * written twice. Options that stop or restart the search at some candidate
+     * are not supported either, since every worker would apply them to its own
+     * ranges only.
+     */
+    private boolean canDistribute() {
+        String unsupported = null;
+        if (config.maxStructs != -1)
+            unsupported = "maxStructs";
+        else if (config.cvStart != -1 || config.cvEnd != -1)
+            unsupported = "cvStart/cvEnd";
+        else if (config.checkpoint != null)
+            unsupported = "checkpoint";
+        else if (config.resume)
+            unsupported = "resume";
+        else if (config.cvWrite)
+            unsupported = "cvWrite";
+        else if (config.serialize != null)
+            unsupported = "serialize";
+        else if (config.visualize)
+            unsupported = "visualize";
+        else if (config.print)
+            unsupported = "print";
+        else if (config.listeners != null)
+            unsupported = "listeners";
+        if (unsupported == null)
+            return true;
+        System.err.println("WARNING: distributed search does not support "
+                + unsupported + " option, exploring sequentially.");
+        return false;
+    }
+
     private Method getFinMethod(Class cls, String finName, String[] finArgs)
             throws CannotFindFinitizationException {
 
@@ -243,31 +602,207 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
     protected void startTestGeneration(IFinitization fin)
             throws CannotInvokePredicateException, CannotFindPredicateException {
 
-        stateSpaceExplorer = new StateSpaceExplorer(fin);
         stateSpace = ((Finitization)fin).getStateSpace();
-        initStartAndEndCVs(stateSpaceExplorer);
 
         totalExplored = 0;
         validCasesGenerated = 0;
 
-        Object testCase = null;
+        if (config.countOnly) {
+            startCounting(fin);
+            return;
+        }
+
+        Checkpoint resumed = config.resume ? loadCheckpoint() : null;
+        if (resumed != null) {
+            stateSpaceExplorer = new StateSpaceExplorer(fin, resumed.toSearchSplit());
+            totalExplored = resumed.getTotalExplored();
+            validCasesGenerated = resumed.getValidCasesGenerated();
+            System.out.println("Resuming search after " + totalExplored
+                    + " explored candidates");
+        } else {
+            stateSpaceExplorer = new StateSpaceExplorer(fin);
+        }
+        initStartAndEndCVs(stateSpaceExplorer, resumed == null);
+
         Class testCaseClass = fin.getFinClass();
 
         Method predicate = getPredicateMethod(testCaseClass, config.predicate);
 
+        if (config.printCandVects)
+            System.out.println(stateSpace);
+
+        if (config.checkpoint != null) {
+            checkpointFile = new File(config.checkpoint);
+            nextCheckpointTime = System.currentTimeMillis()
+                    + config.checkpointInterval * 1000;
+        }
+        try {
+            boolean finished = search(predicate, -1);
+            if (finished && checkpointFile != null)
+                checkpointFile.delete();
+        } finally {
+            checkpointFile = null;
+        }
+
+        finishTestGeneration();
+
+    }
+
+    /*
+     * -------------------------------------------------------------------------
+     * Count-only mode.
+     * -------------------------------------------------------------------------
+     */
+
+    protected SizeCounts sizeCounts;
+
+    /**
+     * @return number of valid test cases of each size found by the last
+     *         search in count-only mode, <code>null</code> if the last search
+     *         was not in count-only mode
+     */
+    public SizeCounts getSizeCounts() {
+        return sizeCounts;
+    }
+
+    private void startCounting(IFinitization fin)
+            throws CannotInvokePredicateException, CannotFindPredicateException {
+
+        String ignored = null;
+        if (config.cvWrite)
+            ignored = "cvWrite";
+        else if (config.progress > 0)
+            ignored = "progress";
+        else if (config.printCandVects)
+            ignored = "printCandVects";
+        else if (config.checkpoint != null)
+            ignored = "checkpoint";
+        if (ignored != null)
+            System.err.println("WARNING: count-only mode ignores " + ignored
+                    + " option.");
+
+        stateSpaceExplorer = new StateSpaceExplorer(fin);
+        initStartAndEndCVs(stateSpaceExplorer, true);
+        Method predicate = getPredicateMethod(fin.getFinClass(), config.predicate);
+
+        sizeCounts = new SizeCounts();
+        count((StateSpaceExplorer) stateSpaceExplorer, predicate);
+        finishTestGeneration();
+
+    }
+
+    /**
+     * Search loop of the count-only mode: like <code>search</code>, but
+     * without notifying listeners, printing and checkpoints.
+     */
+    private void count(StateSpaceExplorer explorer, Method predicate)
+            throws CannotInvokePredicateException {
+
+        accessedFields = explorer.getAccessedFields();
+        long maxStructs = config.maxStructs;
+
+        while (!interrupted) {
+
+            Object testCase = explorer.nextTestCase();
+            if (testCase == null)
+                break;
+
+            totalExplored++;
+
+            if (checkPredicate(testCase, predicate)) {
+                validCasesGenerated++;
+                sizeCounts.add(explorer.getCurrentSize());
+                if (validCasesGenerated == maxStructs)
+                    break;
+                explorer.reportCurrentAsValid();
+            }
+
+        }
+
+    }
+
+    /*
+     * -------------------------------------------------------------------------
+     * Checkpoints.
+     * -------------------------------------------------------------------------
+     */
+
+    /**
+     * Clock is checked only once per this many explored candidates.
+     */
+    private static final long CHECKPOINT_POLL_MASK = 0x3ff;
+
+    private File checkpointFile;
+
+    private long nextCheckpointTime;
+
+    private Checkpoint loadCheckpoint() {
+        if (config.checkpoint == null) {
+            System.err.println("WARNING: no checkpoint file given, starting from the beginning.");
+            return null;
+        }
+        File file = new File(config.checkpoint);
+        if (!file.exists()) {
+            System.err.println("WARNING: checkpoint file " + file
+                    + " does not exist, starting from the beginning.");
+            return null;
+        }
+        Checkpoint cp;
+        try {
+            cp = Checkpoint.read(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read checkpoint file " + file, e);
+        }
+        if (cp.getFingerprint() != stateSpace.getFingerprint())
+            throw new RuntimeException("Checkpoint file " + file
+                    + " was written for a different finitization");
+        return cp;
+    }
+
+    private void checkpointIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < nextCheckpointTime)
+            return;
+        Checkpoint cp = new Checkpoint(stateSpace.getFingerprint(),
+                totalExplored, validCasesGenerated,
+                stateSpaceExplorer.getCandidateVector(), accessedFields);
+        try {
+            cp.write(checkpointFile);
+        } catch (IOException e) {
+            warning("Cannot write checkpoint file " + checkpointFile, e);
+        }
+        nextCheckpointTime = now + config.checkpointInterval * 1000;
+    }
+
+    /**
+     * Runs the search loop on the current state space explorer.
+     * 
+     * @param predicate -
+     *            predicate method
+     * @param budget -
+     *            maximal number of candidates to explore, -1 for no limit
+     * @return <code>true</code> if the explorer ran out of candidates
+     */
+    protected boolean search(Method predicate, long budget)
+            throws CannotInvokePredicateException {
+
+        Object testCase = null;
+        long explored = 0;
+
         /* ---- Search Loop ---- */
 
         accessedFields = stateSpaceExplorer.getAccessedFields();
 
-        if (config.printCandVects)
-            System.out.println(stateSpace);
-
         while (!interrupted) {
 
+            if (explored == budget)
+                return false;
+
             testCase = stateSpaceExplorer.nextTestCase();
             if (testCase == null)
-                break;
+                return true;
 
+            explored++;
             totalExplored++;
 
             predicateOK = checkPredicate(testCase, predicate);
@@ -282,12 +817,45 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
             if (predicateOK) {
                 if (validCasesGenerated == config.maxStructs) {
                     interrupt();
+                    break;
                 } else {
                     stateSpaceExplorer.reportCurrentAsValid();
                 }
             }
 
+            if (checkpointFile != null
+                    && (totalExplored & CHECKPOINT_POLL_MASK) == 0)
+                checkpointIfDue();
+
         }
+        
+        return false;
+
+    }
+
+    /**
+     * Explores (a part of) the given split, continuing the counts of the 
+     * current search.
+     * 
+     * @return explorer positioned after the last explored candidate, or
+     *         <code>null</code> if the whole split has been explored
+     * @see #search(Method, long)
+     */
+    protected StateSpaceExplorer searchSplit(IFinitization fin, SearchSplit split,
+            Method predicate, long budget) throws CannotInvokePredicateException {
+        
+        StateSpaceExplorer explorer = new StateSpaceExplorer(fin, split);
+        stateSpaceExplorer = explorer;
+        stateSpace = ((Finitization)fin).getStateSpace();
+        if (search(predicate, budget))
+            return null;
+        return explorer;
+        
+    }
+
+    protected void finishTestGeneration() {
+
+        stopDispatcher();
 
         if (dos != null) {
             try {
@@ -297,10 +865,47 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
             }
         }
         
-        notifyTestFinished(totalExplored, validCasesGenerated);
+        if (!config.countOnly)
+            notifyTestFinished(totalExplored, validCasesGenerated);
 
         System.out.println("Total explored:" + totalExplored);
         System.out.println("New found:" + validCasesGenerated);
+        if (config.countOnly && sizeCounts != null)
+            sizeCounts.print(System.out);
+
+    }
+
+    protected void startParallelTestGeneration(Class clazz, Method finitize,
+            String[] finArgs) throws CannotInvokeFinitizationException,
+            CannotInvokePredicateException, CannotFindPredicateException {
+
+        ParallelExplorer explorer = new ParallelExplorer(this, config.parallel,
+                config.maxStructs);
+        explorer.setCountOnly(config.countOnly);
+
+        // every worker gets its own finitization, with objects that report
+        // field accesses to that worker
+        IFinitization fin = null;
+        for (int i = 0; i < explorer.getNumberOfWorkers(); i++) {
+            Finitization.setTester(explorer.getTester(i));
+            try {
+                fin = invokeFinMethod(clazz, finitize, finArgs);
+                explorer.setFinitization(i, fin);
+            } finally {
+                Finitization.setTester(null);
+            }
+        }
+
+        stateSpace = ((Finitization) fin).getStateSpace();
+        Method predicate = getPredicateMethod(fin.getFinClass(), config.predicate);
+
+        explorer.explore(predicate);
+
+        totalExplored = explorer.getTotalExplored();
+        validCasesGenerated = explorer.getValidCasesGenerated();
+        sizeCounts = config.countOnly ? explorer.getSizeCounts() : null;
+
+        finishTestGeneration();
 
     }
 
@@ -315,10 +920,14 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
 
     protected boolean checkPredicate(Object testCase, Method predicate)
             throws CannotInvokePredicateException {
+        if (predicate != invokedPredicate) {
+            predicateInvoker = getPredicateInvoker(predicate);
+            invokedPredicate = predicate;
+        }
         startFieldTrace();
         try {
-            return (Boolean) predicate.invoke(testCase, (Object[]) null);
-        } catch (Exception e) {
+            return predicateInvoker.invoke(testCase);
+        } catch (Throwable e) {
             throw new CannotInvokePredicateException(testCase.getClass(),
                     predicate.getName(), e.getMessage(), e);
         } finally {
@@ -326,16 +935,39 @@ public class TestCradle extends AbstractTestCaseGenerator implements ITester {
         }
     }
 
+    private Method invokedPredicate;
+
+    private PredicateInvoker predicateInvoker;
+
+    private final Map<Method, PredicateInvoker> predicateInvokers = new HashMap<Method, PredicateInvoker>();
+
+    /**
+     * Returns the invoker for the given predicate, generated once for this
+     * test cradle and its class loader.
+     */
+    synchronized PredicateInvoker getPredicateInvoker(Method predicate) {
+        PredicateInvoker ret = predicateInvokers.get(predicate);
+        if (ret == null) {
+            ret = PredicateInvoker.getInvoker(predicate);
+            predicateInvokers.put(predicate, ret);
+        }
+        return ret;
+    }
+
     protected void initStartAndEndCVs(IKoratSearchStrategy ssExplorer) {
+        initStartAndEndCVs(ssExplorer, true);
+    }
+
+    protected void initStartAndEndCVs(IKoratSearchStrategy ssExplorer, boolean setStart) {
         long endCVNo = config.cvEnd;
-        long startCVNo = config.cvStart;
+        long startCVNo = setStart ? config.cvStart : -1;
         if (endCVNo == -1 && startCVNo == -1)
             return;
         
         ICVFinder cvFile = null;        
         try {
             
-            cvFile = cvFactory.createCVFinder(config.cvFile);
+            cvFile = CVFactory.getCVFactory(config.cvFile).createCVFinder(config.cvFile);
             if (startCVNo != -1) {
                 ssExplorer.setStartCandidateVector(cvFile.readCV(startCVNo));
             }
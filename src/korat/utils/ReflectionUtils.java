@@ -5,6 +5,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -15,7 +16,25 @@ import java.util.Map;
  */
 public class ReflectionUtils {
 
-    static Map<Class, Map<String, Field>> cache = new HashMap<Class, Map<String, Field>>();
+    /**
+     * Maximal number of classes whose fields are cached. Every session loads
+     * its own instrumented classes, so the least recently used ones are
+     * evicted instead of keeping classes of finished sessions.
+     */
+    static final int MAX_CACHED_CLASSES = 256;
+
+    /**
+     * Cached fields by class, accessed by concurrent sessions only through
+     * synchronized <code>getCachedField</code> and <code>cacheField</code>.
+     */
+    static Map<Class, Map<String, Field>> cache = new LinkedHashMap<Class, Map<String, Field>>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<Class, Map<String, Field>> eldest) {
+            return size() > MAX_CACHED_CLASSES;
+        }
+    };
 
     public static Field getFieldWithAccess(Object obj, String fieldName) {
         return getFieldWithAccess(obj.getClass(), fieldName);
@@ -37,29 +56,20 @@ public class ReflectionUtils {
      */
     public static Field getField(Class cls, String fieldName) {
 
-        Field f = null;
-
-        Map<String, Field> inner = cache.get(cls);
-        if (inner != null) {
-            f = inner.get(fieldName);
-            if (f != null)
-                return f;
-        } else {
-            inner = new HashMap<String, Field>();
-            cache.put(cls, inner);
-        }
+        Field f = getCachedField(cls, fieldName);
+        if (f != null)
+            return f;
 
         try {
-            while (cls != null) {
+            for (Class c = cls; c != null; c = c.getSuperclass()) {
                 try {
-                    f = cls.getDeclaredField(fieldName);
+                    f = c.getDeclaredField(fieldName);
                     f.setAccessible(true);
                 } catch (NoSuchFieldException e) {
                     f = null;
                 }
                 if (f != null)
                     break;
-                cls = cls.getSuperclass();
             }
 
         } catch (SecurityException e) {
@@ -69,11 +79,25 @@ public class ReflectionUtils {
         if (f == null)
             throw new RuntimeException("NoSuchFieldException");
 
-        inner.put(fieldName, f);
+        cacheField(cls, fieldName, f);
 
         return f;
     }
 
+    private static synchronized Field getCachedField(Class cls, String fieldName) {
+        Map<String, Field> inner = cache.get(cls);
+        return inner == null ? null : inner.get(fieldName);
+    }
+
+    private static synchronized void cacheField(Class cls, String fieldName, Field f) {
+        Map<String, Field> inner = cache.get(cls);
+        if (inner == null) {
+            inner = new HashMap<String, Field>();
+            cache.put(cls, inner);
+        }
+        inner.put(fieldName, f);
+    }
+
     public static Object getFieldValue(Object obj, Field field) {
 
         try {
@@ -1,6 +1,8 @@
 package korat.utils;
 
+import korat.config.ConfigManager;
 import korat.testing.ITestCaseListener;
+import korat.utils.cv.CVSerializer;
 import korat.utils.io.ISerializer;
 import korat.utils.io.SimpleSerializer;
 
@@ -9,7 +11,10 @@ public class SerializationListener implements ITestCaseListener {
     private ISerializer serializer;
 
     public SerializationListener(String testsName) {
-        this.serializer = new SimpleSerializer(testsName);
+        if (ConfigManager.getInstance().serializeCV)
+            this.serializer = new CVSerializer(testsName);
+        else
+            this.serializer = new SimpleSerializer(testsName);
     }
 
     public void notifyNewTestCase(Object testCase) {
@@ -17,7 +22,8 @@ public class SerializationListener implements ITestCaseListener {
     }
 
     public void notifyTestFinished(long numOfExplored, long numOfGenerated) {
-        
+        if (serializer instanceof CVSerializer)
+            ((CVSerializer) serializer).close();
     }
 
 }
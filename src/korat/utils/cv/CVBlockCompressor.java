@@ -0,0 +1,131 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the blocks of candidate vectors in the codec file format,
+ * applied after the vectors of a block are encoded by the codec.
+ *
+ * <ul>
+ * <li><code>none</code> - blocks are stored as encoded</li>
+ * <li><code>deflate</code> - blocks are compressed with
+ * <code>java.util.zip.Deflater</code></li>
+ * </ul>
+ *
+ * Compressors keep no state between blocks, so blocks can be decompressed
+ * by several threads at once.
+ *
+ * @see CVWriterCodec
+ * @author korat.team
+ *
+ */
+public abstract class CVBlockCompressor {
+
+    public static final String NONE = "none";
+
+    public static final String DEFLATE = "deflate";
+
+    public static CVBlockCompressor forName(String name) {
+        if (NONE.equals(name))
+            return new CVBlockCompressor() {
+                @Override
+                public String getName() {
+                    return NONE;
+                }
+
+                @Override
+                public byte[] compress(byte[] raw) {
+                    return raw;
+                }
+
+                @Override
+                public byte[] decompress(byte[] stored, int rawLength) {
+                    return stored;
+                }
+            };
+        if (DEFLATE.equals(name))
+            return new DeflateCompressor();
+        throw new RuntimeException("Unknown candidate vector block compressor \""
+                + name + "\", expected " + NONE + " or " + DEFLATE);
+    }
+
+    public abstract String getName();
+
+    /**
+     * @return compressed block
+     */
+    public abstract byte[] compress(byte[] raw);
+
+    /**
+     * @param stored -
+     *            compressed block
+     * @param rawLength -
+     *            length of the block before compression
+     * @return decompressed block
+     * @throws IOException
+     *             if the block is corrupt
+     */
+    public abstract byte[] decompress(byte[] stored, int rawLength)
+            throws IOException;
+
+    static class DeflateCompressor extends CVBlockCompressor {
+
+        @Override
+        public String getName() {
+            return DEFLATE;
+        }
+
+        @Override
+        public byte[] compress(byte[] raw) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                byte[] buf = new byte[raw.length / 2 + 64];
+                int n = 0;
+                while (!deflater.finished()) {
+                    if (n == buf.length) {
+                        byte[] b = new byte[buf.length * 2];
+                        System.arraycopy(buf, 0, b, 0, n);
+                        buf = b;
+                    }
+                    n += deflater.deflate(buf, n, buf.length - n);
+                }
+                byte[] ret = new byte[n];
+                System.arraycopy(buf, 0, ret, 0, n);
+                return ret;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] stored, int rawLength)
+                throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                byte[] raw = new byte[rawLength];
+                int n = 0;
+                while (n < rawLength) {
+                    int k = inflater.inflate(raw, n, rawLength - n);
+                    if (k == 0 && (inflater.finished() || inflater.needsInput()))
+                        throw new IOException("Corrupt block of candidate vectors");
+                    n += k;
+                }
+                return raw;
+            } catch (DataFormatException e) {
+                IOException ex = new IOException("Corrupt block of candidate vectors");
+                ex.initCause(e);
+                throw ex;
+            } finally {
+                inflater.end();
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,8 @@
 package korat.utils.cv;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 import korat.utils.IIntList;
 
 /**
@@ -17,6 +20,59 @@ public class CVCmp {
         return true;
     }
 
+    /**
+     * Lexicographic comparison of two given candidate vectors of the same
+     * length, in the order of their elements.
+     *
+     * @return 1 if cv1 > cv2, -1 if cv1 < cv2, 0 if cv1 == cv2
+     */
+    public static int compare(int[] cv1, int[] cv2) {
+        for (int i = 0; i < cv1.length; i++) {
+            if (cv1[i] > cv2[i]) // larger
+                return 1;
+            if (cv1[i] < cv2[i]) // smaller
+                return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts the given candidate vectors lexicographically (without changing
+     * the given array).
+     * 
+     * @return indexes of the given vectors in the sorted order
+     */
+    public static Integer[] sortedOrder(final int[][] cvs) {
+        Integer[] order = new Integer[cvs.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                return CVCmp.compare(cvs[i1], cvs[i2]);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * Binary search through lexicographically sorted candidate vectors.
+     * 
+     * @return index of the first of the sorted vectors that is not less than
+     *         the given one
+     */
+    public static int firstNotLess(int[][] sorted, int[] cv) {
+        int first = 0;
+        int last = sorted.length;
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (compare(sorted[middle], cv) < 0)
+                first = middle + 1;
+            else
+                last = middle;
+        }
+        return first;
+    }
+
     /**
      * Lexicographic comparison of two given candidate vectors.
      * 
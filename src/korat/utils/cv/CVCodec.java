@@ -0,0 +1,191 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+
+import korat.utils.io.IBitReader;
+import korat.utils.io.IBitWriter;
+
+/**
+ * Encoding of single candidate vectors in the blocks of the codec file
+ * format (see <code>CVWriterCodec</code>). Every element is written with
+ * its own number of bits, given in the header of the file, so the codec is
+ * determined by its name and the widths of the elements.
+ *
+ * <ul>
+ * <li><code>fixed</code> - all elements have the same number of bits, the
+ * number of bits of the largest field domain (as with
+ * <code>CVWriter</code>)</li>
+ * <li><code>widths</code> - every element has the number of bits of its
+ * own field domain</li>
+ * <li><code>zeros</code> - like <code>widths</code>, but the trailing
+ * zeros of the vector are written as their number</li>
+ * </ul>
+ *
+ * @see CVWriterCodec
+ * @author korat.team
+ *
+ */
+public abstract class CVCodec {
+
+    public static final String FIXED = "fixed";
+
+    public static final String WIDTHS = "widths";
+
+    public static final String ZEROS = "zeros";
+
+    protected final int[] widths;
+
+    protected CVCodec(int[] widths) {
+        this.widths = widths;
+    }
+
+    /**
+     * @param name -
+     *            name of the codec
+     * @param widths -
+     *            number of bits of each element of candidate vectors
+     * @return codec with the given name
+     */
+    public static CVCodec forName(String name, int[] widths) {
+        if (FIXED.equals(name) || WIDTHS.equals(name))
+            return new WidthsCodec(name, widths);
+        if (ZEROS.equals(name))
+            return new TrailingZerosCodec(widths);
+        throw new RuntimeException("Unknown candidate vector codec \"" + name
+                + "\", expected " + FIXED + ", " + WIDTHS + " or " + ZEROS);
+    }
+
+    /**
+     * Computes the number of bits of each element of candidate vectors for
+     * the given codec.
+     *
+     * @param name -
+     *            name of the codec
+     * @param layout -
+     *            layout of candidate vectors
+     * @return number of bits of each element
+     */
+    public static int[] getWidths(String name, CVLayout layout) {
+        int[] widths = layout.getWidths();
+        if (FIXED.equals(name)) {
+            for (int i = 0; i < widths.length; i++)
+                widths[i] = layout.getMaxWidth();
+        }
+        return widths;
+    }
+
+    public abstract String getName();
+
+    /**
+     * Writes the given candidate vector and its predicateOK flag.
+     */
+    public abstract void encode(int[] cv, boolean predicateOK, IBitWriter out)
+            throws IOException;
+
+    /**
+     * Reads candidate vector into the given array.
+     *
+     * @return predicateOK flag of the read vector
+     */
+    public abstract boolean decode(int[] cv, IBitReader in) throws IOException;
+
+    protected void writeElems(int[] cv, int n, IBitWriter out)
+            throws IOException {
+        for (int i = 0; i < n; i++) {
+            if (widths[i] > 0)
+                out.writeBits(cv[i], widths[i]);
+        }
+    }
+
+    protected void readElems(int[] cv, int n, IBitReader in)
+            throws IOException {
+        for (int i = 0; i < n; i++)
+            cv[i] = widths[i] > 0 ? in.readBitsAsInt(widths[i]) : 0;
+    }
+
+    protected static void writePredicateBit(boolean predicateOK,
+            IBitWriter out) throws IOException {
+        out.writeBits(predicateOK ? 1 : 0, 1);
+    }
+
+    protected static boolean readPredicateBit(IBitReader in)
+            throws IOException {
+        return in.readBitsAsInt(1) == 1;
+    }
+
+    /**
+     * Writes all elements with their widths (<code>fixed</code> and
+     * <code>widths</code> codecs).
+     */
+    static class WidthsCodec extends CVCodec {
+
+        private final String name;
+
+        WidthsCodec(String name, int[] widths) {
+            super(widths);
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void encode(int[] cv, boolean predicateOK, IBitWriter out)
+                throws IOException {
+            writeElems(cv, cv.length, out);
+            writePredicateBit(predicateOK, out);
+        }
+
+        @Override
+        public boolean decode(int[] cv, IBitReader in) throws IOException {
+            readElems(cv, cv.length, in);
+            return readPredicateBit(in);
+        }
+
+    }
+
+    /**
+     * Writes the number of trailing zeros, followed by the elements before
+     * them.
+     */
+    static class TrailingZerosCodec extends CVCodec {
+
+        private final int numBitsPerCount;
+
+        TrailingZerosCodec(int[] widths) {
+            super(widths);
+            numBitsPerCount = CVLayout.bitsFor(widths.length);
+        }
+
+        @Override
+        public String getName() {
+            return ZEROS;
+        }
+
+        @Override
+        public void encode(int[] cv, boolean predicateOK, IBitWriter out)
+                throws IOException {
+            int n = cv.length;
+            while (n > 0 && cv[n - 1] == 0)
+                n--;
+            if (numBitsPerCount > 0)
+                out.writeBits(cv.length - n, numBitsPerCount);
+            writeElems(cv, n, out);
+            writePredicateBit(predicateOK, out);
+        }
+
+        @Override
+        public boolean decode(int[] cv, IBitReader in) throws IOException {
+            int zeros = numBitsPerCount > 0 ? in.readBitsAsInt(numBitsPerCount) : 0;
+            int n = cv.length - zeros;
+            readElems(cv, n, in);
+            for (int i = n; i < cv.length; i++)
+                cv[i] = 0;
+            return readPredicateBit(in);
+        }
+
+    }
+
+}
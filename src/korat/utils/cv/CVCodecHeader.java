@@ -0,0 +1,151 @@
+package korat.utils.cv;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import korat.utils.io.AsyncBitFileWriter;
+
+/**
+ * Header of the codec file format, see <code>CVWriterCodec</code> for the
+ * layout. Also reads the blocks that follow it.
+ *
+ * @author korat.team
+ *
+ */
+class CVCodecHeader {
+
+    static final int MAGIC = 0x4B435643; // "KCVC"
+
+    static final int VERSION = 1;
+
+    /**
+     * position of the number of candidate vectors in the file, in bytes
+     */
+    static final int NUM_CVS_POS = 8;
+
+    long numCVs;
+
+    CVCodec codec;
+
+    CVBlockCompressor compressor;
+
+    int[] widths;
+
+    int blockSize;
+
+    /**
+     * size of the header in bytes
+     */
+    long size;
+
+    CVCodecHeader(CVCodec codec, CVBlockCompressor compressor, int[] widths,
+            int blockSize) {
+        this.codec = codec;
+        this.compressor = compressor;
+        this.widths = widths;
+        this.blockSize = blockSize;
+    }
+
+    private CVCodecHeader() {
+    }
+
+    int getNumElemsPerCV() {
+        return widths.length;
+    }
+
+    long getNumBlocks() {
+        return (numCVs + blockSize - 1) / blockSize;
+    }
+
+    int getNumCVsInBlock(long block) {
+        return (int) Math.min(blockSize, numCVs - block * blockSize);
+    }
+
+    void write(AsyncBitFileWriter out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(-1); // placeholder for number of candidate vectors
+        writeName(codec.getName(), out);
+        writeName(compressor.getName(), out);
+        out.writeInt(widths.length);
+        for (int w : widths)
+            out.writeBits(w, 8);
+        out.writeInt(blockSize);
+    }
+
+    private static void writeName(String name, AsyncBitFileWriter out)
+            throws IOException {
+        byte[] b = name.getBytes("US-ASCII");
+        out.writeInt(b.length);
+        out.writeBytes(b, 0, b.length);
+    }
+
+    static CVCodecHeader read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a candidate vector file of the codec format");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported version " + version
+                    + " of the candidate vector file");
+        CVCodecHeader h = new CVCodecHeader();
+        h.numCVs = in.readLong();
+        String codecName = readName(in);
+        String compressorName = readName(in);
+        h.widths = new int[in.readInt()];
+        for (int i = 0; i < h.widths.length; i++)
+            h.widths[i] = in.readUnsignedByte();
+        h.blockSize = in.readInt();
+        h.codec = CVCodec.forName(codecName, h.widths);
+        h.compressor = CVBlockCompressor.forName(compressorName);
+        h.size = 4 + 4 + 8 + 4 + codecName.length() + 4
+                + compressorName.length() + 4 + h.widths.length + 4;
+        return h;
+    }
+
+    private static String readName(DataInput in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, "US-ASCII");
+    }
+
+    /**
+     * Reads the block at the current position of the input.
+     *
+     * @return encoded candidate vectors of the block
+     */
+    byte[] readBlock(DataInput in) throws IOException {
+        int rawLength = in.readInt();
+        byte[] stored = new byte[in.readInt()];
+        in.readFully(stored);
+        return compressor.decompress(stored, rawLength);
+    }
+
+    /**
+     * Skips the block at the current position of the input, without reading
+     * it.
+     */
+    void skipBlock(DataInput in) throws IOException {
+        in.readInt();
+        int storedLength = in.readInt();
+        if (in.skipBytes(storedLength) != storedLength)
+            throw new EOFException();
+    }
+
+    /**
+     * @return whether the given file is written in the codec format
+     */
+    static boolean isCodecFile(String fileName) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+        try {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -1,125 +1,187 @@
 package korat.utils.cv;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import korat.config.ConfigManager;
 
 /**
  * Utility class. Compares outputs of two files with candidate vectors.
- * Checks whether the vectors in the same positions are equal.
- * 
- * 
+ * Checks whether the vectors in the same positions are equal. If one file
+ * has <code>k</code> times as many vectors as the other, every
+ * <code>k</code>-th vector of it is compared.
+ * <p/>
+ *
+ * Files are compared in segments (see <code>CVScanner</code>), on several
+ * threads.
+ *
  * @author Sasa Misailovic <sasa.misailovic@gmail.com>
  *
  */
 public class CVComparer {
 
-    
     /**
-     * 
-     * 
-     * @param args
+     * number of different vectors that are printed
      */
-    public static void main(String[] args) {
-        
+    private static final int MAX_PRINTED = 100;
 
-        String fileA = args[0];
-        String fileB = args[1];
-        
-        ICVReader readerA = null, readerB = null;
-        try {
-             readerA = CVFactory.getCVFactory().createCVReader(fileA);
-        } catch (IOException e) {
-            System.out.println("Cannot read file " + fileA + ".");
-            System.exit(1);
-        }
-        try {
-            readerB = CVFactory.getCVFactory().createCVReader(fileB);
-        } catch (IOException e) {
-            System.out.println("Cannot read file " + fileB + ".");
-            System.exit(1);
-        }
-        
-        long cvsA = readerA.getNumCVs();
-        long cvsB = readerB.getNumCVs();
-        long factor = 1;
-        
+    /**
+     * file with more vectors
+     */
+    private String fileA;
+
+    private String fileB;
+
+    private CVScanner scannerA;
+
+    private CVScanner scannerB;
+
+    private long factor;
+
+    private long numDifferent = 0;
+
+    /**
+     * first different vectors, by their index in file B
+     */
+    private TreeMap<Long, int[][]> differences = new TreeMap<Long, int[][]>();
+
+    public CVComparer(String fileA, String fileB) throws IOException {
+        CVScanner a = new CVScanner(fileA);
+        CVScanner b = new CVScanner(fileB);
         /*
-         * readerA always has more candidates to read
+         * scannerA always has more candidates to read
          */
-        if (cvsB > cvsA){
-            long t = cvsA;
-            cvsA = cvsB;
-            cvsB = t;
-            
+        if (b.getNumCVs() > a.getNumCVs()) {
+            CVScanner t = a;
+            a = b;
+            b = t;
             String tempS = fileA;
             fileA = fileB;
             fileB = tempS;
-            
-            ICVReader tempR = readerA;
-            readerA = readerB;
-            readerB = tempR;
         }
-        
-        factor = cvsA / cvsB;
-        
-        System.out.println("Files:  A=" + fileA + " & B=" + fileB + "  (" + factor + ")");
-               
-        try {
+        this.fileA = fileA;
+        this.fileB = fileB;
+        scannerA = a;
+        scannerB = b;
+        factor = b.getNumCVs() == 0 ? 1 : a.getNumCVs() / b.getNumCVs();
+    }
 
-            for (long i = 0; i < cvsB && i < 100; i++) {
-                 
-                int [] cB = readerB.readCV();
-                int [] cA = null;
-                
-                for (int j = 0; j < factor; j++) {
-                    cA = readerA.readCV();
-                }
-                
-                assert (cB.length == cA.length);
-                
-                boolean [] different = new boolean[cA.length];
-                boolean equal = true;
-                for (int j = 0; j < cA.length; j++)
-                    if (cB[j] != cA[j]) {
-                        equal = false;
-                        different[j] = true;
+    /**
+     * Compares the files with the given number of threads.
+     *
+     * @return number of different vectors
+     */
+    public long compareAll(int numThreads) throws IOException {
+        scannerB.scanSegments(new CVScanner.ISegmentVisitor() {
+            public void visitSegment(long fromIdx, long toIdx)
+                    throws IOException {
+                ICVReader readerA = scannerA.createReader(fromIdx * factor);
+                ICVReader readerB = scannerB.createReader(fromIdx);
+                try {
+                    for (long i = fromIdx; i < toIdx; i++) {
+                        int[] cB = readerB.readCV();
+                        int[] cA = null;
+                        for (long j = 0; j < factor; j++) {
+                            cA = readerA.readCV();
+                        }
+                        if (cA.length != cB.length || !CVCmp.equal(cA, cB))
+                            addDifference(i, cA, cB);
                     }
+                } finally {
+                    readerA.close();
+                    readerB.close();
+                }
+            }
+        }, numThreads);
+        return numDifferent;
+    }
+
+    private synchronized void addDifference(long idx, int[] cA, int[] cB) {
+        numDifferent++;
+        differences.put(idx, new int[][] { cA, cB });
+        if (differences.size() > MAX_PRINTED)
+            differences.remove(differences.lastKey());
+    }
 
-                if (!equal) {
-                    System.out.print("\nVector --> [" + i + "]");
-                    
-                    int res = compare(cA, cB);
-                    if (res == 0)
-                        System.out.println(" A = B");
-                    else if (res < 0)
-                        System.out.println(" A < B");
-                    else
-                        System.out.println(" A > B");
-                    
-                    println(cA);
-                    println(cB);
-                    println(different);
-                } else
-                    System.out.print(".");
-  
+    /**
+     *
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+
+        String[] files = new String[2];
+        int numFiles = 0;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-cvDelta".equals(arg)) {
+                ConfigManager.getInstance().cvDelta = true;
+            } else if ("-threads".equals(arg)) {
+                numThreads = Integer.parseInt(args[++i]);
+            } else if (numFiles < files.length) {
+                files[numFiles++] = arg;
             }
-            
+        }
+        if (numFiles < files.length) {
+            System.out.println("Arguments: <fileA> <fileB> [-cvDelta] [-threads <num>]");
+            System.exit(1);
+        }
+
+        CVComparer comparer = null;
+        try {
+            comparer = new CVComparer(files[0], files[1]);
+        } catch (IOException e) {
+            System.out.println("Cannot read file " + files[0] + " or " + files[1] + ".");
+            System.exit(1);
+        }
+
+        System.out.println("Files:  A=" + comparer.fileA + " & B=" + comparer.fileB + "  (" + comparer.factor + ")");
+
+        long numDifferent = 0;
+        try {
+            numDifferent = comparer.compareAll(numThreads);
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
 
-        
+        for (Map.Entry<Long, int[][]> e : comparer.differences.entrySet()) {
+            int[] cA = e.getValue()[0];
+            int[] cB = e.getValue()[1];
+            System.out.print("\nVector --> [" + e.getKey() + "]");
+
+            int res = compare(cA, cB);
+            if (res == 0)
+                System.out.println(" A = B");
+            else if (res < 0)
+                System.out.println(" A < B");
+            else
+                System.out.println(" A > B");
+
+            boolean[] different = new boolean[Math.min(cA.length, cB.length)];
+            for (int j = 0; j < different.length; j++)
+                different[j] = cA[j] != cB[j];
+            println(cA);
+            println(cB);
+            println(different);
+        }
+
+        System.out.println("\nCompared vectors: " + comparer.scannerB.getNumCVs());
+        System.out.println("Different vectors: " + numDifferent);
+
     }
 
     private static int compare(int[] ca, int[] cb) {
 
-        for (int i = 0; i < ca.length; i++)
+        for (int i = 0; i < ca.length && i < cb.length; i++)
             if (ca[i] < cb[i])
                 return -1;
             else if (ca[i] > cb[i])
                 return 1;
-        return 0;
-        
+        return ca.length - cb.length;
+
     }
 
     private static void println(int[] array) {
@@ -127,14 +189,14 @@ public class CVComparer {
             System.out.print(array[i] + " ");
         System.out.println();
     }
-    
+
     private static void println(boolean[] array) {
         for (int i = 0 ; i < array.length; i++)
             if (array[i])
                 System.out.print("* ");
-            else 
+            else
                 System.out.print("  ");
         System.out.println();
     }
-    
+
 }
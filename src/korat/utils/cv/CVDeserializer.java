@@ -0,0 +1,166 @@
+package korat.utils.cv;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import korat.finitization.impl.CandidateBuilder;
+import korat.finitization.impl.StateSpace;
+import korat.utils.IIntList;
+import korat.utils.IntListAI;
+import korat.utils.io.BitInputStream;
+import korat.utils.io.IDeserializer;
+
+/**
+ * Reads the test cases serialized by <code>CVSerializer</code>. Candidate
+ * vectors are decoded one at a time, and the test case is built from the
+ * candidate vector only when it is requested, by setting the fields of the
+ * objects of the given state space that have changed since the last test
+ * case built (as during the search). The returned test case is therefore
+ * overwritten by the next one.
+ *
+ * <p/> The state space must be created by the same finitization (with the
+ * same parameters) as the state space of the search that serialized the test
+ * cases (see <code>KoratSession.readTestCases</code>).
+ *
+ * @see CVSerializer
+ * @author korat.team
+ *
+ */
+public class CVDeserializer implements IDeserializer {
+
+    private final BitInputStream bis;
+
+    private final long numCVs;
+
+    private final int numBitsPerElem;
+
+    private final int numBitsPerCVIndex;
+
+    private final int[] cv;
+
+    private final IIntList changedFields;
+
+    private final CandidateBuilder candidateBuilder;
+
+    private long numRead;
+
+    public CVDeserializer(String fileName, StateSpace stateSpace)
+            throws IOException {
+
+        bis = new BitInputStream(new BufferedInputStream(new FileInputStream(
+                fileName), 8192));
+        try {
+            if (bis.readInt() != CVSerializer.MAGIC)
+                throw new IOException(fileName
+                        + " is not a file of serialized candidate vectors");
+            if (bis.readLong() != stateSpace.getFingerprint())
+                throw new IOException(fileName
+                        + " was written for another finitization");
+            numCVs = bis.readLong();
+            if (numCVs < 0)
+                throw new IOException(fileName + " was not closed");
+            int numElems = bis.readInt();
+            if (numElems != stateSpace.getTotalNumberOfFields())
+                throw new IOException(fileName
+                        + " was written for another finitization");
+            numBitsPerElem = bis.readInt();
+            numBitsPerCVIndex = CVSerializer.getNumBits(numElems - 1);
+        } catch (IOException e) {
+            bis.close();
+            throw e;
+        }
+
+        cv = new int[stateSpace.getTotalNumberOfFields()];
+        // the first test case sets all fields
+        changedFields = new IntListAI(cv.length);
+        for (int i = 0; i < cv.length; i++)
+            changedFields.add(i);
+        candidateBuilder = new CandidateBuilder(stateSpace, changedFields);
+
+    }
+
+    /**
+     * @return number of test cases in the file
+     */
+    public long getNumTestCases() {
+        return numCVs;
+    }
+
+    /**
+     * Decodes the candidate vector of the next test case, without building
+     * the test case.
+     *
+     * @return candidate vector (which is overwritten by the next one), or
+     *         <code>null</code> if all test cases have been read
+     */
+    public int[] readCV() throws IOException {
+        if (numRead == numCVs)
+            return null;
+
+        if (bis.readBitsAsInt(1) == CVWriterDelta.ONE_BIT_CHANGED) {
+            int code = bis.readBitsAsInt(CVWriterDelta.CODE_LEN);
+            int k = bis.readBitsAsInt(numBitsPerCVIndex);
+            int value;
+            if (code == CVWriterDelta.FOLLOWING_SAME_CODE
+                    || code == CVWriterDelta.FOLLOWING_ZEROS_CODE)
+                value = bis.readBitsAsInt(numBitsPerElem);
+            else
+                value = cv[k] + 1;
+            set(k, value);
+            if (code == CVWriterDelta.FOLLOWING_ZEROS_CODE
+                    || code == CVWriterDelta.FOLLOWING_ZEROS_INC_CODE) {
+                for (int j = k + 1; j < cv.length; j++)
+                    set(j, 0);
+            }
+        } else {
+            int n = bis.readBitsAsInt(numBitsPerCVIndex) + 1;
+            for (int i = 0; i < n; i++) {
+                int j = bis.readBitsAsInt(numBitsPerCVIndex);
+                set(j, bis.readBitsAsInt(numBitsPerElem));
+            }
+        }
+
+        numRead++;
+        return cv;
+    }
+
+    private void set(int index, int value) {
+        if (cv[index] != value) {
+            cv[index] = value;
+            changedFields.add(index);
+        }
+    }
+
+    /**
+     * Reads the next test case, building it from its candidate vector.
+     *
+     * @return root object of the test case (whose objects are reused for the
+     *         next test case), or <code>null</code> if all test cases have
+     *         been read
+     */
+    public Object readObject() {
+        try {
+            if (readCV() == null)
+                return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return buildTestCase();
+    }
+
+    /**
+     * Builds the test case of the candidate vector read last, setting only
+     * the fields that have changed since the last test case built.
+     */
+    public Object buildTestCase() {
+        Object ret = candidateBuilder.buildCandidate(cv);
+        changedFields.clear();
+        return ret;
+    }
+
+    public void close() throws IOException {
+        bis.close();
+    }
+
+}
@@ -20,13 +20,28 @@ public class CVFactory implements ICVFactory {
      * @return currently configured factory
      */
     public static ICVFactory getCVFactory() {
-        if (ConfigManager.getInstance().cvDelta) {
+        if (ConfigManager.getInstance().cvCodec != null) {
+            return CVFactoryCodec.getInstance();
+        } else if (ConfigManager.getInstance().cvDelta) {
             return CVFactoryDelta.getInstance();
         } else {
             return CVFactory.getInstance();
         }
     }
     
+    /**
+     * Use this method to get the factory for reading the given file. Files
+     * of the codec format are recognized by their header, other files are
+     * read with the currently configured factory.
+     * 
+     * @return factory for reading the given file
+     */
+    public static ICVFactory getCVFactory(String fileName) throws IOException {
+        if (CVCodecHeader.isCodecFile(fileName))
+            return CVFactoryCodec.getInstance();
+        return getCVFactory();
+    }
+    
     public static CVFactory getInstance() {
         return factory;
     }
@@ -43,9 +58,19 @@ public class CVFactory implements ICVFactory {
         return new CVReader(fileName);
     }
 
+    public ICVReader createCVReader(String fileName, long fromIdx)
+            throws IOException {
+        return new CVReader(fileName, fromIdx);
+    }
+
     public ICVWriter createCVWriter(String fileName, int numElemsPerCV,
             int maxElem) throws IOException {
         return new CVWriter(fileName, numElemsPerCV, maxElem);
     }
 
+    public ICVWriter createCVWriter(String fileName, CVLayout layout)
+            throws IOException {
+        return new CVWriter(fileName, layout);
+    }
+
 }
@@ -0,0 +1,59 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+
+import korat.config.ConfigManager;
+
+/**
+ * Factory for the codec file format. Files are written with the codec set
+ * by the <code>cvCodec</code> option, which is the name of the codec
+ * optionally followed by <code>+</code> and the name of the block
+ * compressor (e.g. <code>zeros+deflate</code>). Files are read with the
+ * codec named in their header.
+ *
+ * @see CVWriterCodec
+ * @author korat.team
+ *
+ */
+public class CVFactoryCodec implements ICVFactory {
+
+    private static CVFactoryCodec instance = new CVFactoryCodec();
+
+    public static CVFactoryCodec getInstance() {
+        return instance;
+    }
+
+    public ICVFinder createCVFinder(String fileName) throws IOException {
+        return new CVFinderCodec(fileName);
+    }
+
+    public ICVReader createCVReader(String fileName) throws IOException {
+        return new CVReaderCodec(fileName);
+    }
+
+    public ICVReader createCVReader(String fileName, long fromIdx)
+            throws IOException {
+        return new CVReaderCodec(fileName, fromIdx);
+    }
+
+    public ICVWriter createCVWriter(String fileName, int numElemsPerCV,
+            int maxElem) throws IOException {
+        return createCVWriter(fileName, CVLayout.forMaxElem(numElemsPerCV,
+                maxElem));
+    }
+
+    public ICVWriter createCVWriter(String fileName, CVLayout layout)
+            throws IOException {
+        String codec = ConfigManager.getInstance().cvCodec;
+        if (codec == null)
+            codec = CVCodec.ZEROS;
+        String compressor = CVBlockCompressor.NONE;
+        int i = codec.indexOf('+');
+        if (i > -1) {
+            compressor = codec.substring(i + 1);
+            codec = codec.substring(0, i);
+        }
+        return new CVWriterCodec(fileName, codec, compressor, layout);
+    }
+
+}
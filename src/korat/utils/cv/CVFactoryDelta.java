@@ -23,9 +23,19 @@ public class CVFactoryDelta implements ICVFactory {
         return new CVReaderDelta(fileName);
     }
 
+    public ICVReader createCVReader(String fileName, long fromIdx)
+            throws IOException {
+        return new CVReaderDelta(fileName, fromIdx);
+    }
+
     public ICVWriter createCVWriter(String fileName, int numElemsPerCV,
             int maxElem) throws IOException {
         return new CVWriterDelta(fileName, numElemsPerCV, maxElem);
     }
 
+    public ICVWriter createCVWriter(String fileName, CVLayout layout)
+            throws IOException {
+        return new CVWriterDelta(fileName, layout);
+    }
+
 }
@@ -2,7 +2,7 @@ package korat.utils.cv;
 
 import java.io.IOException;
 
-import korat.utils.io.BitRandomAccessFile;
+import korat.utils.io.MappedBitRandomAccessFile;
 
 /**
  * 
@@ -13,9 +13,7 @@ public class CVFinder implements ICVFinder {
     
     long numCVs;
     
-    private int numElemsPerCV;
-    
-    private int numBitsPerElem;
+    private CVLayout layout;
     
     private long bodyStart;
     
@@ -25,20 +23,19 @@ public class CVFinder implements ICVFinder {
 
     String cvFileName;
     
-    private BitRandomAccessFile cvFile;
+    private MappedBitRandomAccessFile cvFile;
     
     protected CVFinder(String cvFileName) throws IOException {
         this.cvFileName = cvFileName;
-        cvFile = new BitRandomAccessFile(cvFileName);
+        cvFile = new MappedBitRandomAccessFile(cvFileName);
         readHeader();
         bodyStart = cvFile.getFilePointer();
-        cvSizeInBits = numElemsPerCV * numBitsPerElem;
+        cvSizeInBits = layout.getCVSizeInBits();
     }
 
     private void readHeader() throws IOException {
         numCVs = cvFile.readLong();
-        numElemsPerCV = cvFile.readInt();
-        numBitsPerElem = cvFile.readInt();
+        layout = CVLayout.read(cvFile);
     }
     
     public long getNumCVs() {
@@ -46,7 +43,7 @@ public class CVFinder implements ICVFinder {
     }
 
     public int getNumElemsPerCV() {
-        return numElemsPerCV;
+        return layout.getNumElemsPerCV();
     }
     
     public boolean isPredicateOK() {
@@ -54,7 +51,7 @@ public class CVFinder implements ICVFinder {
     }
 
     public int[] readCV(long idx) throws IOException {
-        int[] cv = new int[numElemsPerCV];
+        int[] cv = new int[layout.getNumElemsPerCV()];
         
         // calc position in file
         long pos = bodyStart;
@@ -64,8 +61,7 @@ public class CVFinder implements ICVFinder {
         cvFile.seek(pos);
         
         // now it is positioned just before the candidate vector
-        for (int i = 0; i < cv.length; i++)
-            cv[i] = cvFile.readBitsAsInt(numBitsPerElem);
+        layout.readElems(cv, cvFile);
         
         int b = cvFile.readBitsAsInt(1);
         if (b == 0) {
@@ -115,8 +111,8 @@ public class CVFinder implements ICVFinder {
             
             CVFinder f = new CVFinder("candidates.dat");
             System.out.println("Number of candidate vectors: " + f.numCVs);
-            System.out.println("Number elements per candidate vector: " + f.numElemsPerCV);
-            System.out.println("Number of bits per elem: " + f.numBitsPerElem);
+            System.out.println("Number elements per candidate vector: " + f.getNumElemsPerCV());
+            System.out.println("Number of bits per candidate vector: " + f.cvSizeInBits);
             int[] cv = f.readCV(200900);
             System.out.println(f.find(cv));
             cv = f.readCV(160123);
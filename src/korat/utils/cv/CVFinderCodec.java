@@ -0,0 +1,129 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import korat.utils.io.ByteArrayBitReader;
+
+/**
+ * Finder for candidate vector files written according to CVWriterCodec's
+ * format. Positions of the blocks are read when the finder is created, and
+ * the block read last is kept decoded, so reading vectors close to each
+ * other decodes their block only once.
+ *
+ * @see CVWriterCodec
+ * @author korat.team
+ *
+ */
+public class CVFinderCodec implements ICVFinder {
+
+    private RandomAccessFile file;
+
+    private CVCodecHeader header;
+
+    private long[] blockPositions;
+
+    private long decodedBlock = -1;
+
+    private int[][] decodedCVs;
+
+    private boolean[] decodedOKs;
+
+    private boolean predicateOK;
+
+    protected CVFinderCodec(String fileName) throws IOException {
+        file = new RandomAccessFile(fileName, "r");
+        header = CVCodecHeader.read(file);
+        blockPositions = new long[(int) header.getNumBlocks()];
+        long pos = header.size;
+        for (int i = 0; i < blockPositions.length; i++) {
+            blockPositions[i] = pos;
+            file.seek(pos + 4);
+            pos += 8 + file.readInt();
+        }
+        decodedCVs = new int[header.blockSize][header.getNumElemsPerCV()];
+        decodedOKs = new boolean[header.blockSize];
+    }
+
+    public long getNumCVs() {
+        return header.numCVs;
+    }
+
+    public int getNumElemsPerCV() {
+        return header.getNumElemsPerCV();
+    }
+
+    public boolean isPredicateOK() {
+        return predicateOK;
+    }
+
+    public int[] readCV(long idx) throws IOException {
+        if (idx < 0 || idx >= header.numCVs)
+            throw new IndexOutOfBoundsException("No candidate vector " + idx
+                    + " in the file of " + header.numCVs + " vectors");
+        decodeBlock(idx / header.blockSize);
+        int i = (int) (idx % header.blockSize);
+        predicateOK = decodedOKs[i];
+        return decodedCVs[i].clone();
+    }
+
+    private void decodeBlock(long block) throws IOException {
+        if (block == decodedBlock)
+            return;
+        decodedBlock = -1;
+        file.seek(blockPositions[(int) block]);
+        ByteArrayBitReader in = new ByteArrayBitReader(header.readBlock(file));
+        int n = header.getNumCVsInBlock(block);
+        for (int i = 0; i < n; i++)
+            decodedOKs[i] = header.codec.decode(decodedCVs[i], in);
+        decodedBlock = block;
+    }
+
+    /**
+     * sequential search
+     */
+    public long find(int[] cv) throws IOException {
+        int[][] cvs = new int[1][];
+        cvs[0] = cv;
+        return find(cvs)[0];
+    }
+
+    /**
+     * Sequential search for all given vectors at once, block by block (see
+     * <code>CVFinderDelta.find(int[][])</code>).
+     */
+    public long[] find(int[][] cvs) throws IOException {
+        long[] result = new long[cvs.length];
+        Arrays.fill(result, -1);
+
+        Integer[] order = CVCmp.sortedOrder(cvs);
+        int[][] sorted = new int[cvs.length][];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = cvs[order[i]];
+
+        int numToFind = cvs.length;
+        long numBlocks = header.getNumBlocks();
+        for (long b = 0; b < numBlocks && numToFind > 0; b++) {
+            decodeBlock(b);
+            int n = header.getNumCVsInBlock(b);
+            for (int i = 0; i < n; i++) {
+                int[] cv = decodedCVs[i];
+                for (int k = CVCmp.firstNotLess(sorted, cv); k < sorted.length
+                        && CVCmp.equal(sorted[k], cv); k++) {
+                    if (result[order[k]] == -1) {
+                        result[order[k]] = b * header.blockSize + i;
+                        numToFind--;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public void close() throws IOException {
+        if (file != null)
+            file.close();
+    }
+
+}
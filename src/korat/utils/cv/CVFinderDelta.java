@@ -1,10 +1,10 @@
 package korat.utils.cv;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import korat.utils.IIntList;
-import korat.utils.Pair;
-import korat.utils.io.BitRandomAccessFile;
+import korat.utils.io.MappedBitRandomAccessFile;
 
 /**
  * 
@@ -17,7 +17,7 @@ public class CVFinderDelta implements ICVFinder {
 
     private int numElemsPerCV;
 
-    private int numBitsPerElem;
+    private CVLayout layout;
 
     private int fullFormatRatio;
     
@@ -31,9 +31,9 @@ public class CVFinderDelta implements ICVFinder {
 
     private String cvDeltaFileName;
 
-    private BitRandomAccessFile cvFile;
+    private MappedBitRandomAccessFile cvFile;
 
-    private BitRandomAccessFile cvDeltaFile;
+    private MappedBitRandomAccessFile cvDeltaFile;
 
     private int dataSizeInBits;
 
@@ -42,11 +42,11 @@ public class CVFinderDelta implements ICVFinder {
     protected CVFinderDelta(String cvFileName) throws IOException {
         this.cvFileName = cvFileName;
         cvDeltaFileName = CVWriterDelta.getDeltaFileName(cvFileName);
-        cvFile = new BitRandomAccessFile(cvFileName);
-        cvDeltaFile = new BitRandomAccessFile(cvDeltaFileName);
+        cvFile = new MappedBitRandomAccessFile(cvFileName);
+        cvDeltaFile = new MappedBitRandomAccessFile(cvDeltaFileName);
         readHeader();
         bodyStart = cvFile.getFilePointer();
-        dataSizeInBits = (numElemsPerCV * numBitsPerElem) + 64 + 1;
+        dataSizeInBits = layout.getCVSizeInBits() + 64 + 1;
         numBitsPerCVIndex = (int) Math.ceil(Math.log(numElemsPerCV)
                 / Math.log(2));
         numFullFormatVectors = (int)((numCVs + fullFormatRatio - 1)/ fullFormatRatio);
@@ -55,8 +55,8 @@ public class CVFinderDelta implements ICVFinder {
     private void readHeader() throws IOException {
         numCVs = cvFile.readLong();
         fullFormatRatio = cvFile.readInt();
-        numElemsPerCV = cvFile.readInt();
-        numBitsPerElem = cvFile.readInt();
+        layout = CVLayout.read(cvFile);
+        numElemsPerCV = layout.getNumElemsPerCV();
     }
 
     public long getNumCVs() {
@@ -84,7 +84,7 @@ public class CVFinderDelta implements ICVFinder {
         int[] cv = new int[lastCV.length];
         for (int i = 0; i < noInDelta; i++) {
             predicateOK = CVReaderDelta.readDelta(cv, lastCV, cvDeltaFile,
-                    numBitsPerCVIndex, numBitsPerElem);
+                    numBitsPerCVIndex, layout);
             System.arraycopy(cv, 0, lastCV, 0, cv.length);
         }
 
@@ -99,8 +99,7 @@ public class CVFinderDelta implements ICVFinder {
         pos += bitsOff;
         cvFile.seek(pos);
 
-        for (int i = 0; i < cv.length; i++)
-            cv[i] = cvFile.readBitsAsInt(numBitsPerElem);
+        layout.readElems(cv, cvFile);
 
         long deltaOffset = cvFile.readLong();
 
@@ -124,26 +123,41 @@ public class CVFinderDelta implements ICVFinder {
     }
 
     /**
-     * sequential search
+     * Sequential search for all given vectors at once. Vectors to search for
+     * are sorted, and every vector decoded from the file is looked up among
+     * them with binary search, so the file is read only once, until all
+     * vectors are found.
      */
     public long[] find(int[][] cvs) throws IOException {
         long[] result = new long[cvs.length];
-        for (int i = 0; i < result.length; i++) {
-            result[i] = -1;
-        }
-        CVReaderDelta reader = new CVReaderDelta(cvFileName);
-        int cnt = 0;
-        for (int i = 0; i < numCVs; i++) {
-            int[] cv2 = reader.readCV();
-            for (int j = 0; j < cvs.length; j++) {
-                int[] cv = cvs[j];
-                if (CVCmp.equal(cv, cv2)) {
-                    result[j] = i;
-                    cnt++;
-                    if (cnt == cvs.length)
-                        break;
+        Arrays.fill(result, -1);
+
+        Integer[] order = CVCmp.sortedOrder(cvs);
+        int[][] sorted = new int[cvs.length][];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = cvs[order[i]];
+
+        int numToFind = cvs.length;
+        int[] cv = new int[numElemsPerCV];
+        int[] lastCV = new int[numElemsPerCV];
+        cvFile.seek(bodyStart);
+        cvDeltaFile.seek(0);
+        for (long i = 0; i < numCVs && numToFind > 0; i++) {
+            if (i % fullFormatRatio == 0)
+                CVReaderDelta.readFullFormatVector(cv, cvFile, layout);
+            else
+                CVReaderDelta.readDelta(cv, lastCV, cvDeltaFile,
+                        numBitsPerCVIndex, layout);
+            for (int k = CVCmp.firstNotLess(sorted, cv); k < sorted.length
+                    && CVCmp.equal(sorted[k], cv); k++) {
+                if (result[order[k]] == -1) {
+                    result[order[k]] = i;
+                    numToFind--;
                 }
             }
+            int[] tmp = lastCV;
+            lastCV = cv;
+            cv = tmp;
         }
         return result;
     }
@@ -164,31 +178,28 @@ public class CVFinderDelta implements ICVFinder {
         }
     }
     
-    private int[][] buffer = null;
-
-    private long[] offsets = null;
-
-    private void initBuffer() throws IOException {
-        buffer = new int[numFullFormatVectors][];
-        offsets = new long[numFullFormatVectors];
-        cvFile.seek(bodyStart);
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = new int[numElemsPerCV];
-            Pair<Long, Boolean> pair = CVReaderDelta.readFullFormatVector(
-                    buffer[i], cvFile, numBitsPerElem);
-            offsets[i] = pair.getData1();
-        }
+    /**
+     * Reads the full-format vector with the given index (in the file of
+     * full-format vectors), without changing the predicate flag of the last
+     * read vector.
+     * 
+     * @return offset of the following deltas in the delta file
+     */
+    private long readFullFormatVector(int fullFormatVectIdx, int[] cv)
+            throws IOException {
+        cvFile.seek(bodyStart + (long) dataSizeInBits * fullFormatVectIdx);
+        return CVReaderDelta.readFullFormatVector(cv, cvFile, layout)
+                .getData1();
     }
 
+    /**
+     * Binary search through the full-format vectors, followed by the
+     * sequential search through the deltas that follow the closest smaller
+     * full-format vector. Full-format vectors have fixed size, so they are
+     * searched in the (memory-mapped) file itself, which serves as a sparse
+     * index of the delta file.
+     */
     public FinderResult find(int[] cv, IIntList fieldAccessList) throws IOException {
-        if (buffer == null) {
-            try {
-                initBuffer();
-            } catch (IOException e) {
-                throw new RuntimeException(
-                        "CVFinderDelta: Cannot init buffer for binary searc", e);
-            }
-        }
         //run bin search through full-format vectors
         binSearch(cv, fieldAccessList);
         if (binSearchFound) {
@@ -202,9 +213,10 @@ public class CVFinderDelta implements ICVFinder {
         }
         
         //not found during binSearch, continue with sequential search through deltas
-        long offset = offsets[binSearchIdx];        
+        int[] lastCV = new int[numElemsPerCV];
+        long offset = readFullFormatVector(binSearchIdx, lastCV);
         cvDeltaFile.seek(offset);
-        return seqSearch(cv, buffer[binSearchIdx], fieldAccessList);
+        return seqSearch(cv, lastCV, fieldAccessList);
     }
 
     private FinderResult seqSearch(int[] cvToFind, int[] lastCV, IIntList fieldAccessList) throws IOException {
@@ -212,17 +224,18 @@ public class CVFinderDelta implements ICVFinder {
         long n = idx + fullFormatRatio - 1;
         if (n > numCVs)
             n = numCVs;
-        int[] cv;
+        int[] cv = new int[lastCV.length];
         for (long i = idx; i < n; i++) {
-            cv = new int[lastCV.length];
-            CVReaderDelta.readDelta(cv, lastCV, cvDeltaFile, numBitsPerCVIndex, numBitsPerElem);
+            CVReaderDelta.readDelta(cv, lastCV, cvDeltaFile, numBitsPerCVIndex, layout);
             int x = CVCmp.compare(cvToFind, cv, fieldAccessList);
             if (x == 0) {
                 return new FinderResult(true, i, -1, -1);
             } else if (x < 0) {
                 return new FinderResult(false, -1, i -1, i);
             }
+            int[] tmp = lastCV;
             lastCV = cv;
+            cv = tmp;
         }
         long toIdx = (n == numCVs) ? -1 : n;
         return new FinderResult(false, -1, n-1, toIdx);
@@ -231,15 +244,17 @@ public class CVFinderDelta implements ICVFinder {
     int binSearchIdx;
     boolean binSearchFound;
 
-    private void binSearch(int[] cvToFind, IIntList fieldAccessList) {
+    private void binSearch(int[] cvToFind, IIntList fieldAccessList)
+            throws IOException {
         int first = 0; 
-        int last = buffer.length - 1;
+        int last = numFullFormatVectors - 1;
+        int[] cvMiddle = new int[numElemsPerCV];
         binSearchFound = false;
         binSearchIdx = -1;
         
         while (first <= last) {
             int middle = (first + last) / 2;
-            int[] cvMiddle = buffer[middle];
+            readFullFormatVector(middle, cvMiddle);
             int x = CVCmp.compare(cvToFind, cvMiddle, fieldAccessList);
             if (x == 0) { //equal
                 binSearchFound = true;
@@ -0,0 +1,195 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+
+import korat.finitization.impl.StateSpace;
+import korat.utils.io.IBitReader;
+import korat.utils.io.IBitWriter;
+
+/**
+ * Layout of candidate vectors in candidate vector files: the number of bits
+ * of each element, as needed for the indices of its field domain.
+ * <p/>
+ *
+ * Layout is written in the header of the file (see <code>CVWriter</code>
+ * and <code>CVWriterDelta</code>) as:
+ *
+ * <pre>
+ * +------------------------------------------------------------+
+ * | NUMBER OF ELEMENTS PER CANDIDATE VECTOR (32 bits)          |
+ * | NUMBER OF BITS PER CANDIDATE VECTOR ELEMENT (32 bits)      |
+ * +------------------------------------------------------------+
+ * </pre>
+ *
+ * if all elements have the same number of bits (which is how all files were
+ * written before), and otherwise as:
+ *
+ * <pre>
+ * +------------------------------------------------------------+
+ * | NUMBER OF ELEMENTS PER CANDIDATE VECTOR (32 bits)          |
+ * | PER_ELEMENT_WIDTHS (32 bits)                               |
+ * | NUMBER OF BITS OF EACH ELEMENT (8 bits per element)        |
+ * +------------------------------------------------------------+
+ * </pre>
+ *
+ * @author korat.team
+ *
+ */
+public class CVLayout {
+
+    /**
+     * written instead of the number of bits per element, when the number of
+     * bits of each element follows
+     */
+    static final int PER_ELEMENT_WIDTHS = -1;
+
+    private final int[] widths;
+
+    private final int cvSizeInBits;
+
+    private final int maxWidth;
+
+    /**
+     * @param widths -
+     *            number of bits of each element of candidate vectors
+     */
+    public CVLayout(int[] widths) {
+        this.widths = widths.clone();
+        int size = 0;
+        int max = 0;
+        for (int w : widths) {
+            if (w < 0 || w > 32)
+                throw new IllegalArgumentException(
+                        "Invalid number of bits of candidate vector element: " + w);
+            size += w;
+            max = Math.max(max, w);
+        }
+        cvSizeInBits = size;
+        maxWidth = max;
+    }
+
+    /**
+     * Creates layout in which the i-th element has the number of bits needed
+     * for the indices of the i-th field domain of the given state space.
+     */
+    public static CVLayout forStateSpace(StateSpace stateSpace) {
+        int[] domainSizes = new int[stateSpace.getTotalNumberOfFields()];
+        for (int i = 0; i < domainSizes.length; i++)
+            domainSizes[i] = stateSpace.getFieldDomain(i).getNumberOfElements();
+        return forDomainSizes(domainSizes);
+    }
+
+    /**
+     * @param domainSizes -
+     *            number of values of each element (values of the i-th element
+     *            are from 0 to <code>domainSizes[i] - 1</code>)
+     */
+    public static CVLayout forDomainSizes(int[] domainSizes) {
+        int[] widths = new int[domainSizes.length];
+        for (int i = 0; i < widths.length; i++)
+            widths[i] = bitsFor(domainSizes[i] - 1);
+        return new CVLayout(widths);
+    }
+
+    /**
+     * Creates layout in which all elements have the number of bits needed for
+     * the values from 0 to <code>maxElem</code>.
+     */
+    public static CVLayout forMaxElem(int numElemsPerCV, int maxElem) {
+        int[] widths = new int[numElemsPerCV];
+        int w = bitsFor(maxElem);
+        for (int i = 0; i < widths.length; i++)
+            widths[i] = w;
+        return new CVLayout(widths);
+    }
+
+    /**
+     * @return number of bits needed for the values from 0 to
+     *         <code>maxValue</code>
+     */
+    static int bitsFor(int maxValue) {
+        return maxValue <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(maxValue);
+    }
+
+    public int getNumElemsPerCV() {
+        return widths.length;
+    }
+
+    public int getWidth(int i) {
+        return widths[i];
+    }
+
+    public int[] getWidths() {
+        return widths.clone();
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * @return number of bits of all elements of a candidate vector (without
+     *         the predicateOK bit)
+     */
+    public int getCVSizeInBits() {
+        return cvSizeInBits;
+    }
+
+    /**
+     * @return <code>true</code> if all elements have the same number of bits
+     */
+    public boolean isUniform() {
+        return cvSizeInBits == maxWidth * widths.length;
+    }
+
+    void write(IBitWriter out) throws IOException {
+        out.writeInt(widths.length);
+        if (isUniform()) {
+            out.writeInt(maxWidth);
+        } else {
+            out.writeInt(PER_ELEMENT_WIDTHS);
+            for (int w : widths)
+                out.writeBits(w, 8);
+        }
+    }
+
+    static CVLayout read(IBitReader in) throws IOException {
+        int numElemsPerCV = in.readInt();
+        int numBitsPerElem = in.readInt();
+        int[] widths = new int[numElemsPerCV];
+        if (numBitsPerElem == PER_ELEMENT_WIDTHS) {
+            for (int i = 0; i < widths.length; i++)
+                widths[i] = in.readBitsAsInt(8);
+        } else if (numBitsPerElem >= 0) {
+            for (int i = 0; i < widths.length; i++)
+                widths[i] = numBitsPerElem;
+        } else {
+            throw new IOException("Invalid number of bits per candidate vector element: "
+                    + numBitsPerElem);
+        }
+        return new CVLayout(widths);
+    }
+
+    void writeElem(int i, int elem, IBitWriter out) throws IOException {
+        if (widths[i] > 0)
+            out.writeBits(elem, widths[i]);
+    }
+
+    /**
+     * @return read element, or -1 if the end of file is reached
+     */
+    int readElem(int i, IBitReader in) throws IOException {
+        return widths[i] > 0 ? in.readBitsAsInt(widths[i]) : 0;
+    }
+
+    void writeElems(int[] cv, IBitWriter out) throws IOException {
+        for (int i = 0; i < cv.length; i++)
+            writeElem(i, cv[i], out);
+    }
+
+    void readElems(int[] cv, IBitReader in) throws IOException {
+        for (int i = 0; i < cv.length; i++)
+            cv[i] = readElem(i, in);
+    }
+
+}
@@ -19,8 +19,7 @@ public class CVReader implements ICVReader {
     
     private BitInputStream bis;
     private long numCVs;
-    private int numElemsPerCV;
-    private int numBitsPerElem;
+    private CVLayout layout;
     private long numCVsRead;
     private boolean predicateOK;
     
@@ -28,6 +27,11 @@ public class CVReader implements ICVReader {
           this(new BufferedInputStream(new FileInputStream(fileName)));
     }
     
+    protected CVReader(String fileName, long fromIdx) throws IOException {
+        this(fileName);
+        skipCVs(fromIdx);
+    }
+    
     protected CVReader(InputStream in) throws IOException {
         bis = new BitInputStream(in);
         readHeader();
@@ -35,15 +39,26 @@ public class CVReader implements ICVReader {
 
     private void readHeader() throws IOException {
         numCVs = bis.readLong();
-        numElemsPerCV = bis.readInt();
-        numBitsPerElem = bis.readInt();
+        layout = CVLayout.read(bis);
         numCVsRead = 0;
     }
+
+    /**
+     * Skips the given number of vectors from the beginning of the file
+     * (vectors have fixed size, so they are skipped without reading).
+     */
+    private void skipCVs(long n) throws IOException {
+        if (n < 0 || n > numCVs)
+            throw new IndexOutOfBoundsException("No candidate vector " + n
+                    + " in the file of " + numCVs + " vectors");
+        bis.skipBits(n * (layout.getCVSizeInBits() + 1));
+        numCVsRead = n;
+    }
     
     public int[] readCV() throws IOException {
-        int[] cv = new int[numElemsPerCV];
+        int[] cv = new int[layout.getNumElemsPerCV()];
         for (int i = 0; i < cv.length; i++) {
-            cv[i] = bis.readBitsAsInt(numBitsPerElem);
+            cv[i] = layout.readElem(i, bis);
             if (cv[i] == -1)
                 return null;
         }
@@ -73,7 +88,7 @@ public class CVReader implements ICVReader {
     }
 
     public int getNumElemsPerCV() {
-        return numElemsPerCV;
+        return layout.getNumElemsPerCV();
     }
 
     public long getNumCVsRead() {
@@ -87,6 +102,10 @@ public class CVReader implements ICVReader {
     public boolean isPredicateOK() {
         return predicateOK;
     }
+
+    public int getRestartInterval() {
+        return 1;
+    }
     
     public static void main(String[] args) {
         
@@ -133,7 +152,9 @@ public class CVReader implements ICVReader {
         
         ICVReader cvReader = null;
         try {
-            if (useDelta)
+            if (CVCodecHeader.isCodecFile(fileName))
+                cvReader = CVFactoryCodec.getInstance().createCVReader(fileName);
+            else if (useDelta)
                 cvReader = new CVFactoryDelta().createCVReader(fileName);
             else
                 cvReader = new CVFactory().createCVReader(fileName);
@@ -0,0 +1,103 @@
+package korat.utils.cv;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import korat.utils.io.ByteArrayBitReader;
+
+/**
+ * Utility for reading candidate vector files written according to
+ * CVWriterCodec's format.
+ *
+ * @see CVWriterCodec
+ * @author korat.team
+ *
+ */
+public class CVReaderCodec implements ICVReader {
+
+    private DataInputStream in;
+
+    private CVCodecHeader header;
+
+    private ByteArrayBitReader block;
+
+    private int numCVsLeftInBlock = 0;
+
+    private long numCVsRead = 0;
+
+    private boolean predicateOK;
+
+    protected CVReaderCodec(String fileName) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                fileName), 1 << 16));
+        header = CVCodecHeader.read(in);
+    }
+
+    protected CVReaderCodec(String fileName, long fromIdx) throws IOException {
+        this(fileName);
+        skipCVs(fromIdx);
+    }
+
+    /**
+     * Skips the given number of vectors from the beginning of the file.
+     * Blocks before the one that contains the first vector to read are
+     * skipped without decoding them.
+     */
+    private void skipCVs(long n) throws IOException {
+        if (n < 0 || n > header.numCVs)
+            throw new IndexOutOfBoundsException("No candidate vector " + n
+                    + " in the file of " + header.numCVs + " vectors");
+        long numBlocks = n / header.blockSize;
+        for (long b = 0; b < numBlocks; b++)
+            header.skipBlock(in);
+        numCVsRead = numBlocks * header.blockSize;
+        while (numCVsRead < n)
+            readCV();
+    }
+
+    public int[] readCV() throws IOException {
+        if (!hasNext())
+            return null;
+        if (numCVsLeftInBlock == 0) {
+            block = new ByteArrayBitReader(header.readBlock(in));
+            numCVsLeftInBlock = header.blockSize;
+        }
+        int[] cv = new int[header.getNumElemsPerCV()];
+        predicateOK = header.codec.decode(cv, block);
+        numCVsLeftInBlock--;
+        numCVsRead++;
+        return cv;
+    }
+
+    public void close() throws IOException {
+        if (in != null)
+            in.close();
+    }
+
+    public boolean hasNext() {
+        return numCVsRead < header.numCVs;
+    }
+
+    public long getNumCVs() {
+        return header.numCVs;
+    }
+
+    public int getNumElemsPerCV() {
+        return header.getNumElemsPerCV();
+    }
+
+    public long getNumCVsRead() {
+        return numCVsRead;
+    }
+
+    public boolean isPredicateOK() {
+        return predicateOK;
+    }
+
+    public int getRestartInterval() {
+        return header.blockSize;
+    }
+
+}
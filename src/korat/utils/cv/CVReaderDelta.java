@@ -24,7 +24,7 @@ public class CVReaderDelta implements ICVReader {
 
     private int numElemsPerCV;
 
-    private int numBitsPerElem;
+    private CVLayout layout;
 
     private int numBitsPerCVIndex;
 
@@ -38,12 +38,23 @@ public class CVReaderDelta implements ICVReader {
 
     private int cnt = 0;
 
+    /**
+     * whether the delta file is moved to the offset of the next full-format
+     * vector when it is read (after skipping vectors)
+     */
+    private boolean seekDelta;
+
     protected CVReaderDelta(String fileName) throws IOException {
         this(new BufferedInputStream(new FileInputStream(fileName)),
                 new BufferedInputStream(new FileInputStream(
                         CVWriterDelta.getDeltaFileName(fileName))));
     }
 
+    protected CVReaderDelta(String fileName, long fromIdx) throws IOException {
+        this(fileName);
+        skipCVs(fromIdx);
+    }
+
     protected CVReaderDelta(InputStream isFull, InputStream isDelta)
             throws IOException {
         bis = new BitInputStream(isFull);
@@ -57,11 +68,32 @@ public class CVReaderDelta implements ICVReader {
     private void readHeader() throws IOException {
         numCVs = bis.readLong();
         fullFormatRatio = bis.readInt();
-        numElemsPerCV = bis.readInt();
-        numBitsPerElem = bis.readInt();
+        layout = CVLayout.read(bis);
+        numElemsPerCV = layout.getNumElemsPerCV();
         numCVsRead = 0;
     }
 
+    /**
+     * Skips the given number of vectors from the beginning of the file.
+     * Full-format vectors before the closest one at or before the given
+     * index are skipped without reading, and reading starts from it and
+     * from its offset in the delta file.
+     */
+    private void skipCVs(long n) throws IOException {
+        if (n < 0 || n > numCVs)
+            throw new IndexOutOfBoundsException("No candidate vector " + n
+                    + " in the file of " + numCVs + " vectors");
+        if (n == 0)
+            return;
+        long fullFormatVectIdx = n / fullFormatRatio;
+        bis.skipBits(fullFormatVectIdx * (layout.getCVSizeInBits() + 64 + 1));
+        numCVsRead = fullFormatVectIdx * fullFormatRatio;
+        cnt = 0;
+        seekDelta = true;
+        while (numCVsRead < n)
+            readCV();
+    }
+
     public void close() throws IOException {
         if (bis != null)
             bis.close();
@@ -73,12 +105,16 @@ public class CVReaderDelta implements ICVReader {
         int[] cv = new int[numElemsPerCV];
 
         if (cnt == 0) {
-            Pair<Long, Boolean> pair = readFullFormatVector(cv, bis, numBitsPerElem);
+            Pair<Long, Boolean> pair = readFullFormatVector(cv, bis, layout);
             predicateOK = pair.getData2();
             cnt = fullFormatRatio;
+            if (seekDelta) {
+                bisDelta.skipBits(pair.getData1());
+                seekDelta = false;
+            }
         } else {
             predicateOK = readDelta(cv, lastCV, bisDelta, numBitsPerCVIndex,
-                    numBitsPerElem);
+                    layout);
         }
 
         System.arraycopy(cv, 0, lastCV, 0, cv.length);
@@ -88,13 +124,11 @@ public class CVReaderDelta implements ICVReader {
     }
 
     protected static Pair<Long, Boolean> readFullFormatVector(int[] cv,
-            IBitReader br, int numBitsPerElem) throws IOException {
+            IBitReader br, CVLayout layout) throws IOException {
 
         Pair<Long, Boolean> ret = new Pair<Long, Boolean>();
         
-        for (int i = 0; i < cv.length; i++) {
-            cv[i] = br.readBitsAsInt(numBitsPerElem);
-        }
+        layout.readElems(cv, br);
         ret.setData1(br.readLong()); // delta offset
         int predicateOKBit = br.readBitsAsInt(1);
         if (predicateOKBit == 0) {
@@ -108,7 +142,7 @@ public class CVReaderDelta implements ICVReader {
     }
 
     protected static boolean readDelta(int[] cv, int[] lastCV,
-            IBitReader bisDelta, int numBitsPerCVIndex, int numBitsPerElem)
+            IBitReader bisDelta, int numBitsPerCVIndex, CVLayout layout)
             throws IOException {
 
         // TODO: add checks to see if it hss reached the end of the file
@@ -126,7 +160,7 @@ public class CVReaderDelta implements ICVReader {
                 break;
             case CVWriterDelta.FOLLOWING_SAME_CODE:
                 k = bisDelta.readBitsAsInt(numBitsPerCVIndex);
-                elem = bisDelta.readBitsAsInt(numBitsPerElem);
+                elem = layout.readElem(k, bisDelta);
                 cv[k] = elem;
                 break;
             case CVWriterDelta.FOLLOWING_ZEROS_INC_CODE:
@@ -138,7 +172,7 @@ public class CVReaderDelta implements ICVReader {
                 break;
             case CVWriterDelta.FOLLOWING_ZEROS_CODE:
                 k = bisDelta.readBitsAsInt(numBitsPerCVIndex);
-                elem = bisDelta.readBitsAsInt(numBitsPerElem);
+                elem = layout.readElem(k, bisDelta);
                 cv[k] = elem;
                 for (int i = k + 1; i < cv.length; i++) {
                     cv[i] = 0;
@@ -150,7 +184,7 @@ public class CVReaderDelta implements ICVReader {
             int k, elem;
             for (int i = 0; i <= n; i++) {
                 k = bisDelta.readBitsAsInt(numBitsPerCVIndex);
-                elem = bisDelta.readBitsAsInt(numBitsPerElem);
+                elem = layout.readElem(k, bisDelta);
                 cv[k] = elem;
             }
         }
@@ -165,7 +199,7 @@ public class CVReaderDelta implements ICVReader {
     }
 
     protected void skipDeltaBits(long bits) throws IOException {
-        bisDelta.skip(bits);
+        bisDelta.skipBits(bits);
     }
 
     public long getNumCVs() {
@@ -188,4 +222,8 @@ public class CVReaderDelta implements ICVReader {
         return predicateOK;
     }
 
+    public int getRestartInterval() {
+        return fullFormatRatio;
+    }
+
 }
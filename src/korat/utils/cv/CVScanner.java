@@ -0,0 +1,201 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+
+/**
+ * Reads candidate vector file with several threads. The file is split into
+ * segments that start with vectors from which reading can start without
+ * decoding the vectors before them (see
+ * <code>ICVReader.getRestartInterval()</code>): full-format vectors of the
+ * delta format, and blocks of the codec format. Each thread takes segments
+ * until all of them are read, and reads every segment with its own reader.
+ *
+ * @author korat.team
+ *
+ */
+public class CVScanner {
+
+    /**
+     * Reads one segment of the file, called by several threads at once.
+     */
+    public interface ISegmentVisitor {
+
+        /**
+         * @param fromIdx -
+         *            index of the first vector of the segment
+         * @param toIdx -
+         *            index of the first vector after the segment
+         */
+        void visitSegment(long fromIdx, long toIdx) throws IOException;
+
+    }
+
+    /**
+     * number of segments per thread, so that threads that finish their
+     * segments sooner take more of them
+     */
+    private static final int SEGMENTS_PER_THREAD = 4;
+
+    private final String fileName;
+
+    private final ICVFactory factory;
+
+    private final long numCVs;
+
+    private final int restartInterval;
+
+    /**
+     * Scanner for the given file, read with the factory for the file (see
+     * <code>CVFactory.getCVFactory(String)</code>).
+     */
+    public CVScanner(String fileName) throws IOException {
+        this(fileName, CVFactory.getCVFactory(fileName));
+    }
+
+    public CVScanner(String fileName, ICVFactory factory) throws IOException {
+        this.fileName = fileName;
+        this.factory = factory;
+        ICVReader reader = factory.createCVReader(fileName);
+        try {
+            numCVs = reader.getNumCVs();
+            restartInterval = reader.getRestartInterval();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public long getNumCVs() {
+        return numCVs;
+    }
+
+    /**
+     * Splits the file into at most the given number of segments of the same
+     * size, that start with vectors from which reading can start.
+     *
+     * @return index of the first vector of each segment, followed by the
+     *         number of vectors in the file
+     */
+    public long[] getSegments(int numSegments) {
+        long numRestarts = (numCVs + restartInterval - 1) / restartInterval;
+        long segmentSize = Math.max(1, (numRestarts + numSegments - 1)
+                / numSegments)
+                * restartInterval;
+        int n = (int) ((numCVs + segmentSize - 1) / segmentSize);
+        long[] segments = new long[n + 1];
+        for (int i = 0; i < n; i++)
+            segments[i] = i * segmentSize;
+        segments[n] = numCVs;
+        return segments;
+    }
+
+    /**
+     * @return reader whose first read vector is the vector with the given
+     *         index
+     */
+    public ICVReader createReader(long fromIdx) throws IOException {
+        return factory.createCVReader(fileName, fromIdx);
+    }
+
+    /**
+     * Reads all vectors of the file with as many threads as there are
+     * processors.
+     */
+    public void scan(ICVVisitor visitor) throws IOException {
+        scan(visitor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads all vectors of the file with the given number of threads.
+     */
+    public void scan(final ICVVisitor visitor, int numThreads)
+            throws IOException {
+        scanSegments(new ISegmentVisitor() {
+            public void visitSegment(long fromIdx, long toIdx)
+                    throws IOException {
+                ICVReader reader = createReader(fromIdx);
+                try {
+                    for (long i = fromIdx; i < toIdx; i++) {
+                        int[] cv = reader.readCV();
+                        visitor.visitCV(i, cv, reader.isPredicateOK());
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }, numThreads);
+    }
+
+    /**
+     * Visits all segments of the file with the given number of threads, and
+     * waits until they are visited. Visiting stops at the first exception,
+     * which is then thrown.
+     */
+    public void scanSegments(ISegmentVisitor visitor, int numThreads)
+            throws IOException {
+        numThreads = Math.max(1, numThreads);
+        Scan scan = new Scan(visitor, getSegments(numThreads
+                * SEGMENTS_PER_THREAD));
+        Thread[] workers = new Thread[Math.min(numThreads,
+                scan.segments.length - 1)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(scan, "korat-cv-scanner-" + i);
+            workers[i].start();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                workers[i].join();
+            } catch (InterruptedException e) {
+                i--;
+            }
+        }
+        scan.checkFailure();
+    }
+
+    private static class Scan implements Runnable {
+
+        private final ISegmentVisitor visitor;
+
+        private final long[] segments;
+
+        private int next;
+
+        private Throwable failure;
+
+        Scan(ISegmentVisitor visitor, long[] segments) {
+            this.visitor = visitor;
+            this.segments = segments;
+        }
+
+        private synchronized int take() {
+            if (failure != null || next == segments.length - 1)
+                return -1;
+            return next++;
+        }
+
+        private synchronized void fail(Throwable t) {
+            if (failure == null)
+                failure = t;
+        }
+
+        public void run() {
+            for (int i = take(); i != -1; i = take()) {
+                try {
+                    visitor.visitSegment(segments[i], segments[i + 1]);
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }
+
+        void checkFailure() throws IOException {
+            if (failure instanceof IOException)
+                throw (IOException) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+        }
+
+    }
+
+}
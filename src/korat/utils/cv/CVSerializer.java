@@ -0,0 +1,220 @@
+package korat.utils.cv;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import korat.finitization.impl.StateSpace;
+import korat.testing.impl.TestCradle;
+import korat.utils.io.BitOutputStream;
+import korat.utils.io.ISerializer;
+
+/**
+ * Serializes test cases as their candidate vectors, instead of serializing
+ * the object graphs with java.io serialization. The fingerprint of the state
+ * space is written once, and each candidate vector is written as the
+ * difference to the previous one, with the codes of
+ * <code>CVWriterDelta</code>. Test cases are read back with
+ * <code>CVDeserializer</code>, which needs the same finitization.
+ *
+ * <p/> Format of the file:
+ *
+ * <pre>
+ *   MAGIC                         (32 bits)
+ *   FINGERPRINT OF STATE SPACE    (64 bits)
+ *   NUMBER OF CANDIDATE VECTORS   (64 bits, -1 until the file is closed)
+ *   NUMBER OF ELEMENTS PER CV     (32 bits)
+ *   NUMBER OF BITS PER ELEMENT    (32 bits)
+ *   DELTA[0] DELTA[1] ... DELTA[n - 1]
+ * </pre>
+ *
+ * where the deltas are encoded as in <code>CVWriterDelta</code> (the first
+ * one against the vector of zeros), without the predicate bit.
+ *
+ * @see CVDeserializer
+ * @author korat.team
+ *
+ */
+public class CVSerializer implements ISerializer {
+
+    static final int MAGIC = 0x4b435331; // "KCS1"
+
+    /**
+     * byte offset of the number of candidate vectors in the file
+     */
+    static final int NUM_CVS_OFFSET = 12;
+
+    private final String fileName;
+
+    private StateSpace stateSpace;
+
+    private BitOutputStream bos;
+
+    private int numBitsPerElem;
+
+    private int numBitsPerCVIndex;
+
+    private int[] lastCV;
+
+    private long numCVs;
+
+    private boolean otherStateSpaceReported;
+
+    private boolean closed;
+
+    public CVSerializer(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Serializes the candidate vector of the test case the search has just
+     * found
+     */
+    public void serialize(Object toSerialize) {
+        if (closed)
+            return;
+        TestCradle testCradle = TestCradle.getInstance();
+        try {
+            if (bos == null)
+                open(testCradle.getStateSpace());
+            if (testCradle.getStateSpace() != stateSpace
+                    && !checkStateSpace(testCradle.getStateSpace()))
+                return;
+            writeCV(testCradle.getCandidateVector());
+        } catch (IOException e) {
+            throw new RuntimeException(">> Cannot serialize candidate vectors.", e);
+        }
+    }
+
+    private void open(StateSpace stateSpace) throws IOException {
+        this.stateSpace = stateSpace;
+        int numElems = stateSpace.getTotalNumberOfFields();
+        int max = 0;
+        for (int i = 0; i < numElems; i++)
+            max = Math.max(max, stateSpace.getFieldDomain(i).getNumberOfElements());
+        numBitsPerElem = getNumBits(max - 1);
+        numBitsPerCVIndex = getNumBits(numElems - 1);
+        lastCV = new int[numElems];
+
+        bos = new BitOutputStream(new BufferedOutputStream(new FileOutputStream(
+                fileName), 8192));
+        bos.writeInt(MAGIC);
+        bos.writeLong(stateSpace.getFingerprint());
+        bos.writeLong(-1); // placeholder for number of candidate vectors
+        bos.writeInt(numElems);
+        bos.writeInt(numBitsPerElem);
+    }
+
+    /**
+     * Test cases of other state spaces (e.g. of other sizes in a size sweep)
+     * cannot be read back with the fingerprint of the file, so they are
+     * skipped.
+     */
+    private boolean checkStateSpace(StateSpace other) {
+        if (other.getFingerprint() == stateSpace.getFingerprint()) {
+            stateSpace = other;
+            return true;
+        }
+        if (!otherStateSpaceReported) {
+            otherStateSpaceReported = true;
+            System.err.println("WARNING: only the test cases of the first "
+                    + "state space are serialized to " + fileName);
+        }
+        return false;
+    }
+
+    /**
+     * @return number of bits needed for the values from 0 to max (at least
+     *         1, since IBitReader cannot read 0 bits)
+     */
+    static int getNumBits(int max) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+    }
+
+    private void writeCV(int[] cv) throws IOException {
+        int n = cv.length;
+        int k = 0;
+        while (k < n && cv[k] == lastCV[k])
+            k++;
+        if (k == n) {
+            // same as the last one (or the first vector of zeros)
+            k = 0;
+            writeOneChanged(CVWriterDelta.FOLLOWING_SAME_CODE, k, cv[k]);
+            numCVs++;
+            return;
+        }
+
+        boolean followingZeros = true;
+        boolean followingSame = true;
+        int numChanged = 1;
+        for (int j = k + 1; j < n; j++) {
+            if (cv[j] != 0)
+                followingZeros = false;
+            if (cv[j] != lastCV[j]) {
+                followingSame = false;
+                numChanged++;
+            }
+        }
+
+        boolean inc = cv[k] == lastCV[k] + 1;
+        if (followingSame) {
+            writeOneChanged(inc ? CVWriterDelta.FOLLOWING_SAME_INC_CODE
+                    : CVWriterDelta.FOLLOWING_SAME_CODE, k, cv[k]);
+        } else if (followingZeros) {
+            writeOneChanged(inc ? CVWriterDelta.FOLLOWING_ZEROS_INC_CODE
+                    : CVWriterDelta.FOLLOWING_ZEROS_CODE, k, cv[k]);
+        } else {
+            bos.writeBits(CVWriterDelta.MANY_BITS_CHANGED, 1);
+            bos.writeBits(numChanged - 1, numBitsPerCVIndex);
+            for (int j = k; j < n; j++) {
+                if (cv[j] != lastCV[j]) {
+                    bos.writeBits(j, numBitsPerCVIndex);
+                    bos.writeBits(cv[j], numBitsPerElem);
+                }
+            }
+        }
+        System.arraycopy(cv, k, lastCV, k, n - k);
+        numCVs++;
+    }
+
+    private void writeOneChanged(int code, int k, int value) throws IOException {
+        bos.writeBits(CVWriterDelta.ONE_BIT_CHANGED, 1);
+        bos.writeBits(code, CVWriterDelta.CODE_LEN);
+        bos.writeBits(k, numBitsPerCVIndex);
+        if (code == CVWriterDelta.FOLLOWING_SAME_CODE
+                || code == CVWriterDelta.FOLLOWING_ZEROS_CODE)
+            bos.writeBits(value, numBitsPerElem);
+    }
+
+    /**
+     * Writes the number of candidate vectors to the file and closes it. If
+     * no test case has been serialized, writes an empty file for the state
+     * space of the search. Test cases found later (e.g. of other sizes in a
+     * size sweep) are not serialized.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (bos == null) {
+                StateSpace ss = TestCradle.getInstance().getStateSpace();
+                if (ss == null)
+                    return;
+                open(ss);
+            }
+            bos.close();
+            RandomAccessFile f = new RandomAccessFile(fileName, "rw");
+            try {
+                f.seek(NUM_CVS_OFFSET);
+                f.writeLong(numCVs);
+            } finally {
+                f.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(">> Cannot close serialization file.", e);
+        }
+    }
+
+}
@@ -1,11 +1,9 @@
 package korat.utils.cv;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
-import korat.utils.io.BitOutputStream;
+import korat.utils.io.AsyncBitFileWriter;
 
 
 /**
@@ -23,6 +21,8 @@ import korat.utils.io.BitOutputStream;
  * +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
  * |                        NUMBER OF BITS PER CANDIDATE VECTOR ELEMENT                            |
  * +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ * |                  NUMBER OF BITS OF EACH ELEMENT (only if elements differ, see CVLayout)       |
+ * +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
  * | CVs[0,0] (variable size)    | CVs[0,1] (variable size) |.... | CVs[0,m] (variable size)    |ok| 
  * +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
  * | CVs[1,0] (variable size)    | CVs[1,1] (variable size) |.... | CVs[1,m] (variable size)    |ok| 
@@ -32,39 +32,39 @@ import korat.utils.io.BitOutputStream;
  * | CVs[n,0] (variable size)    | CVs[n,1] (variable size) |.... | CVs[n,m] (variable size)    |ok| 
  * +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
  * 
+ * The i-th element of every vector is written with the number of bits given
+ * by the layout (see <code>CVLayout</code>).
  * 
  * @author Aleksandar Milicevic <aca.milicevic@gmail.com>
  *
  */
 public class CVWriter implements ICVWriter {
 
-    private int numElemsPerCV;
-    private int numBitsPerElem; 
+    private CVLayout layout;
     private String fileName;
     private long numCVs = 0;
-    private BitOutputStream bos = null;
+    private AsyncBitFileWriter bos = null;
     
     protected CVWriter(String fileName, int numElemsPerCV, int maxElem) throws IOException {
+        this(fileName, CVLayout.forMaxElem(numElemsPerCV, maxElem));
+    }
+
+    protected CVWriter(String fileName, CVLayout layout) throws IOException {
         this.fileName = fileName;
-        this.numElemsPerCV = numElemsPerCV;
-        this.numBitsPerElem = (int) Math.ceil(Math.log(maxElem + 1) / Math.log(2));
-        bos = new BitOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+        this.layout = layout;
+        bos = new AsyncBitFileWriter(fileName);
         writeHeader();
     }
 
     private void writeHeader() throws IOException {
         bos.writeLong(-1); //placeholder for number of candidate vectors
-        bos.writeInt(numElemsPerCV);
-        bos.writeInt(numBitsPerElem);
-        
+        layout.write(bos);
     }
     
     public void writeCV(int[] cv, boolean predicateOK) throws IOException {
-        if (cv.length != numElemsPerCV)
+        if (cv.length != layout.getNumElemsPerCV())
             throw new RuntimeException("Wrong number of elements in candidate vector.");
-        for (int elem : cv) {
-            bos.writeBits(elem, numBitsPerElem);
-        }
+        layout.writeElems(cv, bos);
         if (predicateOK) {
             bos.writeBits(1, 1);
         } else {
@@ -0,0 +1,195 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import korat.utils.io.AsyncBitFileWriter;
+import korat.utils.io.ByteArrayBitWriter;
+
+/**
+ * Writes candidate vectors in blocks, encoded with the given codec (see
+ * <code>CVCodec</code>) and compressed with the given block compressor
+ * (see <code>CVBlockCompressor</code>). The header names both of them, so
+ * the file can be read without knowing how it was written.
+ * <p/>
+ *
+ * Format of the file that this writer produces is (in bytes):
+ *
+ * <pre>
+ * +------------------------------------------------------------+
+ * | MAGIC "KCVC" (4)                                           |
+ * | VERSION (4)                                                |
+ * | TOTAL NUMBER OF CANDIDATE VECTORS IN A FILE (8)            |
+ * | LENGTH OF CODEC NAME (4) | CODEC NAME                      |
+ * | LENGTH OF COMPRESSOR NAME (4) | COMPRESSOR NAME            |
+ * | NUMBER OF ELEMENTS PER CANDIDATE VECTOR (4)                |
+ * | NUMBER OF BITS OF EACH ELEMENT (1 per element)             |
+ * | NUMBER OF CANDIDATE VECTORS PER BLOCK (4)                  |
+ * +------------------------------------------------------------+
+ * | LENGTH OF BLOCK 0 (4) | STORED LENGTH (4) | STORED BLOCK 0 |
+ * +------------------------------------------------------------+
+ * |                            ....                            |
+ * +------------------------------------------------------------+
+ * | LENGTH OF BLOCK n (4) | STORED LENGTH (4) | STORED BLOCK n |
+ * +------------------------------------------------------------+
+ * </pre>
+ *
+ * All blocks but the last one have the same number of vectors. Blocks can
+ * be decoded independently of each other.
+ * <p/>
+ *
+ * Vectors are encoded by the caller, while full blocks are compressed and
+ * written by a background thread. One block waits for the thread at most,
+ * so the caller waits only if it fills two blocks while one is compressed.
+ *
+ * @author korat.team
+ *
+ */
+public class CVWriterCodec implements ICVWriter, Runnable {
+
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private String fileName;
+
+    private CVCodecHeader header;
+
+    private AsyncBitFileWriter out;
+
+    private ByteArrayBitWriter block = new ByteArrayBitWriter(1 << 16);
+
+    private int numCVsInBlock = 0;
+
+    private long numCVs = 0;
+
+    /**
+     * encoded block given to the background thread, <code>null</code> if
+     * there is none
+     */
+    private byte[] pending;
+
+    private boolean closing;
+
+    private IOException failure;
+
+    private Thread thread;
+
+    protected CVWriterCodec(String fileName, String codecName,
+            String compressorName, CVLayout layout) throws IOException {
+        this(fileName, codecName, compressorName, layout, DEFAULT_BLOCK_SIZE);
+    }
+
+    CVWriterCodec(String fileName, String codecName, String compressorName,
+            CVLayout layout, int blockSize) throws IOException {
+        this.fileName = fileName;
+        int[] widths = CVCodec.getWidths(codecName, layout);
+        header = new CVCodecHeader(CVCodec.forName(codecName, widths),
+                CVBlockCompressor.forName(compressorName), widths, blockSize);
+        out = new AsyncBitFileWriter(fileName);
+        header.write(out);
+        thread = new Thread(this, "korat-cv-compressor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void writeCV(int[] cv, boolean predicateOK) throws IOException {
+        if (cv.length != header.getNumElemsPerCV())
+            throw new RuntimeException("Wrong number of elements in candidate vector.");
+        header.codec.encode(cv, predicateOK, block);
+        numCVs++;
+        numCVsInBlock++;
+        if (numCVsInBlock == header.blockSize)
+            writeBlock();
+    }
+
+    /**
+     * Gives the encoded block to the background thread, once it has taken
+     * the previous one.
+     */
+    private synchronized void writeBlock() throws IOException {
+        block.flush();
+        byte[] raw = block.toByteArray();
+        block.reset();
+        numCVsInBlock = 0;
+        while (pending != null && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+            }
+        }
+        checkFailure();
+        pending = raw;
+        notifyAll();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            IOException e = new IOException("Cannot write candidate vectors to "
+                    + fileName);
+            e.initCause(failure);
+            throw e;
+        }
+    }
+
+    public void run() {
+        while (true) {
+            byte[] raw;
+            synchronized (this) {
+                while (pending == null && !closing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                    }
+                }
+                if (pending == null)
+                    return;
+                raw = pending;
+                pending = null;
+                notifyAll();
+            }
+            try {
+                byte[] stored = header.compressor.compress(raw);
+                out.writeInt(raw.length);
+                out.writeInt(stored.length);
+                out.writeBytes(stored, 0, stored.length);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        if (out == null)
+            return;
+        try {
+            if (numCVsInBlock > 0)
+                writeBlock();
+        } finally {
+            synchronized (this) {
+                closing = true;
+                notifyAll();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+            }
+            out.close();
+            out = null;
+        }
+        checkFailure();
+        // write num of CVs in the header
+        RandomAccessFile f = null;
+        try {
+            f = new RandomAccessFile(fileName, "rw");
+            f.seek(CVCodecHeader.NUM_CVS_POS);
+            f.writeLong(numCVs);
+        } finally {
+            if (f != null)
+                f.close();
+        }
+    }
+
+}
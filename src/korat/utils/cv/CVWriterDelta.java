@@ -1,20 +1,25 @@
 package korat.utils.cv;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.List;
 
 import korat.config.ConfigManager;
-import korat.utils.io.BitOutputStream;
+import korat.utils.io.AsyncBitFileWriter;
+import korat.utils.io.IBitWriter;
 
 /**
  * Writes candidate vectors using deltas. Every <code>N</code>th candidate vector
  * is written in full format (as with CVWriter) in a file that contains only 
  * full-format vectors. Vectors in between are stored in a separate file that
  * contains only the difference (delta) comparing to the last vector. 
+ * <p/>
+ * 
+ * Deltas are encoded without allocating memory, and both files are written
+ * by background threads (see <code>AsyncBitFileWriter</code>), so writing
+ * every explored vector slows the search down as little as possible.
+ * Elements are written with the number of bits given by the layout, which
+ * is stored in the header of the file of full-format vectors (see
+ * <code>CVLayout</code>).
  * 
  * @author Aleksandar Milicevic <aca.milicevic@gmail.com>
  * 
@@ -43,7 +48,7 @@ public class CVWriterDelta implements ICVWriter {
 
     private long numCVs = 0;
 
-    private int numBitsPerElem;
+    private CVLayout layout;
 
     private int numElemsPerCV;
 
@@ -51,9 +56,9 @@ public class CVWriterDelta implements ICVWriter {
     
     private int[] lastCV;
 
-    private BitOutputStream bos;
+    private AsyncBitFileWriter bos;
 
-    private BitOutputStream bosDelta;
+    private AsyncBitFileWriter bosDelta;
     
     private int cnt = 0;
     
@@ -61,19 +66,22 @@ public class CVWriterDelta implements ICVWriter {
 
     protected CVWriterDelta(String fileName, int numElemsPerCV, int maxElem)
             throws IOException {
+        this(fileName, CVLayout.forMaxElem(numElemsPerCV, maxElem));
+    }
+
+    protected CVWriterDelta(String fileName, CVLayout layout)
+            throws IOException {
 
         this.fileName = fileName;
-        this.numElemsPerCV = numElemsPerCV;
-        this.numBitsPerElem = (int) Math.ceil(Math.log(maxElem + 1) / Math.log(2));
+        this.layout = layout;
+        this.numElemsPerCV = layout.getNumElemsPerCV();
         this.numBitsPerCVIndex = (int) Math.ceil(Math.log(numElemsPerCV) / Math.log(2));
         
         lastCV = new int[numElemsPerCV];
         
         String fileNameDelta = getDeltaFileName(fileName);
-        bos = new BitOutputStream(new BufferedOutputStream(
-                new FileOutputStream(fileName)));
-        bosDelta = new BitOutputStream(new BufferedOutputStream(
-                new FileOutputStream(fileNameDelta)));
+        bos = new AsyncBitFileWriter(fileName);
+        bosDelta = new AsyncBitFileWriter(fileNameDelta);
         writeHeader();
         
     }
@@ -81,8 +89,7 @@ public class CVWriterDelta implements ICVWriter {
     private void writeHeader() throws IOException {
         bos.writeLong(-1); // placeholder for number of candidate vectors
         bos.writeInt(ConfigManager.getInstance().cvFullFormatRatio); // ratio of all vectors and full format vectors
-        bos.writeInt(numElemsPerCV);
-        bos.writeInt(numBitsPerElem);
+        layout.write(bos);
     }
 
     public void close() throws IOException {
@@ -116,9 +123,7 @@ public class CVWriterDelta implements ICVWriter {
     }
 
     private void writeFullFormatCV(int[] cv, boolean predicateOK) throws IOException {
-        for (int elem : cv) {
-            bos.writeBits(elem, numBitsPerElem);
-        }
+        layout.writeElems(cv, bos);
         bos.writeLong(deltaOffset);
         writePredicateBit(predicateOK, bos);
     }
@@ -134,13 +139,9 @@ public class CVWriterDelta implements ICVWriter {
             return false;
         }
         
-        List<Integer> changedIndexes = new ArrayList<Integer>(cv.length - k + 1);
-        List<Integer> changedValues = new ArrayList<Integer>(cv.length - k + 1);
-        changedIndexes.add(k);
-        changedValues.add(cv[k]);
-        
         boolean followingZeros = true;
         boolean followingSame = true;
+        int numChanged = 1;
         
         for (int j = k + 1; j < cv.length; j++) {
             if (cv[j] != 0) {
@@ -148,8 +149,7 @@ public class CVWriterDelta implements ICVWriter {
             }
             if (cv[j] != lastCV[j]) {
                 followingSame = false;
-                changedIndexes.add(j);
-                changedValues.add(cv[j]);
+                numChanged++;
             }
         }
         // based on the previous check, encode delta
@@ -168,8 +168,8 @@ public class CVWriterDelta implements ICVWriter {
             } else {
                 bosDelta.writeBits(FOLLOWING_SAME_CODE, CODE_LEN);
                 bosDelta.writeBits(k, numBitsPerCVIndex);
-                bosDelta.writeBits(cv[k], numBitsPerElem);
-                deltaOffset += CODE_LEN + numBitsPerCVIndex + numBitsPerElem;
+                layout.writeElem(k, cv[k], bosDelta);
+                deltaOffset += CODE_LEN + numBitsPerCVIndex + layout.getWidth(k);
             }
         } else if (followingZeros) {
             if (cv[k] == lastCV[k] + 1) {
@@ -179,17 +179,19 @@ public class CVWriterDelta implements ICVWriter {
             } else {
                 bosDelta.writeBits(FOLLOWING_ZEROS_CODE, CODE_LEN);
                 bosDelta.writeBits(k, numBitsPerCVIndex);
-                bosDelta.writeBits(cv[k], numBitsPerElem);
-                deltaOffset += CODE_LEN + numBitsPerCVIndex + numBitsPerElem;
+                layout.writeElem(k, cv[k], bosDelta);
+                deltaOffset += CODE_LEN + numBitsPerCVIndex + layout.getWidth(k);
             }
         } else { //worst case, write all changed fields
-            int n = changedIndexes.size() - 1;
+            int n = numChanged - 1;
             bosDelta.writeBits(n, numBitsPerCVIndex);
             deltaOffset += numBitsPerCVIndex;
-            for (int i = 0; i <= n; i++) {
-                bosDelta.writeBits(changedIndexes.get(i), numBitsPerCVIndex);
-                bosDelta.writeBits(changedValues.get(i), numBitsPerElem);
-                deltaOffset += numBitsPerCVIndex + numBitsPerElem;
+            for (int j = k; j < cv.length; j++) {
+                if (cv[j] == lastCV[j])
+                    continue;
+                bosDelta.writeBits(j, numBitsPerCVIndex);
+                layout.writeElem(j, cv[j], bosDelta);
+                deltaOffset += numBitsPerCVIndex + layout.getWidth(j);
             }
         }
         writePredicateBit(predicateOK, bosDelta);
@@ -197,7 +199,7 @@ public class CVWriterDelta implements ICVWriter {
         return true;
     }
     
-    private void writePredicateBit(boolean predicateOK, BitOutputStream os) throws IOException {
+    private void writePredicateBit(boolean predicateOK, IBitWriter os) throws IOException {
         if (predicateOK) {
             os.writeBits(1, 1);
         } else {
@@ -6,8 +6,22 @@ public interface ICVFactory {
     
     ICVWriter createCVWriter(String fileName, int numElemsPerCV, int maxElem) throws IOException;
     
+    /**
+     * Creates writer for candidate vectors whose elements have the number of
+     * bits given by the layout.
+     */
+    ICVWriter createCVWriter(String fileName, CVLayout layout) throws IOException;
+    
     ICVReader createCVReader(String fileName) throws IOException;
     
+    /**
+     * Creates reader whose first read vector is the vector with the given
+     * index. Vectors before it are skipped without reading, up to the closest
+     * vector from which reading can start (see
+     * <code>ICVReader.getRestartInterval()</code>).
+     */
+    ICVReader createCVReader(String fileName, long fromIdx) throws IOException;
+    
     ICVFinder createCVFinder(String fileName) throws IOException;
     
 }
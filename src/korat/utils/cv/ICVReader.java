@@ -62,4 +62,15 @@ public interface ICVReader {
      */
     long getNumCVsRead();
 
+    /**
+     * Returns distance between the vectors from which reading can start
+     * without decoding the vectors before them (e.g. full-format vectors of
+     * the delta format). Readers created with
+     * <code>ICVFactory.createCVReader(String, long)</code> start fastest at
+     * multiples of this distance.
+     * 
+     * @return distance between the vectors from which reading can start
+     */
+    int getRestartInterval();
+
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package korat.utils.cv;
+
+import java.io.IOException;
+
+/**
+ * Receives candidate vectors read by <code>CVScanner</code>. Vectors of one
+ * segment of the file are visited in order, by one thread, while segments
+ * are visited by several threads at once.
+ *
+ * @see CVScanner
+ * @author korat.team
+ *
+ */
+public interface ICVVisitor {
+
+    /**
+     * Called for every vector of the file.
+     *
+     * @param idx -
+     *            index of the vector in the file
+     * @param cv -
+     *            candidate vector
+     * @param predicateOK -
+     *            whether the vector passes predicate check or not
+     * @throws IOException
+     *             to stop reading the file
+     */
+    void visitCV(long idx, int[] cv, boolean predicateOK) throws IOException;
+
+}
@@ -200,17 +200,10 @@ public class WriteCVListener implements ITestCaseListener {
 
     private void initCVWriter() {
         StateSpace stateSpace = TestCradle.getInstance().getStateSpace();
-        int numElems = stateSpace.getTotalNumberOfFields();
-        int max = 0;
-        for (int i = 0; i < numElems; i++) {
-            int m = stateSpace.getFieldDomain(i).getNumberOfElements();
-            if (m > max) {
-                max = m;
-            }
-        }
+        CVLayout layout = CVLayout.forStateSpace(stateSpace);
         try {
             String cvFileName = ConfigManager.getInstance().cvFile;
-            cvWriter = CVFactory.getCVFactory().createCVWriter(cvFileName, numElems, max);
+            cvWriter = CVFactory.getCVFactory().createCVWriter(cvFileName, layout);
         } catch (Exception e) {
             cvWriter = null;
             System.err.println("WARNING: Cannot init WriteCVListener!");
@@ -0,0 +1,285 @@
+package korat.utils.io;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Utility for writing bits to a file, like <code>BitOutputStream</code>, but
+ * in the background. Bits are collected in a 64-bit word, which is put to a
+ * block of memory when full. Full blocks are written to the file by a writer
+ * thread through <code>FileChannel</code>, while the next block is being
+ * filled. There are two blocks, so the caller waits only if it fills a block
+ * before the writer thread has written the previous one.
+ *
+ * <p/> Bits are written in the same order as with
+ * <code>BitOutputStream</code>, so the produced files are the same.
+ *
+ * @see BitOutputStream
+ * @author korat.team
+ *
+ */
+public class AsyncBitFileWriter implements IBitWriter, Runnable {
+
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private FileOutputStream out;
+
+    private FileChannel channel;
+
+    /**
+     * block being filled
+     */
+    private ByteBuffer block;
+
+    /**
+     * block given to the writer thread, <code>null</code> if there is none
+     */
+    private ByteBuffer full;
+
+    /**
+     * block already written by the writer thread, <code>null</code> while the
+     * writer thread is writing it
+     */
+    private ByteBuffer free;
+
+    /**
+     * bits not put to the block yet, in the least significant bits
+     */
+    private long word;
+
+    private int wordBits; // @invariant: 0 <= wordBits < 64
+
+    private boolean closed;
+
+    private IOException failure;
+
+    private Thread thread;
+
+    public AsyncBitFileWriter(String fileName) throws IOException {
+        this(fileName, DEFAULT_BLOCK_SIZE);
+    }
+
+    AsyncBitFileWriter(String fileName, int blockSize) throws IOException {
+        blockSize = Math.max(8, blockSize & ~7);
+        out = new FileOutputStream(fileName);
+        channel = out.getChannel();
+        block = ByteBuffer.allocateDirect(blockSize);
+        free = ByteBuffer.allocateDirect(blockSize);
+        thread = new Thread(this, "korat-cv-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeBits(long, int)
+     */
+    public void writeBits(long b, int len) throws IOException {
+        if (len <= 0 || len > 64)
+            return;
+
+        if (len < 64)
+            b &= (1L << len) - 1;
+        int room = 64 - wordBits;
+        if (len < room) {
+            word = (word << len) | b;
+            wordBits += len;
+            return;
+        }
+
+        // fill the word with the high bits of b, and keep the rest
+        int rest = len - room;
+        long w = room == 64 ? b : (word << room) | (b >>> rest);
+        putWord(w);
+        word = rest == 0 ? 0 : b & ((1L << rest) - 1);
+        wordBits = rest;
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeBits(long, int, int)
+     */
+    public void writeBits(long b, int off, int len) throws IOException {
+        writeBits(b >> off, len);
+    }
+
+    /**
+     * Writes <code>len</code> bytes of the given array. If the bits written
+     * so far make whole bytes, the bytes are copied to the blocks at once.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (wordBits % 8 != 0) {
+            for (int i = 0; i < len; i++)
+                writeBits(b[off + i], 8);
+            return;
+        }
+        for (int i = wordBits / 8 - 1; i >= 0; i--) {
+            if (!block.hasRemaining())
+                swapBlocks();
+            block.put((byte) (word >>> (8 * i)));
+        }
+        word = 0;
+        wordBits = 0;
+        while (len > 0) {
+            if (!block.hasRemaining())
+                swapBlocks();
+            int n = Math.min(len, block.remaining());
+            block.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void putWord(long w) throws IOException {
+        if (block.remaining() < 8)
+            swapBlocks();
+        block.putLong(w);
+    }
+
+    /**
+     * Gives the block being filled to the writer thread, and takes the other
+     * one once the writer thread has written it.
+     */
+    private synchronized void swapBlocks() throws IOException {
+        while (free == null && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+            }
+        }
+        checkFailure();
+        full = block;
+        block = free;
+        free = null;
+        block.clear();
+        notifyAll();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            IOException e = new IOException("Cannot write to file");
+            e.initCause(failure);
+            throw e;
+        }
+    }
+
+    public void run() {
+        while (true) {
+            ByteBuffer b;
+            synchronized (this) {
+                while (full == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                    }
+                }
+                if (full == null)
+                    return;
+                b = full;
+                full = null;
+            }
+            try {
+                b.flip();
+                while (b.hasRemaining())
+                    channel.write(b);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+            }
+            synchronized (this) {
+                free = b;
+                notifyAll();
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeInt(int)
+     */
+    public void writeInt(int x) throws IOException {
+        writeBits(x, 32);
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeLong(long)
+     */
+    public void writeLong(long x) throws IOException {
+        writeBits(x, 64);
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeFloat(float)
+     */
+    public void writeFloat(float x) throws IOException {
+        writeInt(Float.floatToIntBits(x));
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeDouble(double)
+     */
+    public void writeDouble(double x) throws IOException {
+        writeLong(Double.doubleToLongBits(x));
+    }
+
+    /**
+     * Pads the written bits with zeros to the full byte (like
+     * <code>BitOutputStream</code>), and waits until everything is written
+     * to the file.
+     *
+     * @see korat.utils.io.IBitWriter#flush()
+     */
+    public void flush() throws IOException {
+        if (wordBits > 0) {
+            int numBytes = (wordBits + 7) / 8;
+            long w = word << (numBytes * 8 - wordBits);
+            if (block.remaining() < numBytes)
+                swapBlocks();
+            for (int i = numBytes - 1; i >= 0; i--)
+                block.put((byte) (w >>> (8 * i)));
+            word = 0;
+            wordBits = 0;
+        }
+        if (block.position() > 0)
+            swapBlocks();
+        // the block given last is written once the writer thread gives it
+        // back
+        synchronized (this) {
+            while (free == null && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Flushes the written bits, stops the writer thread and closes the file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        if (out == null)
+            return;
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+            }
+            out.close();
+            out = null;
+            channel = null;
+        }
+    }
+
+}
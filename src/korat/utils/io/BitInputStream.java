@@ -1,5 +1,6 @@
 package korat.utils.io;
 
+import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -99,4 +100,33 @@ public class BitInputStream extends FilterInputStream implements IBitReader {
     public double readDouble() throws IOException {
         return Double.longBitsToDouble(readLong());
     }
+
+    /**
+     * Skips the given number of bits. Whole bytes are skipped in the
+     * underlying stream, without reading them.
+     *
+     * @throws EOFException
+     *             if the end of stream is reached before all bits are skipped
+     */
+    public void skipBits(long numOfBits) throws IOException {
+        if (numOfBits <= buffSize) {
+            if (numOfBits > 0)
+                readBitsAsLong((int) numOfBits);
+            return;
+        }
+        long n = numOfBits - buffSize;
+        buff = 0;
+        buffSize = 0;
+        for (long bytes = n / 8; bytes > 0;) {
+            long skipped = skip(bytes);
+            if (skipped <= 0) {
+                if (read() == -1)
+                    throw new EOFException();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+        if (n % 8 > 0 && readBitsAsLong((int) (n % 8)) == -1)
+            throw new EOFException();
+    }
 }
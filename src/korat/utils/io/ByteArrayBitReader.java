@@ -0,0 +1,108 @@
+package korat.utils.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility for reading bits from a byte array. Bits are taken from a 64-bit
+ * word, which is refilled with the next 8 bytes of the array at once (as in
+ * <code>MappedBitRandomAccessFile</code>).
+ *
+ * @see BitInputStream
+ * @author korat.team
+ *
+ */
+public class ByteArrayBitReader implements IBitReader {
+
+    private final ByteBuffer bytes;
+
+    /**
+     * position of the next byte to put to the word
+     */
+    private int bytePos;
+
+    /**
+     * bits not read yet, in the most significant bits of the word
+     */
+    private long word;
+
+    private int wordBits; // @invariant: 0 <= wordBits <= 64
+
+    public ByteArrayBitReader(byte[] bytes) {
+        this.bytes = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Reads the given number of bits and interprets them as long
+     *
+     * @param numOfBits number of bits to read. Has to be in the range from 1 to 64.
+     * @return value of the read bits interpreted as long, -1 if the end of
+     *         the array is reached before.
+     */
+    public long readBitsAsLong(int numOfBits) {
+        if (numOfBits <= 0 || numOfBits > 64)
+            return -2;
+
+        if (numOfBits <= wordBits) {
+            long ret = word >>> (64 - numOfBits);
+            word = numOfBits == 64 ? 0 : word << numOfBits;
+            wordBits -= numOfBits;
+            return ret;
+        }
+
+        // the rest of the word, followed by the bits of the next one
+        long ret = wordBits == 0 ? 0 : word >>> (64 - wordBits);
+        int need = numOfBits - wordBits;
+        fillWord();
+        if (wordBits < need)
+            return -1;
+        ret = (need == 64 ? 0 : ret << need) | (word >>> (64 - need));
+        word = need == 64 ? 0 : word << need;
+        wordBits -= need;
+        return ret;
+    }
+
+    private void fillWord() {
+        int n = Math.min(8, bytes.limit() - bytePos);
+        if (n == 8) {
+            word = bytes.getLong(bytePos);
+        } else {
+            word = 0;
+            for (int i = 0; i < n; i++)
+                word = (word << 8) | (bytes.get(bytePos + i) & 0xff);
+            if (n > 0)
+                word <<= 64 - 8 * n;
+        }
+        wordBits = 8 * n;
+        bytePos += n;
+    }
+
+    /**
+     * Reads the given number of bits and interprets them as int.
+     *
+     * @param numOfBits number of bits to read. Has to be in the range from 1 to 32.
+     * @return value of the read bits interpreted as int.
+     */
+    public int readBitsAsInt(int numOfBits) {
+        if (numOfBits <= 0 || numOfBits > 32)
+            return -2;
+
+        return (int) readBitsAsLong(numOfBits);
+    }
+
+    public int readInt() {
+        return readBitsAsInt(32);
+    }
+
+    public long readLong() {
+        return readBitsAsLong(64);
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+}
@@ -0,0 +1,136 @@
+package korat.utils.io;
+
+/**
+ * Utility for writing bits to a growing byte array. Bits are collected in a
+ * 64-bit word, which is put to the array when full (as in
+ * <code>AsyncBitFileWriter</code>).
+ *
+ * @see BitOutputStream
+ * @see ByteArrayBitReader
+ * @author korat.team
+ *
+ */
+public class ByteArrayBitWriter implements IBitWriter {
+
+    private byte[] bytes;
+
+    private int size;
+
+    /**
+     * bits not put to the array yet, in the least significant bits
+     */
+    private long word;
+
+    private int wordBits; // @invariant: 0 <= wordBits < 64
+
+    public ByteArrayBitWriter(int initialSize) {
+        bytes = new byte[Math.max(8, initialSize)];
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeBits(long, int)
+     */
+    public void writeBits(long b, int len) {
+        if (len <= 0 || len > 64)
+            return;
+
+        if (len < 64)
+            b &= (1L << len) - 1;
+        int room = 64 - wordBits;
+        if (len < room) {
+            word = (word << len) | b;
+            wordBits += len;
+            return;
+        }
+
+        // fill the word with the high bits of b, and keep the rest
+        int rest = len - room;
+        long w = room == 64 ? b : (word << room) | (b >>> rest);
+        ensureCapacity(8);
+        for (int i = 7; i >= 0; i--)
+            bytes[size++] = (byte) (w >>> (8 * i));
+        word = rest == 0 ? 0 : b & ((1L << rest) - 1);
+        wordBits = rest;
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeBits(long, int, int)
+     */
+    public void writeBits(long b, int off, int len) {
+        writeBits(b >> off, len);
+    }
+
+    private void ensureCapacity(int n) {
+        if (size + n > bytes.length) {
+            byte[] b = new byte[Math.max(size + n, bytes.length * 2)];
+            System.arraycopy(bytes, 0, b, 0, size);
+            bytes = b;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeInt(int)
+     */
+    public void writeInt(int x) {
+        writeBits(x, 32);
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeLong(long)
+     */
+    public void writeLong(long x) {
+        writeBits(x, 64);
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeFloat(float)
+     */
+    public void writeFloat(float x) {
+        writeInt(Float.floatToIntBits(x));
+    }
+
+    /* (non-Javadoc)
+     * @see korat.utils.io.IBitWriter#writeDouble(double)
+     */
+    public void writeDouble(double x) {
+        writeLong(Double.doubleToLongBits(x));
+    }
+
+    /**
+     * Pads the written bits with zeros to the full byte (like
+     * <code>BitOutputStream</code>).
+     *
+     * @see korat.utils.io.IBitWriter#flush()
+     */
+    public void flush() {
+        if (wordBits > 0) {
+            int numBytes = (wordBits + 7) / 8;
+            long w = word << (numBytes * 8 - wordBits);
+            ensureCapacity(numBytes);
+            for (int i = numBytes - 1; i >= 0; i--)
+                bytes[size++] = (byte) (w >>> (8 * i));
+            word = 0;
+            wordBits = 0;
+        }
+    }
+
+    /**
+     * @return written bytes (call <code>flush</code> first to include the
+     *         bits that don't make a full byte)
+     */
+    public byte[] toByteArray() {
+        byte[] ret = new byte[size];
+        System.arraycopy(bytes, 0, ret, 0, size);
+        return ret;
+    }
+
+    /**
+     * Discards the written bits
+     */
+    public void reset() {
+        size = 0;
+        word = 0;
+        wordBits = 0;
+    }
+
+}
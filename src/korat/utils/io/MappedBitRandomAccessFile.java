@@ -0,0 +1,202 @@
+package korat.utils.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Utility for reading bits from the random access file, like
+ * <code>BitRandomAccessFile</code>, but through memory-mapped windows of the
+ * file instead of a system call per byte. Bits are taken from a 64-bit word,
+ * which is refilled with the next 8 bytes of the file at once.
+ *
+ * <p/> Files larger than the window are mapped one window at a time, so
+ * files of several gigabytes can be read without mapping them as a whole.
+ *
+ * @see BitRandomAccessFile
+ * @author korat.team
+ *
+ */
+public class MappedBitRandomAccessFile implements IBitReader {
+
+    static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+    private final int windowSize;
+
+    private RandomAccessFile file;
+
+    private FileChannel channel;
+
+    private final long fileSize;
+
+    private MappedByteBuffer window;
+
+    /**
+     * file position of the first byte of the window
+     */
+    private long windowStart;
+
+    /**
+     * file position of the next byte to put to the word
+     */
+    private long bytePos;
+
+    /**
+     * bits not read yet, in the most significant bits of the word
+     */
+    private long word;
+
+    private int wordBits; // @invariant: 0 <= wordBits <= 64
+
+    public MappedBitRandomAccessFile(String fileName) throws IOException {
+        this(fileName, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedBitRandomAccessFile(String fileName, int windowSize)
+            throws IOException {
+        this.windowSize = Math.max(8, windowSize);
+        file = new RandomAccessFile(fileName, "r");
+        channel = file.getChannel();
+        fileSize = channel.size();
+    }
+
+    /**
+     * Reads the given number of bits and interprets them as long
+     *
+     * @param numOfBits number of bits to read. Has to be in the range from 1 to 64.
+     * @return value of the read bits interpreted as long, -1 if the end of
+     *         the file is reached before.
+     * @throws IOException if an I/O error occurs.
+     */
+    public long readBitsAsLong(int numOfBits) throws IOException {
+        if (numOfBits <= 0 || numOfBits > 64)
+            return -2;
+
+        if (numOfBits <= wordBits) {
+            long ret = word >>> (64 - numOfBits);
+            word = numOfBits == 64 ? 0 : word << numOfBits;
+            wordBits -= numOfBits;
+            return ret;
+        }
+
+        // the rest of the word, followed by the bits of the next one
+        long ret = wordBits == 0 ? 0 : word >>> (64 - wordBits);
+        int need = numOfBits - wordBits;
+        fillWord();
+        if (wordBits < need)
+            return -1;
+        ret = (need == 64 ? 0 : ret << need) | (word >>> (64 - need));
+        word = need == 64 ? 0 : word << need;
+        wordBits -= need;
+        return ret;
+    }
+
+    /**
+     * Puts the next 8 bytes of the file (or less at the end of the file) to
+     * the word
+     */
+    private void fillWord() throws IOException {
+        word = 0;
+        wordBits = 0;
+        if (bytePos >= fileSize)
+            return;
+        long windowEnd = windowStart + (window == null ? 0 : window.limit());
+        if (window == null || bytePos < windowStart
+                || (windowEnd - bytePos < 8 && windowEnd < fileSize)) {
+            mapWindow(bytePos);
+            windowEnd = windowStart + window.limit();
+        }
+        int off = (int) (bytePos - windowStart);
+        if (windowEnd - bytePos >= 8) {
+            word = window.getLong(off);
+            wordBits = 64;
+            bytePos += 8;
+        } else {
+            // end of the file
+            int n = (int) (windowEnd - bytePos);
+            for (int i = 0; i < n; i++)
+                word = (word << 8) | (window.get(off + i) & 0xff);
+            word <<= 64 - 8 * n;
+            wordBits = 8 * n;
+            bytePos += n;
+        }
+    }
+
+    private void mapWindow(long pos) throws IOException {
+        windowStart = pos;
+        long size = Math.min(windowSize, fileSize - pos);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+    }
+
+    /**
+     * Positions file pointer to the given location.
+     * Location is given in a number of <strong>bits</strong>.
+     *
+     * @param numBits
+     * @throws IOException
+     */
+    public void seek(long numBits) throws IOException {
+        long pointer = getFilePointer();
+        if (numBits >= pointer && numBits < bytePos * 8) {
+            // within the current word
+            if (numBits > pointer)
+                readBitsAsLong((int) (numBits - pointer));
+            return;
+        }
+        bytePos = numBits / 8;
+        word = 0;
+        wordBits = 0;
+        int mod = (int) (numBits % 8);
+        if (mod > 0)
+            readBitsAsLong(mod);
+    }
+
+    /**
+     * Reads the given number of bits and interprets them as int.
+     *
+     * @param numOfBits number of bits to read. Has to be in the range from 1 to 32.
+     * @return value of the read bits interpreted as int.
+     * @throws IOException if an I/O error occurs.
+     */
+    public int readBitsAsInt(int numOfBits) throws IOException {
+        if (numOfBits <= 0 || numOfBits > 32)
+            return -2;
+
+        return (int) readBitsAsLong(numOfBits);
+    }
+
+    public int readInt() throws IOException {
+        return readBitsAsInt(32);
+    }
+
+    public long readLong() throws IOException {
+        return readBitsAsLong(64);
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Get file pointer <strong>in bits</strong>
+     * @return file pointer meassured in bits
+     */
+    public long getFilePointer() {
+        return bytePos * 8 - wordBits;
+    }
+
+    public void close() throws IOException {
+        window = null;
+        if (file != null) {
+            file.close();
+            file = null;
+            channel = null;
+        }
+    }
+
+}
@@ -4,9 +4,12 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import korat.exploration.ExplorationAllTests;
 import korat.instrumentation.InstrumentationAllTests;
+import korat.testing.impl.AccessedFieldListTest;
 import korat.utils.ReflectionUtilsTests;
 import korat.utils.cv.CVAllTests;
+import korat.utils.io.AsyncBitFileWriterTest;
 import korat.utils.io.BitInputOutputStreamTest;
+import korat.utils.io.MappedBitRandomAccessFileTest;
 
 public class AllTests {
 
@@ -22,6 +25,9 @@ public class AllTests {
         suite.addTest(CVAllTests.suite());
         suite.addTestSuite(ReflectionUtilsTests.class);
         suite.addTestSuite(BitInputOutputStreamTest.class);
+        suite.addTestSuite(MappedBitRandomAccessFileTest.class);
+        suite.addTestSuite(AsyncBitFileWriterTest.class);
+        suite.addTestSuite(AccessedFieldListTest.class);
         // $JUnit-END$
         return suite;
     }
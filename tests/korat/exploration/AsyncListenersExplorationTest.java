@@ -0,0 +1,142 @@
+package korat.exploration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import korat.testing.ITestCaseListener;
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that listeners notified asynchronously get the same test cases, in
+ * the same order, as listeners notified synchronously.
+ *
+ * @author korat.team
+ *
+ */
+public class AsyncListenersExplorationTest extends BaseExplorationTest {
+
+    private static final String HEAP_ARRAY = "-c korat.examples.heaparray.HeapArray -a 5,5,5";
+
+    /**
+     * number of valid test cases the search has to find before the listener
+     * returns from its first notification, or 0
+     */
+    private int holdFirstUntil;
+
+    public void testBlock() throws Exception {
+        List<String> expected = runSession(HEAP_ARRAY, false);
+        assertEquals(1919, expected.size());
+        assertEquals(expected, runSession(HEAP_ARRAY
+                + " --asyncListeners block --asyncBuffer 4", true));
+    }
+
+    public void testSpill() throws Exception {
+        List<String> expected = runSession(HEAP_ARRAY, false);
+        assertEquals(expected, runSession(HEAP_ARRAY
+                + " --asyncListeners spill --asyncBuffer 4", true));
+    }
+
+    public void testDrop() throws Exception {
+        List<String> expected = runSession(HEAP_ARRAY, false);
+        // the buffer fills up while the listener is held
+        holdFirstUntil = 100;
+        List<String> notified = runSession(HEAP_ARRAY
+                + " --asyncListeners drop --asyncBuffer 4", false);
+        assertTrue(notified.size() < expected.size());
+        // test cases are dropped, but never reordered
+        int i = 0;
+        for (String testCase : notified) {
+            while (!expected.get(i).equals(testCase))
+                i++;
+            i++;
+        }
+    }
+
+    public void testParallel() throws Exception {
+        List<String> expected = runSession(HEAP_ARRAY, false);
+        List<String> notified = runSession(HEAP_ARRAY
+                + " --parallel 2 --asyncListeners block --asyncBuffer 4", false);
+        Object[] a = expected.toArray();
+        Object[] b = notified.toArray();
+        Arrays.sort(a);
+        Arrays.sort(b);
+        assertTrue(Arrays.equals(a, b));
+    }
+
+    public void testCVWrite() throws Exception {
+        File syncFile = File.createTempFile("korat", ".dat");
+        File asyncFile = File.createTempFile("korat", ".dat");
+        try {
+            runSession(HEAP_ARRAY + " --cvWrite --cvFile " + syncFile.getPath(), false);
+            runSession(HEAP_ARRAY + " --cvWrite --cvFile " + asyncFile.getPath()
+                    + " --asyncListeners spill --asyncBuffer 16", true);
+            assertTrue(Arrays.equals(readFile(syncFile), readFile(asyncFile)));
+        } finally {
+            syncFile.delete();
+            asyncFile.delete();
+        }
+    }
+
+    /**
+     * @return test cases (with their candidate vectors) the listener has been
+     *         notified of
+     */
+    private List<String> runSession(String cmdLine, final boolean slow)
+            throws Exception {
+        final KoratSession session = new KoratSession(cmdLine.split(" "));
+        final List<String> cases = new ArrayList<String>();
+        session.attachClient(new ITestCaseListener() {
+            public void notifyNewTestCase(Object testCase) {
+                if (slow && cases.size() % 100 == 0)
+                    sleep();
+                if (holdFirstUntil > 0 && cases.isEmpty())
+                    awaitValidCases(session, holdFirstUntil);
+                cases.add(testCase + " "
+                        + Arrays.toString(session.getTestCradle().getCandidateVector()));
+            }
+
+            public void notifyTestFinished(long numOfExplored,
+                    long numOfGenerated) {
+            }
+        });
+        session.run();
+        assertEquals(1919, session.getValidCasesGenerated());
+        return cases;
+    }
+
+    /**
+     * Waits until the search has found the given number of valid test cases,
+     * for at most 10 seconds.
+     */
+    private static void awaitValidCases(KoratSession session, int num) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (session.getValidCasesGenerated() < num
+                && System.currentTimeMillis() < deadline)
+            sleep();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] ret = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while (n < ret.length)
+                n += in.read(ret, n, ret.length - n);
+        } finally {
+            in.close();
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,55 @@
+package korat.exploration;
+
+import java.io.File;
+
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that the search gives the same results with instrumented bytecode
+ * written to and read from the bytecode cache.
+ * 
+ * @author korat.team
+ * 
+ */
+public class BytecodeCacheExplorationTest extends BaseExplorationTest {
+
+    private File dir;
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("korat", ".bc");
+        dir.delete();
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+    }
+
+    public void testBinaryTree() throws Exception {
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8";
+        runSession(cmdLine, 1430, 54418);
+        assertTrue(dir.list().length > 0);
+        runSession(cmdLine, 1430, 54418);
+    }
+
+    public void testHeapArray() throws Exception {
+        String cmdLine = "-c korat.examples.heaparray.HeapArray -a 6,6,6";
+        runSession(cmdLine, 13139, 64533);
+        assertTrue(dir.list().length > 0);
+        runSession(cmdLine, 13139, 64533);
+    }
+
+    private void runSession(String cmdLine, long valid, long explored)
+            throws Exception {
+        // a session has its own class loader, which hasn't loaded any of the
+        // classes yet
+        KoratSession session = new KoratSession((cmdLine + " --bytecodeCache " + dir.getPath()).split(" "));
+        session.run();
+        assertEquals(valid, session.getValidCasesGenerated());
+        assertEquals(explored, session.getTotalExplored());
+    }
+
+}
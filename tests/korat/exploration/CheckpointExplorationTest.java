@@ -0,0 +1,79 @@
+package korat.exploration;
+
+import java.io.File;
+
+/**
+ * Checks that a search resumed from a checkpoint explores exactly the 
+ * candidates the interrupted search did not.
+ * 
+ * @author korat.team
+ * 
+ */
+public class CheckpointExplorationTest extends BaseExplorationTest {
+
+    public void testBinaryTree() throws Exception {
+
+        File cp = File.createTempFile("korat", ".checkpoint");
+        cp.delete();
+        try {
+
+            String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 --checkpoint "
+                    + cp.getPath() + " --checkpointInterval 0 --maxStructs 700";
+            doTestForAllConfigs(cmdLine, 700, -1);
+            assertTrue(cp.exists());
+
+            cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 --checkpoint "
+                    + cp.getPath() + " --resume";
+            doTestForAllConfigs(cmdLine, 1430, 54418);
+            assertFalse(cp.exists());
+
+        } finally {
+            cp.delete();
+        }
+
+    }
+
+    public void testHeapArray() throws Exception {
+
+        File cp = File.createTempFile("korat", ".checkpoint");
+        cp.delete();
+        try {
+
+            String cmdLine = "-c korat.examples.heaparray.HeapArray -a 6,6,6 --checkpoint "
+                    + cp.getPath() + " --checkpointInterval 0 --maxStructs 5000";
+            doTestForAllConfigs(cmdLine, 5000, -1);
+
+            cmdLine = "-c korat.examples.heaparray.HeapArray -a 6,6,6 --checkpoint "
+                    + cp.getPath() + " --resume";
+            doTestForAllConfigs(cmdLine, 13139, 64533);
+
+        } finally {
+            cp.delete();
+        }
+
+    }
+
+    public void testParallel() throws Exception {
+
+        File cp = File.createTempFile("korat", ".checkpoint");
+        cp.delete();
+        try {
+
+            // both searches fall back to the sequential one
+            String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 -P 2 --checkpoint "
+                    + cp.getPath() + " --checkpointInterval 0 --maxStructs 700";
+            doTestForAllConfigs(cmdLine, 700, -1);
+            assertTrue(cp.exists());
+
+            cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 -P 2 --checkpoint "
+                    + cp.getPath() + " --resume";
+            doTestForAllConfigs(cmdLine, 1430, 54418);
+            assertFalse(cp.exists());
+
+        } finally {
+            cp.delete();
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package korat.exploration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import korat.instrumentation.IKoratCopyable;
+import korat.testing.ITestCaseListener;
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that the copies of test cases made by the generated copy methods
+ * stay the same as the test cases were when the listener was notified of
+ * them, and that copying doesn't change the search.
+ *
+ * @author korat.team
+ *
+ */
+public class CopyTestCaseExplorationTest extends BaseExplorationTest {
+
+    public void testSearchTree() throws Exception {
+        doTest("-c korat.examples.searchtree.SearchTree -a 5", 42, 6155);
+    }
+
+    public void testHeapArray() throws Exception {
+        // korat arrays of primitive values
+        doTest("-c korat.examples.heaparray.HeapArray -a 5,5,5", 1919, 8916);
+    }
+
+    public void testDoublyLinkedList() throws Exception {
+        // cyclic structures
+        doTest("-c korat.examples.doublylinkedlist.DoublyLinkedList -a 4", 37, 94);
+    }
+
+    public void testFibonacciHeap() throws Exception {
+        // cyclic structures with shared nodes
+        doTest("-c korat.examples.fibheap.FibonacciHeap -a 3", 136, 803);
+    }
+
+    public void testWithoutOption() throws Exception {
+        final KoratSession session = new KoratSession("-c korat.examples.searchtree.SearchTree -a 3".split(" "));
+        final List<Object> cases = new ArrayList<Object>();
+        session.attachClient(new ITestCaseListener() {
+            public void notifyNewTestCase(Object testCase) {
+                cases.add(testCase);
+                try {
+                    session.getTestCradle().copyTestCase(testCase);
+                    fail();
+                } catch (IllegalStateException e) {
+                }
+            }
+
+            public void notifyTestFinished(long numOfExplored,
+                    long numOfGenerated) {
+            }
+        });
+        session.run();
+        assertEquals(5, cases.size());
+        assertFalse(cases.get(0) instanceof IKoratCopyable);
+    }
+
+    private void doTest(String cmdLine, int validCases, int explored)
+            throws Exception {
+
+        final KoratSession session = new KoratSession((cmdLine + " --copyTestCases").split(" "));
+        final List<String> cases = new ArrayList<String>();
+        final List<Object> copies = new ArrayList<Object>();
+        session.attachClient(new ITestCaseListener() {
+            public void notifyNewTestCase(Object testCase) {
+                Object copy = session.getTestCradle().copyTestCase(testCase);
+                assertNotSame(testCase, copy);
+                assertSame(testCase.getClass(), copy.getClass());
+                cases.add(testCase.toString());
+                copies.add(copy);
+            }
+
+            public void notifyTestFinished(long numOfExplored,
+                    long numOfGenerated) {
+            }
+        });
+        session.run();
+
+        assertEquals(validCases, session.getValidCasesGenerated());
+        assertEquals(explored, session.getTotalExplored());
+        for (int i = 0; i < validCases; i++)
+            assertEquals(cases.get(i), copies.get(i).toString());
+
+    }
+
+}
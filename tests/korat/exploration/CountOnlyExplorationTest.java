@@ -0,0 +1,48 @@
+package korat.exploration;
+
+import korat.testing.impl.SizeCounts;
+import korat.testing.impl.TestCradle;
+
+/**
+ * Checks the totals and the numbers of valid structures of each size
+ * reported in count-only mode.
+ *
+ * @author korat.team
+ *
+ */
+public class CountOnlyExplorationTest extends BaseExplorationTest {
+
+    private static final long[] CATALAN = { 1, 1, 2, 5, 14, 42, 132, 429, 1430 };
+
+    public void testBinaryTree() throws Exception {
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 --countOnly";
+        doTestForAllConfigs(cmdLine, 1430, 54418);
+        SizeCounts sizes = TestCradle.getInstance().getSizeCounts();
+        assertEquals(8, sizes.getMaxSize());
+        assertEquals(1430, sizes.getCount(8));
+    }
+
+    public void testBinaryTreeAllSizes() throws Exception {
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,0,8 --countOnly";
+        doTestForAllConfigs(cmdLine, 2056, -1);
+        checkCatalan(TestCradle.getInstance().getSizeCounts());
+    }
+
+    public void testBinaryTreeAllSizesParallel() throws Exception {
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,0,8 --countOnly --parallel 3";
+        doTestForAllConfigs(cmdLine, 2056, -1);
+        checkCatalan(TestCradle.getInstance().getSizeCounts());
+    }
+
+    public void testHeapArray() throws Exception {
+        String cmdLine = "-c korat.examples.heaparray.HeapArray -a 6,6,6 --countOnly";
+        doTestForAllConfigs(cmdLine, 13139, 64533);
+    }
+
+    private void checkCatalan(SizeCounts sizes) {
+        assertEquals(CATALAN.length - 1, sizes.getMaxSize());
+        for (int i = 0; i < CATALAN.length; i++)
+            assertEquals(CATALAN[i], sizes.getCount(i));
+    }
+
+}
@@ -0,0 +1,91 @@
+package korat.exploration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that the search distributed over local worker JVMs explores exactly
+ * the same candidates as the sequential one.
+ * 
+ * @author korat.team
+ * 
+ */
+public class DistributedExplorationTest extends BaseExplorationTest {
+
+    public void testBinaryTree() throws Exception {
+
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 --distribute 2 --ranges 20";
+        doTestForAllConfigs(cmdLine, 1430, 54418);
+
+    }
+
+    public void testHeapArray() throws Exception {
+
+        String cmdLine = "-c korat.examples.heaparray.HeapArray -a 6,6,6 --distribute 2 --ranges 20";
+        doTestForAllConfigs(cmdLine, 13139, 64533);
+
+    }
+
+    public void testCVWrite() throws Exception {
+
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 6,6,6";
+        File sequential = File.createTempFile("korat", ".dat");
+        File distributed = File.createTempFile("korat", ".dat");
+        try {
+            runSession(cmdLine + " --cvWrite --cvFile " + sequential.getPath());
+            // falls back to the sequential search
+            runSession(cmdLine + " --distribute 2 --ranges 20 --cvWrite --cvFile "
+                    + distributed.getPath());
+            assertTrue(sequential.length() > 0);
+            assertTrue(Arrays.equals(readFile(sequential), readFile(distributed)));
+        } finally {
+            sequential.delete();
+            distributed.delete();
+        }
+
+    }
+
+    public void testMaxStructs() throws Exception {
+
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 --maxStructs 200";
+        KoratSession sequential = runSession(cmdLine.split(" "));
+        // falls back to the sequential search
+        KoratSession distributed = runSession((cmdLine
+                + " --distribute 2 --ranges 20").split(" "));
+        assertEquals(200, sequential.getValidCasesGenerated());
+        assertEquals(200, distributed.getValidCasesGenerated());
+        assertEquals(sequential.getTotalExplored(),
+                distributed.getTotalExplored());
+
+    }
+
+    private void runSession(String cmdLine) throws Exception {
+        KoratSession session = runSession(cmdLine.split(" "));
+        assertEquals(132, session.getValidCasesGenerated());
+        assertEquals(3653, session.getTotalExplored());
+    }
+
+    private static KoratSession runSession(String[] args) throws Exception {
+        KoratSession session = new KoratSession(args);
+        session.run();
+        return session;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] ret = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int off = 0;
+            while (off < ret.length)
+                off += in.read(ret, off, ret.length - off);
+        } finally {
+            in.close();
+        }
+        return ret;
+    }
+
+}
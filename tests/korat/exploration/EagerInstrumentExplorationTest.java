@@ -0,0 +1,37 @@
+package korat.exploration;
+
+import korat.loading.InstrumentingClassLoader;
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that the search gives the same results with the classes instrumented
+ * in parallel at startup.
+ * 
+ * @author korat.team
+ * 
+ */
+public class EagerInstrumentExplorationTest extends BaseExplorationTest {
+
+    public void testBinaryTree() throws Exception {
+        KoratSession session = runSession("-c korat.examples.binarytree.BinaryTree -a 8,8,8 --eagerInstrument 3");
+        assertEquals(1430, session.getValidCasesGenerated());
+        assertEquals(54418, session.getTotalExplored());
+    }
+
+    public void testHeapArray() throws Exception {
+        KoratSession session = runSession("-c korat.examples.heaparray.HeapArray -a 6,6,6 --eagerInstrument 3");
+        assertEquals(13139, session.getValidCasesGenerated());
+        assertEquals(64533, session.getTotalExplored());
+    }
+
+    private KoratSession runSession(String cmdLine) throws Exception {
+        // a session has its own class loader, which hasn't loaded any of the
+        // classes yet
+        KoratSession session = new KoratSession(cmdLine.split(" "));
+        session.run();
+        InstrumentingClassLoader loader = (InstrumentingClassLoader) session.getTestCradle().getClassLoader();
+        assertTrue(loader.hasInstrumentedClass(session.getConfig().className));
+        return session;
+    }
+
+}
@@ -16,6 +16,19 @@ public class ExplorationAllTests {
         suite.addTestSuite(DisjSetExplorationTest.class);
         suite.addTestSuite(BinomialHeapExplorationTest.class);
         suite.addTestSuite(SortedListExplorationTest.class);
+        suite.addTestSuite(ParallelExplorationTest.class);
+        suite.addTestSuite(DistributedExplorationTest.class);
+        suite.addTestSuite(CheckpointExplorationTest.class);
+        suite.addTestSuite(SessionExplorationTest.class);
+        suite.addTestSuite(CountOnlyExplorationTest.class);
+        suite.addTestSuite(SweepExplorationTest.class);
+        suite.addTestSuite(BytecodeCacheExplorationTest.class);
+        suite.addTestSuite(InstrumentedJarExplorationTest.class);
+        suite.addTestSuite(EagerInstrumentExplorationTest.class);
+        suite.addTestSuite(TraceBufferExplorationTest.class);
+        suite.addTestSuite(SerializationExplorationTest.class);
+        suite.addTestSuite(AsyncListenersExplorationTest.class);
+        suite.addTestSuite(CopyTestCaseExplorationTest.class);
         // $JUnit-END$
         // suite.addTestSuite(DagExplorationTest.class);
         // suite.addTestSuite(HashSetExplorationTest.class);
@@ -0,0 +1,80 @@
+package korat.exploration;
+
+import java.io.File;
+import java.util.jar.JarFile;
+
+import korat.examples.binarytree.BinaryTree;
+import korat.instrumentation.PreInstrumenter;
+import korat.loading.InstrumentingClassLoader;
+import korat.loading.filter.ExcludingPackageFilter;
+import korat.loading.filter.FilterManager;
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that the search gives the same results with the classes loaded from
+ * a jar instrumented ahead of time.
+ *
+ * @author korat.team
+ *
+ */
+public class InstrumentedJarExplorationTest extends BaseExplorationTest {
+
+    private File jar;
+
+    private ExcludingPackageFilter excludeFilter;
+
+    protected void setUp() throws Exception {
+        // root of the class path entry with the examples
+        File root = new File(BinaryTree.class.getResource("BinaryTree.class").toURI());
+        for (int i = 0; i < 4; i++)
+            root = root.getParentFile();
+
+        // manually instrumented example
+        excludeFilter = new ExcludingPackageFilter();
+        excludeFilter.addPackage("korat.examples.binarytree.manual");
+        FilterManager.addFilter(excludeFilter);
+
+        jar = File.createTempFile("korat", ".jar");
+        PreInstrumenter.instrument(new String[] { root.getPath() }, jar);
+    }
+
+    protected void tearDown() throws Exception {
+        FilterManager.removeFilter(excludeFilter);
+        if (jar != null)
+            jar.delete();
+    }
+
+    public void testGeneratedClasses() throws Exception {
+        JarFile jarFile = new JarFile(jar);
+        try {
+            assertNotNull(jarFile.getEntry("korat/examples/binarytree/BinaryTree$Node$Korat_left_setter.class"));
+            assertNotNull(jarFile.getEntry("korat/instrumentation/$koratcreated$/Korat_Array_int.class"));
+            assertNull(jarFile.getEntry("korat/examples/binarytree/manual/BinaryTree.class"));
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    public void testBinaryTree() throws Exception {
+        KoratSession session = runSession("-c korat.examples.binarytree.BinaryTree -a 8,8,8");
+        assertEquals(1430, session.getValidCasesGenerated());
+        assertEquals(54418, session.getTotalExplored());
+    }
+
+    public void testHeapArray() throws Exception {
+        KoratSession session = runSession("-c korat.examples.heaparray.HeapArray -a 6,6,6");
+        assertEquals(13139, session.getValidCasesGenerated());
+        assertEquals(64533, session.getTotalExplored());
+    }
+
+    private KoratSession runSession(String cmdLine) throws Exception {
+        // a session has its own class loader, which hasn't loaded any of the
+        // classes yet
+        KoratSession session = new KoratSession((cmdLine + " --instrumentedJar " + jar.getPath()).split(" "));
+        InstrumentingClassLoader loader = (InstrumentingClassLoader) session.getTestCradle().getClassLoader();
+        assertTrue(loader.hasInstrumentedClass(session.getConfig().className));
+        session.run();
+        return session;
+    }
+
+}
@@ -0,0 +1,33 @@
+package korat.exploration;
+
+/**
+ * Checks that parallel exploration explores exactly the same candidates as
+ * the sequential one.
+ * 
+ * @author korat.team
+ * 
+ */
+public class ParallelExplorationTest extends BaseExplorationTest {
+
+    public void testBinaryTree() throws Exception {
+
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 8,8,8 -P 4";
+        doTestForAllConfigs(cmdLine, 1430, 54418);
+
+    }
+
+    public void testHeapArray() throws Exception {
+
+        String cmdLine = "-c korat.examples.heaparray.HeapArray -a 6,6,6 -P 4";
+        doTestForAllConfigs(cmdLine, 13139, 64533);
+
+    }
+
+    public void testDisjSet() throws Exception {
+
+        String cmdLine = "-c korat.examples.disjset.DisjSet -a 4 -P 3";
+        doTestForAllConfigs(cmdLine, 914, 7915);
+
+    }
+
+}
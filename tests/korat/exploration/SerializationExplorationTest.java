@@ -0,0 +1,74 @@
+package korat.exploration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import korat.testing.ITestCaseListener;
+import korat.testing.impl.KoratSession;
+import korat.utils.cv.CVDeserializer;
+
+/**
+ * Checks that the test cases serialized as candidate vectors are read back
+ * the same as they were found by the search.
+ *
+ * @author korat.team
+ *
+ */
+public class SerializationExplorationTest extends BaseExplorationTest {
+
+    public void testHeapArray() throws Exception {
+        doTest("-c korat.examples.heaparray.HeapArray -a 5,5,5", 1919);
+    }
+
+    public void testBinomialHeap() throws Exception {
+        doTest("-c korat.examples.binheap.BinomialHeap -a 5", 936);
+    }
+
+    private void doTest(String cmdLine, int validCases) throws Exception {
+
+        File file = File.createTempFile("korat", ".kcs");
+        try {
+
+            final KoratSession session = new KoratSession((cmdLine
+                    + " --serialize " + file.getPath() + " --serializeCV").split(" "));
+            final List<int[]> cvs = new ArrayList<int[]>();
+            final List<String> cases = new ArrayList<String>();
+            session.attachClient(new ITestCaseListener() {
+                public void notifyNewTestCase(Object testCase) {
+                    cvs.add(session.getTestCradle().getCandidateVector());
+                    cases.add(testCase.toString());
+                }
+
+                public void notifyTestFinished(long numOfExplored,
+                        long numOfGenerated) {
+                }
+            });
+            session.run();
+            assertEquals(validCases, session.getValidCasesGenerated());
+            // header and a few bytes per test case
+            assertTrue(file.length() < 32 + 4 * validCases);
+
+            CVDeserializer in = new KoratSession(cmdLine.split(" ")).readTestCases(file.getPath());
+            try {
+                assertEquals(validCases, in.getNumTestCases());
+                for (int i = 0; i < validCases; i++) {
+                    assertTrue(Arrays.equals(cvs.get(i), in.readCV()));
+                    // every other test case is built, so fields changed by
+                    // skipped ones have to be set as well
+                    if (i % 2 == 1)
+                        assertEquals(cases.get(i), in.buildTestCase().toString());
+                }
+                assertNull(in.readObject());
+            } finally {
+                in.close();
+            }
+
+        } finally {
+            file.delete();
+        }
+
+    }
+
+}
@@ -0,0 +1,54 @@
+package korat.exploration;
+
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that searches in independent sessions can run at the same time
+ * without affecting each other.
+ *
+ * @author korat.team
+ *
+ */
+public class SessionExplorationTest extends BaseExplorationTest {
+
+    public void testConcurrentSessions() throws Exception {
+
+        final KoratSession binaryTree = new KoratSession(
+                "-c korat.examples.binarytree.BinaryTree -a 8,8,8".split(" "));
+        final KoratSession heapArray = new KoratSession(
+                "-c korat.examples.heaparray.HeapArray -a 6,6,6".split(" "));
+
+        final Throwable[] errors = new Throwable[2];
+        Thread t1 = new Thread() {
+            public void run() {
+                try {
+                    binaryTree.run();
+                } catch (Throwable e) {
+                    errors[0] = e;
+                }
+            }
+        };
+        Thread t2 = new Thread() {
+            public void run() {
+                try {
+                    heapArray.run();
+                } catch (Throwable e) {
+                    errors[1] = e;
+                }
+            }
+        };
+        t1.start();
+        t2.start();
+        t1.join();
+        t2.join();
+
+        assertNull(errors[0]);
+        assertNull(errors[1]);
+        assertEquals(1430, binaryTree.getValidCasesGenerated());
+        assertEquals(54418, binaryTree.getTotalExplored());
+        assertEquals(13139, heapArray.getValidCasesGenerated());
+        assertEquals(64533, heapArray.getTotalExplored());
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package korat.exploration;
+
+/**
+ * Checks that a size sweep explores the state spaces of all sizes in the
+ * range (the totals are summed over all sizes).
+ * 
+ * @author korat.team
+ * 
+ */
+public class SweepExplorationTest extends BaseExplorationTest {
+
+    public void testBinaryTree() throws Exception {
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a size,size,size --sweep 1..8";
+        doTestForAllConfigs(cmdLine, 2055, 73438);
+    }
+
+    public void testBinaryTreeFirstArg() throws Exception {
+        String cmdLine = "-c korat.examples.binarytree.BinaryTree -a 1 --sweep 1..8";
+        doTestForAllConfigs(cmdLine, 2055, 73438);
+    }
+
+}
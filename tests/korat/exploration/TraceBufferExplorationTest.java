@@ -0,0 +1,79 @@
+package korat.exploration;
+
+import korat.instrumentation.InstrumentationManager;
+import korat.testing.impl.KoratSession;
+
+/**
+ * Checks that the search gives the same results with the getters that store
+ * field accesses to the trace buffer, and with the getters that also skip
+ * fields already accessed by the predicate.
+ * 
+ * @author korat.team
+ * 
+ */
+public class TraceBufferExplorationTest extends BaseExplorationTest {
+
+    public void testBinaryTree() throws Exception {
+        KoratSession session = runSession("-c korat.examples.binarytree.BinaryTree -a 8,8,8 --traceBuffer");
+        assertEquals(1430, session.getValidCasesGenerated());
+        assertEquals(54418, session.getTotalExplored());
+    }
+
+    public void testHeapArray() throws Exception {
+        KoratSession session = runSession("-c korat.examples.heaparray.HeapArray -a 6,6,6 --traceBuffer");
+        assertEquals(13139, session.getValidCasesGenerated());
+        assertEquals(64533, session.getTotalExplored());
+    }
+
+    public void testParallel() throws Exception {
+        KoratSession session = runSession("-c korat.examples.binarytree.BinaryTree -a 8,8,8 --traceBuffer --parallel 2");
+        assertEquals(1430, session.getValidCasesGenerated());
+        assertEquals(54418, session.getTotalExplored());
+    }
+
+    public void testAfterDefaultMode() throws Exception {
+        // instruments the classes without the trace buffer
+        KoratSession session = new KoratSession("-c korat.examples.binarytree.BinaryTree -a 5".split(" "));
+        session.run();
+        assertEquals(42, session.getValidCasesGenerated());
+        session = runSession("-c korat.examples.binarytree.BinaryTree -a 5 --traceBuffer");
+        assertEquals(42, session.getValidCasesGenerated());
+    }
+
+    public void testFieldEpochsAfterTraceBuffer() throws Exception {
+        // instruments the classes with the trace buffer, but without epochs
+        runSession("-c korat.examples.heaparray.HeapArray -a 4,4,4 --traceBuffer");
+        KoratSession session = runSession("-c korat.examples.heaparray.HeapArray -a 4,4,4 --fieldEpochs");
+        Class clz = session.getTestCradle().getClassLoader().loadClass(session.getConfig().className);
+        assertNotNull(clz.getDeclaredField(InstrumentationManager.getEpochFieldName("size")));
+    }
+
+    public void testFieldEpochsFibonacciHeap() throws Exception {
+        KoratSession session = runSession("-c korat.examples.fibheap.FibonacciHeap -a 4 --fieldEpochs");
+        assertEquals(2310, session.getValidCasesGenerated());
+        assertEquals(8634, session.getTotalExplored());
+    }
+
+    public void testFieldEpochsRedBlackTree() throws Exception {
+        KoratSession session = runSession("-c korat.examples.redblacktree.RedBlackTree -a 6 --fieldEpochs");
+        assertEquals(20, session.getValidCasesGenerated());
+        assertEquals(16487, session.getTotalExplored());
+    }
+
+    public void testFieldEpochsHeapArray() throws Exception {
+        KoratSession session = runSession("-c korat.examples.heaparray.HeapArray -a 6,6,6 --fieldEpochs");
+        assertEquals(13139, session.getValidCasesGenerated());
+        assertEquals(64533, session.getTotalExplored());
+        Class clz = session.getTestCradle().getClassLoader().loadClass(session.getConfig().className);
+        assertNotNull(clz.getDeclaredField(InstrumentationManager.getEpochFieldName("size")));
+    }
+
+    private KoratSession runSession(String cmdLine) throws Exception {
+        KoratSession session = new KoratSession(cmdLine.split(" "));
+        session.run();
+        Class clz = session.getTestCradle().getClassLoader().loadClass(session.getConfig().className);
+        assertNotNull(clz.getDeclaredField(InstrumentationManager.TRACE_FIELD_NAME));
+        return session;
+    }
+
+}
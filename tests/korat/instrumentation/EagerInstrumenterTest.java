@@ -0,0 +1,53 @@
+package korat.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javassist.ClassPool;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the classes instrumented in parallel, each thread in its own
+ * class pool, are the same as the classes instrumented one at a time when
+ * loaded, and that superclasses come before their subclasses.
+ *
+ * @author korat.team
+ */
+public class EagerInstrumenterTest extends TestCase {
+
+    public void testBinaryTree() throws Exception {
+        doTest("korat.examples.binarytree.BinaryTree",
+                "korat.examples.binarytree.BinaryTree$Node$Korat_left_setter");
+    }
+
+    public void testHeapArray() throws Exception {
+        doTest("korat.examples.heaparray.HeapArray",
+                ArrayGenerator.getArrayClassName("int"));
+    }
+
+    public void testRedBlackTree() throws Exception {
+        doTest("korat.examples.redblacktree.RedBlackTree",
+                "korat.examples.redblacktree.RedBlackTree$Node");
+    }
+
+    private void doTest(String className, String expectedClass) throws Exception {
+        EagerInstrumenter instrumenter = new EagerInstrumenter(className);
+        assertEquals(className, instrumenter.getClassNames().get(0));
+
+        Map<String, byte[]> classes = instrumenter.instrument(3);
+        assertTrue(classes.containsKey(className));
+        assertTrue(classes.containsKey(expectedClass));
+
+        List<String> order = new ArrayList<String>(classes.keySet());
+        IInstrumenter lazy = InstrumentationManager.getInstrumenter();
+        for (String name : order) {
+            assertTrue(name, Arrays.equals(lazy.getBytecode(name), classes.get(name)));
+            String superclass = ClassPool.getDefault().get(name).getClassFile2().getSuperclass();
+            if (classes.containsKey(superclass))
+                assertTrue(name, order.indexOf(superclass) < order.indexOf(name));
+        }
+    }
+
+}
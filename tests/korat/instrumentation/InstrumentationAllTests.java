@@ -15,6 +15,7 @@ public class InstrumentationAllTests {
         TestSuite suite = new TestSuite("Test for korat.instrumentation");
         // $JUnit-BEGIN$
         suite.addTestSuite(ArrayInstrumentationTest.class);
+        suite.addTestSuite(EagerInstrumenterTest.class);
         suite.addTestSuite(TypeArrayGenerator_DynamicTest.class);
         suite.addTestSuite(TypeArrayGenerator_StaticTest.class);
         // $JUnit-END$
@@ -5,12 +5,15 @@ import static korat.utils.ReflectionUtils.getFieldWithAccess;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 import junit.framework.TestCase;
 import korat.instrumentation.ArrayGenerator;
 import korat.instrumentation.IKoratArray;
+import korat.instrumentation.KoratArrayManager;
 import korat.instrumentation.Setter;
+import korat.testing.FieldTrace;
 import korat.testing.ITester;
 public class TypeArrayGenerator_DynamicTest extends TestCase {
     
@@ -44,6 +47,10 @@ public class TypeArrayGenerator_DynamicTest extends TestCase {
         public void notifyFieldAccess(Object obj, String field) {
         }
 
+        public FieldTrace getFieldTrace() {
+            return null;
+        }
+
         
     }
 
@@ -223,6 +230,55 @@ public class TypeArrayGenerator_DynamicTest extends TestCase {
         
     }
     
+    public void testArray_ToArray() throws Exception {
+
+        for (int i = 0; i < maxArraySize; i++)
+            set.invoke(array, new Object[] { i, (char) ('A' + i) });
+        setLength.invoke(array, new Object[] { 2 });
+
+        Object copy = array.toArray();
+        assertEquals(arrayClass, copy.getClass());
+        assertEquals(2, ((Object[]) copy).length);
+        assertEquals('A', ((Object[]) copy)[0]);
+        assertEquals('B', ((Object[]) copy)[1]);
+        assertNotSame(values.get(array), copy);
+        assertEquals("Copying is not a field access", 0,
+                myTester.getAccessedList().length);
+
+    }
+
+    public void testArray_PrimitiveAccessors() throws Exception {
+
+        Class<?> ka = new ArrayGenerator(int[].class).getArrayClass();
+        IKoratArray.OfInt ints = (IKoratArray.OfInt) ka.getConstructor(
+                new Class[] { int.class }).newInstance(new Object[] { 3 });
+        ints.initialize(myTester);
+        Method setInt = ka.getDeclaredMethod("set", new Class[] { int.class,
+                int.class });
+        for (int i = 0; i < 3; i++)
+            setInt.invoke(ints, new Object[] { i, 10 * i });
+
+        assertEquals(20, ints.getInt(2));
+        assertTrue(Arrays.equals(new int[] { 0, 10, 20 },
+                (int[]) ints.toArray()));
+
+        int[] dest = new int[] { -1, -1, -1, -1 };
+        ints.copyTo(dest, 1);
+        assertTrue(Arrays.equals(new int[] { -1, 0, 10, 20 }, dest));
+
+        assertEquals("Reading values is not a field access", 0,
+                myTester.getAccessedList().length);
+        assertTrue(Arrays.equals(new Object[] { 0, 10, 20 },
+                KoratArrayManager.getArrayValues(ints)));
+
+        try {
+            ints.getInt(3);
+            fail("Getting value out of bounds is not allowed");
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+    }
+
     public void testArray_TestSetters() throws Exception {
 
         int len = (Integer) getLength.invoke(array, new Object[0] );
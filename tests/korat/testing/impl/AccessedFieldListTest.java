@@ -0,0 +1,136 @@
+package korat.testing.impl;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import korat.testing.impl.StateSpaceExplorer.AccessedFieldList;
+
+/**
+ * Checks the accessed field list of <code>StateSpaceExplorer</code> and the
+ * class domain bounds it keeps for the fields in the list.
+ *
+ * @author korat.team
+ *
+ */
+public class AccessedFieldListTest extends TestCase {
+
+    /*
+     * value 0 of every field is null, the other ones are objects of class
+     * domains 0 and 1
+     */
+    private static final int[][] valueClassDomain = { { -1, 0, 0 },
+            { -1, 0, 0 }, { -1, 1, 1 }, { -1, 0, 1 } };
+
+    private static final int[][] valueClassDomainIndex = { { -1, 0, 1 },
+            { -1, 0, 1 }, { -1, 0, 2 }, { -1, 2, 1 } };
+
+    private int[] cv;
+
+    private AccessedFieldList list;
+
+    protected void setUp() throws Exception {
+        cv = new int[valueClassDomain.length];
+        list = new AccessedFieldList(cv, valueClassDomain,
+                valueClassDomainIndex, 2);
+    }
+
+    public void testAddGet() {
+        assertTrue(list.isEmpty());
+        assertTrue(list.add(2));
+        assertTrue(list.add(0));
+        assertFalse(list.add(2));
+        assertTrue(list.add(3));
+        assertEquals(3, list.numberOfElements());
+        assertEquals(2, list.get(0));
+        assertEquals(0, list.get(1));
+        assertEquals(3, list.get(2));
+        assertTrue(list.contains(0));
+        assertFalse(list.contains(1));
+        assertTrue(Arrays.equals(new int[] { 2, 0, 3 }, list.toArray()));
+    }
+
+    public void testRemovalOrder() {
+        list.add(1);
+        list.add(3);
+        list.add(0);
+        assertEquals(0, list.removeLast());
+        assertFalse(list.contains(0));
+        assertTrue(list.add(0));
+        assertEquals(0, list.removeLast());
+        assertEquals(3, list.removeLast());
+        assertEquals(1, list.removeLast());
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(1));
+    }
+
+    public void testBounds() {
+        cv[0] = 1; // cd 0, index 0
+        cv[3] = 1; // cd 0, index 2
+        cv[2] = 2; // cd 1, index 2
+        list.add(0);
+        list.updateBounds();
+        assertEquals(0, list.getMaxClassDomainIndex(0));
+        assertEquals(-1, list.getMaxClassDomainIndex(1));
+        list.add(3);
+        list.add(2);
+        list.updateBounds();
+        assertEquals(2, list.getMaxClassDomainIndex(0));
+        assertEquals(2, list.getMaxClassDomainIndex(1));
+
+        list.removeLast();
+        assertEquals(2, list.getMaxClassDomainIndex(0));
+        assertEquals(-1, list.getMaxClassDomainIndex(1));
+        list.removeLast();
+        assertEquals(0, list.getMaxClassDomainIndex(0));
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(0));
+        assertEquals(-1, list.getMaxClassDomainIndex(0));
+    }
+
+    public void testSet() {
+        cv[0] = 2; // cd 0, index 1
+        cv[1] = 1; // cd 0, index 0
+        cv[2] = 1; // cd 1, index 0
+        cv[3] = 2; // cd 1, index 1
+        list.add(0);
+        list.add(2);
+        list.updateBounds();
+        assertEquals(1, list.getMaxClassDomainIndex(0));
+        assertEquals(0, list.getMaxClassDomainIndex(1));
+
+        // replaces the field that holds the bound of class domain 0
+        assertEquals(1, list.set(0, 1));
+        assertEquals(1, list.get(0));
+        assertEquals(2, list.get(1));
+        assertTrue(list.contains(1));
+        assertFalse(list.contains(0));
+        list.updateBounds();
+        assertEquals(0, list.getMaxClassDomainIndex(0));
+        assertEquals(0, list.getMaxClassDomainIndex(1));
+
+        // replaces a field that is not included in the bounds yet
+        list.add(0);
+        assertEquals(3, list.set(2, 3));
+        list.updateBounds();
+        assertEquals(0, list.getMaxClassDomainIndex(0));
+        assertEquals(1, list.getMaxClassDomainIndex(1));
+
+        try {
+            list.set(0, 2);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // pops restore the bounds of the replaced fields
+        assertEquals(3, list.removeLast());
+        assertEquals(0, list.getMaxClassDomainIndex(1));
+        assertEquals(2, list.removeLast());
+        assertEquals(-1, list.getMaxClassDomainIndex(1));
+        assertEquals(1, list.removeLast());
+        assertEquals(-1, list.getMaxClassDomainIndex(0));
+        assertTrue(list.isEmpty());
+    }
+
+}
@@ -16,6 +16,9 @@ public class CVAllTests {
         suite.addTestSuite(CVDeltaTest.class);
         suite.addTestSuite(CVDeltaReadersTest.class);
         suite.addTestSuite(CVReadersTest.class);
+        suite.addTestSuite(CVCodecTest.class);
+        suite.addTestSuite(CVLayoutTest.class);
+        suite.addTestSuite(CVScannerTest.class);
         // $JUnit-END$
 
         return suite;
@@ -0,0 +1,122 @@
+package korat.utils.cv;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Writes candidate vectors with each codec and block compressor, and reads
+ * them back with the reader and the finder of the codec file format.
+ *
+ * @author korat.team
+ *
+ */
+public class CVCodecTest extends TestCase {
+
+    private static final int[] domainSizes = { 1, 2, 2, 3, 5, 8, 9, 200, 1, 4, 17, 2 };
+
+    private String fileName = "cand_codec_test.dat";
+
+    private int[][] vectors;
+
+    private boolean[] oks;
+
+    @Override
+    protected void setUp() throws Exception {
+        Random r = new Random(7);
+        vectors = new int[50][domainSizes.length];
+        oks = new boolean[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            // some vectors end with zeros
+            int n = r.nextInt(domainSizes.length + 1);
+            for (int j = 0; j < n; j++)
+                vectors[i][j] = r.nextInt(domainSizes[j]);
+            oks[i] = r.nextBoolean();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new File(fileName).delete();
+    }
+
+    public void testFixed() throws Exception {
+        doTest(CVCodec.FIXED, CVBlockCompressor.NONE, 7);
+    }
+
+    public void testWidths() throws Exception {
+        doTest(CVCodec.WIDTHS, CVBlockCompressor.NONE, 7);
+    }
+
+    public void testZeros() throws Exception {
+        doTest(CVCodec.ZEROS, CVBlockCompressor.NONE, 1);
+    }
+
+    public void testZerosDeflate() throws Exception {
+        doTest(CVCodec.ZEROS, CVBlockCompressor.DEFLATE, 16);
+    }
+
+    public void testWidthsDeflateOneBlock() throws Exception {
+        doTest(CVCodec.WIDTHS, CVBlockCompressor.DEFLATE,
+                CVWriterCodec.DEFAULT_BLOCK_SIZE);
+    }
+
+    public void testHeader() throws Exception {
+        doTest(CVCodec.FIXED, CVBlockCompressor.DEFLATE, 10);
+        assertTrue(CVCodecHeader.isCodecFile(fileName));
+        assertSame(CVFactoryCodec.getInstance(), CVFactory.getCVFactory(fileName));
+        int[] widths = CVCodec.getWidths(CVCodec.WIDTHS,
+                CVLayout.forDomainSizes(domainSizes));
+        assertEquals(0, widths[0]);
+        assertEquals(1, widths[1]);
+        assertEquals(2, widths[3]);
+        assertEquals(8, widths[7]);
+        assertEquals(5, widths[10]);
+    }
+
+    private void doTest(String codec, String compressor, int blockSize)
+            throws Exception {
+        ICVWriter writer = new CVWriterCodec(fileName, codec, compressor,
+                CVLayout.forDomainSizes(domainSizes), blockSize);
+        for (int i = 0; i < vectors.length; i++)
+            writer.writeCV(vectors[i], oks[i]);
+        writer.close();
+
+        ICVReader reader = new CVReaderCodec(fileName);
+        assertEquals(vectors.length, reader.getNumCVs());
+        assertEquals(domainSizes.length, reader.getNumElemsPerCV());
+        for (int i = 0; i < vectors.length; i++) {
+            assertTrue(reader.hasNext());
+            assertTrue(Arrays.equals(vectors[i], reader.readCV()));
+            assertEquals(oks[i], reader.isPredicateOK());
+        }
+        assertFalse(reader.hasNext());
+        assertNull(reader.readCV());
+        reader.close();
+
+        ICVFinder finder = new CVFinderCodec(fileName);
+        assertEquals(vectors.length, finder.getNumCVs());
+        Random r = new Random(3);
+        for (int k = 0; k < 100; k++) {
+            int i = r.nextInt(vectors.length);
+            assertTrue(Arrays.equals(vectors[i], finder.readCV(i)));
+            assertEquals(oks[i], finder.isPredicateOK());
+        }
+        long[] idxs = finder.find(new int[][] { vectors[30], vectors[2],
+                new int[] { 0, 1, 1, 2, 4, 7, 8, 199, 0, 3, 16, 1 } });
+        assertEquals(firstIndexOf(vectors[30]), idxs[0]);
+        assertEquals(firstIndexOf(vectors[2]), idxs[1]);
+        assertEquals(-1, idxs[2]);
+        finder.close();
+    }
+
+    private long firstIndexOf(int[] cv) {
+        for (int i = 0; i < vectors.length; i++)
+            if (Arrays.equals(vectors[i], cv))
+                return i;
+        return -1;
+    }
+
+}
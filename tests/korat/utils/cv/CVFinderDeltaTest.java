@@ -165,8 +165,23 @@ public class CVFinderDeltaTest extends TestCase {
             else 
                 assertEquals(-1, fr.toIdx);
         }
-        
-        
+
+        // all at once, in reverse order, with vectors that are not in the file
+        int[][] cvs = new int[vectors.length + n + 1][];
+        for (int i = 0; i < vectors.length; i++)
+            cvs[i] = vectors[vectors.length - 1 - i];
+        for (int i = 0; i < n; i++)
+            cvs[vectors.length + i] = inBetweenVectors[i];
+        cvs[cvs.length - 1] = vectors[3];
+        long[] idxs = cvFinder.find(cvs);
+        for (int i = 0; i < vectors.length; i++)
+            assertEquals(vectors.length - 1 - i, idxs[i]);
+        for (int i = 0; i < n; i++)
+            assertEquals(-1, idxs[vectors.length + i]);
+        assertEquals(3, idxs[cvs.length - 1]);
+        assertEquals(6, cvFinder.find(vectors[6]));
+
+
         cvFinder.close();
         //delete temp files
         new File(fileName).delete();
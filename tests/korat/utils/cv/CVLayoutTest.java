@@ -0,0 +1,126 @@
+package korat.utils.cv;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import korat.config.ConfigManager;
+import korat.utils.io.ByteArrayBitReader;
+import korat.utils.io.ByteArrayBitWriter;
+
+/**
+ * Writes candidate vectors whose elements have different numbers of bits
+ * with the plain and the delta file format, and reads them back with their
+ * readers and finders.
+ *
+ * @author korat.team
+ *
+ */
+public class CVLayoutTest extends TestCase {
+
+    private static final int[] domainSizes = { 1, 2, 2, 3, 5, 8, 9, 200, 1, 4, 17, 2 };
+
+    private String fileName = "cand_layout_test.dat";
+
+    private int[][] vectors;
+
+    private boolean[] oks;
+
+    private int fullFormatRatio;
+
+    @Override
+    protected void setUp() throws Exception {
+        fullFormatRatio = ConfigManager.getInstance().cvFullFormatRatio;
+        Random r = new Random(11);
+        vectors = new int[60][domainSizes.length];
+        oks = new boolean[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            // consecutive vectors differ, as explored ones do
+            do {
+                int n = r.nextInt(domainSizes.length + 1);
+                for (int j = 0; j < domainSizes.length; j++)
+                    vectors[i][j] = j < n ? r.nextInt(domainSizes[j]) : 0;
+            } while (i > 0 && Arrays.equals(vectors[i], vectors[i - 1]));
+            oks[i] = r.nextBoolean();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ConfigManager.getInstance().cvFullFormatRatio = fullFormatRatio;
+        new File(fileName).delete();
+        new File(CVWriterDelta.getDeltaFileName(fileName)).delete();
+    }
+
+    public void testWidths() throws Exception {
+        CVLayout layout = CVLayout.forDomainSizes(domainSizes);
+        assertEquals(domainSizes.length, layout.getNumElemsPerCV());
+        assertEquals(0, layout.getWidth(0));
+        assertEquals(1, layout.getWidth(1));
+        assertEquals(2, layout.getWidth(3));
+        assertEquals(8, layout.getWidth(7));
+        assertEquals(5, layout.getWidth(10));
+        assertEquals(8, layout.getMaxWidth());
+        assertEquals(30, layout.getCVSizeInBits());
+        assertFalse(layout.isUniform());
+
+        layout = CVLayout.forMaxElem(10, 9);
+        assertEquals(4, layout.getMaxWidth());
+        assertEquals(40, layout.getCVSizeInBits());
+        assertTrue(layout.isUniform());
+    }
+
+    public void testHeader() throws Exception {
+        // uniform layout is written as number of bits per element
+        ByteArrayBitWriter out = new ByteArrayBitWriter(16);
+        CVLayout.forMaxElem(10, 9).write(out);
+        out.flush();
+        ByteArrayBitReader in = new ByteArrayBitReader(out.toByteArray());
+        assertEquals(10, in.readInt());
+        assertEquals(4, in.readInt());
+
+        out.reset();
+        CVLayout layout = CVLayout.forDomainSizes(domainSizes);
+        layout.write(out);
+        out.flush();
+        assertEquals(8 + domainSizes.length, out.toByteArray().length);
+        CVLayout read = CVLayout.read(new ByteArrayBitReader(out.toByteArray()));
+        assertTrue(Arrays.equals(layout.getWidths(), read.getWidths()));
+    }
+
+    public void testPlain() throws Exception {
+        doTest(CVFactory.getInstance());
+    }
+
+    public void testDelta() throws Exception {
+        ConfigManager.getInstance().cvFullFormatRatio = 7;
+        doTest(CVFactoryDelta.getInstance());
+    }
+
+    private void doTest(ICVFactory factory) throws Exception {
+        ICVWriter writer = factory.createCVWriter(fileName,
+                CVLayout.forDomainSizes(domainSizes));
+        for (int i = 0; i < vectors.length; i++)
+            writer.writeCV(vectors[i], oks[i]);
+        writer.close();
+
+        ICVReader reader = factory.createCVReader(fileName);
+        assertEquals(vectors.length, reader.getNumCVs());
+        assertEquals(domainSizes.length, reader.getNumElemsPerCV());
+        for (int i = 0; i < vectors.length; i++) {
+            assertTrue(Arrays.equals(vectors[i], reader.readCV()));
+            assertEquals(oks[i], reader.isPredicateOK());
+        }
+        reader.close();
+
+        ICVFinder finder = factory.createCVFinder(fileName);
+        assertEquals(vectors.length, finder.getNumCVs());
+        for (int i = vectors.length - 1; i >= 0; i -= 3) {
+            assertTrue(Arrays.equals(vectors[i], finder.readCV(i)));
+            assertEquals(oks[i], finder.isPredicateOK());
+        }
+        finder.close();
+    }
+
+}
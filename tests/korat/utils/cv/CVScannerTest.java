@@ -0,0 +1,150 @@
+package korat.utils.cv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import korat.config.ConfigManager;
+
+/**
+ * Writes candidate vectors with each file format, and reads them back with
+ * readers that start in the middle of the file and with
+ * <code>CVScanner</code>.
+ *
+ * @author korat.team
+ *
+ */
+public class CVScannerTest extends TestCase {
+
+    private static final int[] domainSizes = { 3, 2, 5, 9, 1, 4, 17, 2 };
+
+    private String fileName = "cand_scanner_test.dat";
+
+    private int[][] vectors;
+
+    private boolean[] oks;
+
+    private int fullFormatRatio;
+
+    @Override
+    protected void setUp() throws Exception {
+        fullFormatRatio = ConfigManager.getInstance().cvFullFormatRatio;
+        Random r = new Random(5);
+        vectors = new int[500][domainSizes.length];
+        oks = new boolean[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            // consecutive vectors differ, as explored ones do
+            do {
+                int n = r.nextInt(domainSizes.length + 1);
+                for (int j = 0; j < domainSizes.length; j++)
+                    vectors[i][j] = j < n ? r.nextInt(domainSizes[j]) : 0;
+            } while (i > 0 && Arrays.equals(vectors[i], vectors[i - 1]));
+            oks[i] = r.nextBoolean();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ConfigManager.getInstance().cvFullFormatRatio = fullFormatRatio;
+        new File(fileName).delete();
+        new File(CVWriterDelta.getDeltaFileName(fileName)).delete();
+    }
+
+    public void testPlain() throws Exception {
+        write(new CVWriter(fileName, CVLayout.forDomainSizes(domainSizes)));
+        doTest(CVFactory.getInstance(), 1);
+    }
+
+    public void testDelta() throws Exception {
+        ConfigManager.getInstance().cvFullFormatRatio = 7;
+        write(new CVWriterDelta(fileName, CVLayout.forDomainSizes(domainSizes)));
+        doTest(CVFactoryDelta.getInstance(), 7);
+    }
+
+    public void testDeltaEndsAtRestart() throws Exception {
+        // the last restart point is the end of the file
+        ConfigManager.getInstance().cvFullFormatRatio = 5;
+        write(new CVWriterDelta(fileName, CVLayout.forDomainSizes(domainSizes)));
+        doTest(CVFactoryDelta.getInstance(), 5);
+    }
+
+    public void testCodec() throws Exception {
+        write(new CVWriterCodec(fileName, CVCodec.ZEROS,
+                CVBlockCompressor.DEFLATE, CVLayout.forDomainSizes(domainSizes), 16));
+        doTest(CVFactoryCodec.getInstance(), 16);
+    }
+
+    public void testFailure() throws Exception {
+        write(new CVWriter(fileName, CVLayout.forDomainSizes(domainSizes)));
+        CVScanner scanner = new CVScanner(fileName, CVFactory.getInstance());
+        try {
+            scanner.scan(new ICVVisitor() {
+                public void visitCV(long idx, int[] cv, boolean predicateOK)
+                        throws IOException {
+                    if (idx == 123)
+                        throw new IOException("stop");
+                }
+            }, 3);
+            fail();
+        } catch (IOException e) {
+            assertEquals("stop", e.getMessage());
+        }
+    }
+
+    private void write(ICVWriter writer) throws IOException {
+        for (int i = 0; i < vectors.length; i++)
+            writer.writeCV(vectors[i], oks[i]);
+        writer.close();
+    }
+
+    private void doTest(ICVFactory factory, int restartInterval)
+            throws Exception {
+        // readers that start in the middle of the file, at restart points
+        // and next to them
+        List<Integer> starts = new ArrayList<Integer>();
+        for (int from = 0; from <= vectors.length; from += 13)
+            starts.add(from);
+        for (int r = restartInterval; r <= vectors.length; r += restartInterval)
+            for (int from = r - 1; from <= Math.min(r + 1, vectors.length); from++)
+                starts.add(from);
+        for (int from : starts) {
+            ICVReader reader = factory.createCVReader(fileName, from);
+            assertEquals(restartInterval, reader.getRestartInterval());
+            assertEquals(from, reader.getNumCVsRead());
+            for (int i = from; i < Math.min(from + 20, vectors.length); i++) {
+                assertTrue(reader.hasNext());
+                assertTrue(Arrays.equals(vectors[i], reader.readCV()));
+                assertEquals(oks[i], reader.isPredicateOK());
+            }
+            reader.close();
+        }
+
+        CVScanner scanner = new CVScanner(fileName, factory);
+        assertEquals(vectors.length, scanner.getNumCVs());
+        long[] segments = scanner.getSegments(10);
+        assertTrue(segments.length <= 11);
+        assertEquals(0, segments[0]);
+        assertEquals(vectors.length, segments[segments.length - 1]);
+        for (int i = 0; i < segments.length - 1; i++)
+            assertEquals(0, segments[i] % restartInterval);
+
+        final int[][] read = new int[vectors.length][];
+        final boolean[] readOKs = new boolean[vectors.length];
+        scanner.scan(new ICVVisitor() {
+            public void visitCV(long idx, int[] cv, boolean predicateOK) {
+                assertNull(read[(int) idx]);
+                read[(int) idx] = cv.clone();
+                readOKs[(int) idx] = predicateOK;
+            }
+        }, 3);
+        for (int i = 0; i < vectors.length; i++) {
+            assertTrue(Arrays.equals(vectors[i], read[i]));
+            assertEquals(oks[i], readOKs[i]);
+        }
+    }
+
+}
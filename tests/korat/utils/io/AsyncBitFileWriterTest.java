@@ -0,0 +1,80 @@
+package korat.utils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that <code>AsyncBitFileWriter</code> writes the same bytes as
+ * <code>BitOutputStream</code>.
+ *
+ * @author korat.team
+ *
+ */
+public class AsyncBitFileWriterTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("korat", ".dat");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testRandomWrites() throws IOException {
+        doTest(AsyncBitFileWriter.DEFAULT_BLOCK_SIZE, 10000, 1);
+    }
+
+    public void testSmallBlocks() throws IOException {
+        // the writer thread is given a new block every few writes
+        doTest(16, 10000, 2);
+    }
+
+    public void testPartialByte() throws IOException {
+        doTest(8, 3, 3);
+    }
+
+    private void doTest(int blockSize, int numWrites, long seed)
+            throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BitOutputStream expected = new BitOutputStream(baos);
+        AsyncBitFileWriter writer = new AsyncBitFileWriter(file.getPath(),
+                blockSize);
+        Random r = new Random(seed);
+        for (int i = 0; i < numWrites; i++) {
+            long b = r.nextLong();
+            int len = 1 + r.nextInt(64);
+            if (r.nextInt(10) == 0) {
+                int off = r.nextInt(8);
+                expected.writeBits(b, off, len);
+                writer.writeBits(b, off, len);
+            } else {
+                expected.writeBits(b, len);
+                writer.writeBits(b, len);
+            }
+        }
+        expected.close();
+        writer.close();
+
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while (n < bytes.length)
+                n += in.read(bytes, n, bytes.length - n);
+        } finally {
+            in.close();
+        }
+        assertTrue(Arrays.equals(baos.toByteArray(), bytes));
+    }
+
+}
@@ -2,6 +2,7 @@ package korat.utils.io;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 
 import junit.framework.TestCase;
@@ -77,4 +78,25 @@ public class BitInputOutputStreamTest extends TestCase {
         bos.writeBits(20, 5);
     }
 
+    public void testSkipBits() throws Exception {
+        int[] ints = {5, 1, 13, 7, 57, 170, 20, 3};
+        int[] bits = {3, 5,  4, 4,  8,  32,  5, 2};
+        for (int i = 0; i < ints.length; i++)
+            bos.writeBits(ints[i], bits[i]);
+        bos.flush();
+        bis = new BitInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(5, bis.readBitsAsInt(3));
+        bis.skipBits(5);
+        assertEquals(13, bis.readBitsAsInt(4));
+        bis.skipBits(4 + 8 + 32);
+        assertEquals(20, bis.readBitsAsInt(5));
+        bis.skipBits(0);
+        assertEquals(3, bis.readBitsAsInt(2));
+        try {
+            bis.skipBits(8);
+            fail();
+        } catch (EOFException e) {
+        }
+    }
+
 }
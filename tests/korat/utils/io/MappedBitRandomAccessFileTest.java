@@ -0,0 +1,97 @@
+package korat.utils.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that <code>MappedBitRandomAccessFile</code> reads the same bits as
+ * <code>BitRandomAccessFile</code>.
+ *
+ * @author korat.team
+ *
+ */
+public class MappedBitRandomAccessFileTest extends TestCase {
+
+    private File file;
+
+    private BitRandomAccessFile expected;
+
+    private MappedBitRandomAccessFile mapped;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("korat", ".dat");
+        byte[] data = new byte[1001];
+        new Random(17).nextBytes(data);
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(data);
+        fos.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (expected != null)
+            expected.close();
+        if (mapped != null)
+            mapped.close();
+        file.delete();
+    }
+
+    private void open(int windowSize) throws IOException {
+        expected = new BitRandomAccessFile(file.getPath());
+        mapped = new MappedBitRandomAccessFile(file.getPath(), windowSize);
+    }
+
+    public void testSequentialReads() throws IOException {
+        open(MappedBitRandomAccessFile.DEFAULT_WINDOW_SIZE);
+        Random r = new Random(1);
+        while (expected.getFilePointer() < 1001 * 8 - 64) {
+            int numBits = 1 + r.nextInt(64);
+            assertEquals(expected.readBitsAsLong(numBits), mapped.readBitsAsLong(numBits));
+            assertEquals(expected.getFilePointer(), mapped.getFilePointer());
+        }
+    }
+
+    public void testSmallWindows() throws IOException {
+        open(13);
+        Random r = new Random(2);
+        while (expected.getFilePointer() < 1001 * 8 - 64) {
+            int numBits = 1 + r.nextInt(32);
+            assertEquals(expected.readBitsAsInt(numBits), mapped.readBitsAsInt(numBits));
+        }
+        assertEquals(expected.readLong(), mapped.readLong());
+    }
+
+    public void testSeek() throws IOException {
+        open(64);
+        Random r = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            long pos = r.nextInt(1001 * 8 - 64);
+            expected.seek(pos);
+            mapped.seek(pos);
+            assertEquals(pos, mapped.getFilePointer());
+            int numBits = 1 + r.nextInt(64);
+            assertEquals(expected.readBitsAsLong(numBits), mapped.readBitsAsLong(numBits));
+            // seek forward within the current word
+            long next = mapped.getFilePointer() + r.nextInt(8);
+            expected.seek(next);
+            mapped.seek(next);
+            assertEquals(expected.readBitsAsInt(7), mapped.readBitsAsInt(7));
+        }
+    }
+
+    public void testEndOfFile() throws IOException {
+        open(16);
+        mapped.seek(1001 * 8 - 12);
+        assertEquals(-1, mapped.readBitsAsLong(13));
+        mapped.seek(1001 * 8 - 12);
+        expected.seek(1001 * 8 - 12);
+        assertEquals(expected.readBitsAsInt(12), mapped.readBitsAsInt(12));
+        assertEquals(-1, mapped.readBitsAsInt(1));
+    }
+
+}